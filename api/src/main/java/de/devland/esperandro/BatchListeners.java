@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Batch change listeners of a generated preference implementation. The instance registers itself once at each store
+ * as soon as the first batch listener is added. It collects the keys of all changes and delivers them in one call
+ * per listener once the window has passed. A window of 0 delivers after the current main looper message.
+ * <p>
+ * Changes are reported by preference name. All preferences sharing a stored key, like packed primitives, are reported
+ * when it changes.
+ */
+public class BatchListeners implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    private final StoredKeyTable keyTable;
+    private final long windowMillis;
+    private final List<OnBatchChangeListener> listeners = new CopyOnWriteArrayList<OnBatchChangeListener>();
+    private final List<SharedPreferences> registeredStores = new ArrayList<SharedPreferences>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable delivery = new Runnable() {
+        @Override
+        public void run() {
+            deliver();
+        }
+    };
+    private Set<String> pendingKeys;
+
+    /**
+     * @param keys         the names of preferences whose stored key differs from the name
+     * @param storedKeys   the keys these preferences are stored under, at the same index
+     * @param windowMillis the time changes are collected after the first one
+     */
+    public BatchListeners(String[] keys, String[] storedKeys, long windowMillis) {
+        this.keyTable = new StoredKeyTable(keys, storedKeys);
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * @param stores all stores of the preference implementation
+     */
+    public void register(OnBatchChangeListener listener, SharedPreferences... stores) {
+        listeners.add(listener);
+        List<SharedPreferences> newStores = new ArrayList<SharedPreferences>();
+        synchronized (this) {
+            for (SharedPreferences store : stores) {
+                if (!containsStore(store)) {
+                    registeredStores.add(store);
+                    newStores.add(store);
+                }
+            }
+        }
+        for (SharedPreferences store : newStores) {
+            // the store only keeps a weak reference, the generated implementation keeps this instance alive
+            store.registerOnSharedPreferenceChangeListener(this);
+        }
+    }
+
+    public void unregister(OnBatchChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String storedKey) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        boolean firstChange;
+        synchronized (this) {
+            firstChange = pendingKeys == null;
+            if (firstChange) {
+                pendingKeys = new LinkedHashSet<String>();
+            }
+            String[] keys = keyTable.keysOf(storedKey);
+            if (keys != null) {
+                Collections.addAll(pendingKeys, keys);
+            } else {
+                pendingKeys.add(storedKey);
+            }
+        }
+        if (firstChange) {
+            mainHandler.postDelayed(delivery, windowMillis);
+        }
+    }
+
+    private void deliver() {
+        Set<String> keys;
+        synchronized (this) {
+            keys = Collections.unmodifiableSet(pendingKeys);
+            pendingKeys = null;
+        }
+        for (OnBatchChangeListener listener : listeners) {
+            listener.onPreferencesChanged(keys);
+        }
+    }
+
+    private boolean containsStore(SharedPreferences store) {
+        for (SharedPreferences registeredStore : registeredStores) {
+            if (registeredStore == store) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+import android.content.Context;
+
+/**
+ * Computes the default of a preference annotated with {@link de.devland.esperandro.annotations.DefaultProvider}.
+ *
+ * @param <T> the type of the preference
+ */
+public interface DefaultValueProvider<T> {
+
+    /**
+     * @param context the application context
+     * @return the default value, must not be null for primitive preferences
+     */
+    T provide(Context context);
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Precomputed name and ordinal tables of an enum. Generated implementations keep one instance per enum type to decode
+ * stored enum preferences without the exception handling of {@link Enum#valueOf(Class, String)} and without copying
+ * the constants array on every {@code values()} call.
+ * <p>
+ * Earlier versions serialized enums as JSON strings like {@code "\"HIGH\""}. Such values are decoded once and
+ * rewritten in the native format when they are read.
+ */
+public final class EnumLookup<E extends Enum<E>> {
+
+    private final Class<E> enumClass;
+    private final E[] values;
+    private final Map<String, E> byName;
+
+    private EnumLookup(Class<E> enumClass) {
+        this.enumClass = enumClass;
+        values = enumClass.getEnumConstants();
+        byName = new HashMap<String, E>(values.length * 2);
+        for (E value : values) {
+            byName.put(value.name(), value);
+        }
+    }
+
+    public static <E extends Enum<E>> EnumLookup<E> of(Class<E> enumClass) {
+        return new EnumLookup<E>(enumClass);
+    }
+
+    /**
+     * @return the constant with the given name or the default value if there is no such constant (anymore)
+     */
+    public E byName(String name, E defaultValue) {
+        E result = name != null ? byName.get(name) : null;
+        return result != null ? result : defaultValue;
+    }
+
+    /**
+     * @return the constant with the given ordinal or the default value if there is no such constant (anymore)
+     */
+    public E byOrdinal(int ordinal, E defaultValue) {
+        return ordinal >= 0 && ordinal < values.length ? values[ordinal] : defaultValue;
+    }
+
+    /**
+     * Reads an enum stored by name.
+     *
+     * @return the stored constant or the default value if there is no such constant (anymore)
+     */
+    public E read(SharedPreferences store, String key, E defaultValue) {
+        String name = store.getString(key, null);
+        E result = name != null ? byName.get(name) : null;
+        if (result == null && name != null) {
+            result = decodeLegacy(name);
+            if (result != null) {
+                LegacyValues.rewrite(store, key, result.name());
+            }
+        }
+        return result != null ? result : defaultValue;
+    }
+
+    /**
+     * Reads an enum stored by ordinal.
+     *
+     * @return the stored constant or the default value if there is no such constant (anymore)
+     */
+    public E readOrdinal(SharedPreferences store, String key, E defaultValue) {
+        E result;
+        try {
+            result = byOrdinal(store.getInt(key, -1), defaultValue);
+        } catch (ClassCastException e) {
+            // stored as String by an earlier version
+            result = decodeLegacy(store.getString(key, null));
+            if (result != null) {
+                LegacyValues.rewrite(store, key, result.ordinal());
+            } else {
+                result = defaultValue;
+            }
+        }
+        return result;
+    }
+
+    private E decodeLegacy(String serialized) {
+        E result = null;
+        if (serialized != null && serialized.startsWith("\"")) {
+            result = LegacyValues.deserialize(serialized, enumClass);
+            if (result == null && serialized.length() > 1 && serialized.endsWith("\"")) {
+                result = byName.get(serialized.substring(1, serialized.length() - 1));
+            }
+        }
+        return result;
+    }
+}
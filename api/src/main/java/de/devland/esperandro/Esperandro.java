@@ -17,17 +17,27 @@ package de.devland.esperandro;
 
 import android.content.Context;
 import android.util.Log;
+import de.devland.esperandro.serialization.ProjectingSerializer;
 import de.devland.esperandro.serialization.Serializer;
+import de.devland.esperandro.serialization.WarmableSerializer;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Manager to give access to the generated Esperandro-SharedPreference implementations.
  */
 public class Esperandro {
     private static final String SUFFIX = "$$Impl";
+    private static final String SERIALIZED_TYPES_FIELD = "SERIALIZED_TYPES";
     private static final String TAG = "Esperandro";
     private static Esperandro instance;
     private final Map<String, Object> preferenceInstances = new HashMap<String, Object>();
@@ -79,11 +89,71 @@ public class Esperandro {
         return esperandro.serializer;
     }
 
+    /**
+     * @return the current serializer if it is able to read single fields of serialized objects.
+     * @throws IllegalStateException if the current serializer does not support projections
+     */
+    public static ProjectingSerializer getProjectingSerializer() {
+        Serializer serializer = getSerializer();
+        if (!(serializer instanceof ProjectingSerializer)) {
+            throw new IllegalStateException("Tried to use a projection in preferences but the serializer " +
+                    serializer.getClass().getName() + " does not implement ProjectingSerializer");
+        }
+        return (ProjectingSerializer) serializer;
+    }
+
     public static void setSerializer(Serializer serializer) {
         Esperandro.getInstance().serializer = serializer;
     }
 
 
+    /**
+     * Prepares the serializer for all Object preferences of the given preference interfaces on the given executor.
+     * Serializers like Gson or Jackson introspect every class on its first use, which would otherwise happen on the
+     * thread that reads the preference first (often the UI thread during startup). Only serializers implementing
+     * {@link WarmableSerializer} are warmed up.
+     *
+     * @param executor          executor to run the warm up on, e.g. {@code AsyncTask.THREAD_POOL_EXECUTOR}
+     * @param preferenceClasses the preference interfaces to warm up. If none are given, all preferences that were
+     *                          already obtained via {@link #getPreferences(Class, Context)} are used.
+     */
+    public static void warmUpSerializers(Executor executor, Class<?>... preferenceClasses) {
+        Esperandro esperandro = Esperandro.getInstance();
+        final Set<Class<?>> serializedTypes = new LinkedHashSet<Class<?>>();
+        if (preferenceClasses.length == 0) {
+            for (Object implementation : esperandro.preferenceInstances.values()) {
+                serializedTypes.addAll(getSerializedTypes(implementation.getClass()));
+            }
+        } else {
+            for (Class<?> preferenceClass : preferenceClasses) {
+                serializedTypes.addAll(getSerializedTypes(esperandro.getImplementationClass(preferenceClass)));
+            }
+        }
+
+        if (!serializedTypes.isEmpty()) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Serializer serializer = getSerializer();
+                    if (serializer instanceof WarmableSerializer) {
+                        ((WarmableSerializer) serializer).warmUp(serializedTypes.toArray(new Class<?>[serializedTypes
+                                .size()]));
+                    }
+                }
+            });
+        }
+    }
+
+    private static List<Class<?>> getSerializedTypes(Class<?> implementationClass) {
+        try {
+            Field serializedTypesField = implementationClass.getField(SERIALIZED_TYPES_FIELD);
+            return Arrays.asList((Class<?>[]) serializedTypesField.get(null));
+        } catch (Exception e) {
+            Log.w(TAG, "No serialized types found for " + implementationClass.getName() + ".");
+            return Collections.emptyList();
+        }
+    }
+
     private static Serializer getDefaultSerializer() {
         Serializer defaultSerializer = null;
         // try to get gsonSerializer first
@@ -122,12 +192,10 @@ public class Esperandro {
         return defaultSerializer;
     }
 
-    @SuppressWarnings("unchecked")
     private <T> T createInstance(Class<T> preferenceClass, Context context) {
         T implementation;
         try {
-            Class<? extends T> implementationClass = (Class<? extends T>) Class.forName(preferenceClass
-                    .getCanonicalName() + SUFFIX);
+            Class<? extends T> implementationClass = getImplementationClass(preferenceClass);
             Constructor<? extends T> constructor = implementationClass.getConstructor(Context.class);
             implementation = constructor.newInstance(context);
 
@@ -138,4 +206,14 @@ public class Esperandro {
         return implementation;
     }
 
+    @SuppressWarnings("unchecked")
+    private <T> Class<? extends T> getImplementationClass(Class<T> preferenceClass) {
+        try {
+            return (Class<? extends T>) Class.forName(preferenceClass.getCanonicalName() + SUFFIX);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Couldn't load generated class. Please check esperandro processor " +
+                    "configuration in your project.", e);
+        }
+    }
+
 }
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+/**
+ * Computes the new value of a {@code int} preference from its current value. Used by generated {@code update<Key>}
+ * methods, which call it while holding the lock of the preference, so it should be fast and free of side effects.
+ */
+public interface IntOperator {
+    int apply(int value);
+}
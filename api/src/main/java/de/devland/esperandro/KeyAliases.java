@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mapping between preference names and the compact keys they are stored under, generated for interfaces annotated
+ * with {@link de.devland.esperandro.annotations.experimental.CompactKeys} as {@code KEY_ALIASES} field of the
+ * implementation.
+ * <p>
+ * Values stored under the preference names before compact keys were enabled are moved on the first access of a store,
+ * all of them in a single transaction. The generated implementations remember which of their stores were migrated.
+ * Pairs ending with a dot describe the entries of map preferences.
+ */
+public class KeyAliases {
+
+    private final String[] keys;
+    private final String[] storedKeys;
+    private final Map<String, String> storedKeysByKey = new HashMap<String, String>();
+    private final Map<String, String> keysByStoredKey = new HashMap<String, String>();
+
+    public KeyAliases(String[] keys, String[] storedKeys) {
+        this.keys = keys;
+        this.storedKeys = storedKeys;
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i];
+            String storedKey = storedKeys[i];
+            if (key.endsWith(".")) {
+                key = key.substring(0, key.length() - 1);
+                storedKey = storedKey.substring(0, storedKey.length() - 1);
+            }
+            storedKeysByKey.put(key, storedKey);
+            keysByStoredKey.put(storedKey, key);
+        }
+    }
+
+    /**
+     * @return the key the given preference is stored under, the preference name itself if it has no alias
+     */
+    public String storedKey(String key) {
+        String result = storedKeysByKey.get(key);
+        return result != null ? result : key;
+    }
+
+    /**
+     * @return the preference name of the given stored key, e.g. for keys passed to change listeners
+     */
+    public String keyOf(String storedKey) {
+        String result = keysByStoredKey.get(storedKey);
+        if (result == null && storedKey != null) {
+            // compact keys contain no dots, so an entry of a map preference is split at the first one
+            int separator = storedKey.indexOf('.');
+            String mapKey = separator > 0 ? keysByStoredKey.get(storedKey.substring(0, separator)) : null;
+            result = mapKey != null ? mapKey + storedKey.substring(separator) : storedKey;
+        }
+        return result;
+    }
+
+    /**
+     * Wraps a change listener so it receives preference names instead of the compact keys. The wrapper only weakly
+     * references the listener, like the stores do.
+     */
+    public SharedPreferences.OnSharedPreferenceChangeListener translating(
+            SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        final WeakReference<SharedPreferences.OnSharedPreferenceChangeListener> reference =
+                new WeakReference<SharedPreferences.OnSharedPreferenceChangeListener>(listener);
+        return new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                SharedPreferences.OnSharedPreferenceChangeListener listener = reference.get();
+                if (listener != null) {
+                    listener.onSharedPreferenceChanged(sharedPreferences, keyOf(key));
+                }
+            }
+        };
+    }
+
+    /**
+     * Moves legacy values of the given store to their compact keys. Callers only do this once per store, it reads all
+     * values of the store if one of the preferences has a legacy value. Entries of map preferences can only be found
+     * that way, so interfaces with a map preference always read all values.
+     *
+     * @return the given store
+     */
+    public <T extends SharedPreferences> T migrate(T preferences) {
+        Map<String, ?> values = null;
+        SharedPreferences.Editor editor = null;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].endsWith(".")) {
+                if (values == null) {
+                    values = preferences.getAll();
+                    editor = preferences.edit();
+                }
+                for (Map.Entry<String, ?> entry : values.entrySet()) {
+                    if (entry.getKey().startsWith(keys[i])) {
+                        String entryName = entry.getKey().substring(keys[i].length());
+                        move(preferences, editor, entry.getKey(), storedKeys[i] + entryName, entry.getValue());
+                    }
+                }
+            } else if (preferences.contains(keys[i])) {
+                if (values == null) {
+                    values = preferences.getAll();
+                    editor = preferences.edit();
+                }
+                move(preferences, editor, keys[i], storedKeys[i], values.get(keys[i]));
+            }
+        }
+        if (editor != null) {
+            editor.apply();
+        }
+        return preferences;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void move(SharedPreferences preferences, SharedPreferences.Editor editor, String key,
+                             String storedKey, Object value) {
+        // a value written under the compact key is newer than the legacy one
+        if (!preferences.contains(storedKey)) {
+            if (value instanceof String) {
+                editor.putString(storedKey, (String) value);
+            } else if (value instanceof Integer) {
+                editor.putInt(storedKey, (Integer) value);
+            } else if (value instanceof Long) {
+                editor.putLong(storedKey, (Long) value);
+            } else if (value instanceof Float) {
+                editor.putFloat(storedKey, (Float) value);
+            } else if (value instanceof Boolean) {
+                editor.putBoolean(storedKey, (Boolean) value);
+            } else if (value instanceof Set) {
+                editor.putStringSet(storedKey, (Set<String>) value);
+            }
+        }
+        editor.remove(key);
+    }
+}
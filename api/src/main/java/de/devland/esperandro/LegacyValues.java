@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+import de.devland.esperandro.storage.SnapshotPreferences;
+
+import java.util.Date;
+
+/**
+ * Reads values of types that were serialized as JSON by earlier versions and are stored natively now. The generated
+ * getters only take this path if the stored value does not have the native format, the value is then decoded with the
+ * current {@link de.devland.esperandro.serialization.Serializer} and rewritten in the native format.
+ */
+public final class LegacyValues {
+    private static final String TAG = "Esperandro";
+
+    private LegacyValues() {
+    }
+
+    /**
+     * Reads a date stored as milliseconds since the epoch.
+     *
+     * @return the stored date or the default value if there is none
+     */
+    public static Date readDate(SharedPreferences store, String key, Date defaultValue) {
+        Date result = defaultValue;
+        try {
+            if (store.contains(key)) {
+                result = new Date(store.getLong(key, 0L));
+            }
+        } catch (ClassCastException e) {
+            // stored as JSON String by an earlier version
+            Date legacy = deserialize(store.getString(key, null), Date.class);
+            if (legacy != null) {
+                rewrite(store, key, legacy.getTime());
+                result = legacy;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the decoded value or null if it could not be decoded
+     */
+    public static <T> T deserialize(String serialized, Class<T> type) {
+        T result = null;
+        if (serialized != null) {
+            try {
+                result = Esperandro.getSerializer().deserialize(serialized, type);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Serialized value " + serialized + " could not be read as " + type.getName() + ".", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores a decoded value in its native format. Read-only snapshots are left unchanged.
+     */
+    public static void rewrite(SharedPreferences store, String key, Object value) {
+        if (store instanceof SnapshotPreferences) {
+            return;
+        }
+        SharedPreferences.Editor editor = store.edit();
+        if (value == null) {
+            editor.remove(key);
+        } else if (value instanceof Integer) {
+            editor.putInt(key, (Integer) value);
+        } else if (value instanceof Long) {
+            editor.putLong(key, (Long) value);
+        } else {
+            editor.putString(key, value.toString());
+        }
+        editor.apply();
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+/**
+ * Implemented by generated classes of interfaces with
+ * {@link de.devland.esperandro.annotations.experimental.MigrateFrom} migrations. Extend it in your interface to
+ * migrate eagerly.
+ */
+public interface MigrationActions {
+    /**
+     * Migrates all preferences that were not migrated by their getters yet, in a single transaction per store.
+     */
+    void migrateAll();
+}
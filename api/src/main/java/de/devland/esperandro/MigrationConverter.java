@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+/**
+ * Converts stored values of an earlier version of a preference, see
+ * {@link de.devland.esperandro.annotations.experimental.MigrateFrom#converter()}.
+ */
+public interface MigrationConverter {
+
+    /**
+     * @param value the raw stored value, a String, Set of Strings, Integer, Long, Float or Boolean
+     * @return the value in the format the preference is stored in now, null to drop the value
+     */
+    Object convert(Object value);
+
+    /**
+     * Takes values over unchanged.
+     */
+    class Identity implements MigrationConverter {
+        @Override
+        public Object convert(Object value) {
+            return value;
+        }
+    }
+}
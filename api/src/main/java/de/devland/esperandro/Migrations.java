@@ -0,0 +1,262 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Migrations declared with {@link de.devland.esperandro.annotations.experimental.MigrateFrom}, generated as
+ * {@code __migrations} field of the implementation. Getters migrate their preference with {@link #migrate(
+ * SharedPreferences, int)} before reading it, which only costs a field read once it was done. After every preference
+ * was migrated the {@link de.devland.esperandro.annotations.experimental.SchemaVersion} is stored, later processes
+ * skip all migrations if it is current.
+ */
+public class Migrations {
+
+    public static final String VERSION_KEY = "__schemaVersion";
+
+    public static final int TYPE_STRING = 0;
+    public static final int TYPE_STRING_SET = 1;
+    public static final int TYPE_INT = 2;
+    public static final int TYPE_LONG = 3;
+    public static final int TYPE_FLOAT = 4;
+    public static final int TYPE_BOOLEAN = 5;
+
+    private final SharedPreferences versionStore;
+    private final int version;
+    private final List<Migration> migrations = new ArrayList<Migration>();
+    private boolean[] migrated = new boolean[0];
+    private int remaining;
+    private boolean versionChecked;
+    private volatile boolean current;
+
+    /**
+     * @param versionStore the store the schema version is kept in
+     * @param version      the current schema version, 0 if it is not stored
+     */
+    public Migrations(SharedPreferences versionStore, int version) {
+        this.versionStore = versionStore;
+        this.version = version;
+    }
+
+    /**
+     * Adds the migration of the next preference, the index passed to {@link #migrate(SharedPreferences, int)} is the
+     * order of the calls.
+     *
+     * @param storedKey    the key the preference is stored under
+     * @param type         the type the preference is stored as, one of the {@code TYPE_} constants
+     * @param converter    converter for values of earlier versions, null if they are taken over unchanged
+     * @param previousKeys the keys the preference was stored under before, newest first
+     * @return this
+     */
+    public synchronized Migrations add(String storedKey, int type, MigrationConverter converter,
+                                       String... previousKeys) {
+        migrations.add(new Migration(storedKey, type, converter, previousKeys));
+        migrated = new boolean[migrations.size()];
+        remaining = migrations.size();
+        return this;
+    }
+
+    /**
+     * Migrates a single preference, unless this was already done.
+     *
+     * @param store the store the preference is kept in
+     * @param index the index of the preference
+     */
+    public void migrate(SharedPreferences store, int index) {
+        if (current || migrated[index]) {
+            return;
+        }
+        synchronized (this) {
+            if (isCurrent() || migrated[index]) {
+                return;
+            }
+            SharedPreferences.Editor editor = store.edit();
+            Map<SharedPreferences, Map<String, ?>> values = new IdentityHashMap<SharedPreferences, Map<String, ?>>(1);
+            if (migrate(store, editor, migrations.get(index), values)) {
+                editor.apply();
+            }
+            migrated[index] = true;
+            remaining--;
+            if (remaining == 0 && version > 0) {
+                versionStore.edit().putInt(VERSION_KEY, version).apply();
+                current = true;
+            }
+        }
+    }
+
+    /**
+     * Migrates all preferences that were not migrated yet, with one transaction per store.
+     *
+     * @param stores the store of every preference, in index order
+     */
+    public synchronized void migrateAll(SharedPreferences... stores) {
+        if (isCurrent()) {
+            return;
+        }
+        Map<SharedPreferences, SharedPreferences.Editor> editors =
+                new IdentityHashMap<SharedPreferences, SharedPreferences.Editor>();
+        Map<SharedPreferences, Map<String, ?>> values = new IdentityHashMap<SharedPreferences, Map<String, ?>>();
+        for (int i = 0; i < migrations.size(); i++) {
+            if (!migrated[i]) {
+                SharedPreferences.Editor editor = editors.get(stores[i]);
+                if (editor == null) {
+                    editor = stores[i].edit();
+                    editors.put(stores[i], editor);
+                }
+                migrate(stores[i], editor, migrations.get(i), values);
+                migrated[i] = true;
+            }
+        }
+        remaining = 0;
+        if (version > 0) {
+            SharedPreferences.Editor editor = editors.get(versionStore);
+            if (editor == null) {
+                editor = versionStore.edit();
+                editors.put(versionStore, editor);
+            }
+            editor.putInt(VERSION_KEY, version);
+            current = true;
+        }
+        for (SharedPreferences.Editor editor : editors.values()) {
+            editor.apply();
+        }
+    }
+
+    /**
+     * @return true if the stored schema version is current, it is only read once
+     */
+    private boolean isCurrent() {
+        if (!versionChecked) {
+            versionChecked = true;
+            current = version > 0 && versionStore.getInt(VERSION_KEY, 0) >= version;
+        }
+        return current;
+    }
+
+    /**
+     * @param values the values of the stores read so far, the values of a store are only read once and only if one of
+     *               its preferences has a value to migrate
+     * @return true if the editor was changed
+     */
+    private static boolean migrate(SharedPreferences store, SharedPreferences.Editor editor, Migration migration,
+                                   Map<SharedPreferences, Map<String, ?>> values) {
+        boolean changed = false;
+        boolean present = store.contains(migration.storedKey);
+        if (present && migration.converter != null && !hasType(store, migration.storedKey, migration.type)) {
+            put(editor, migration.storedKey, migration.converter.convert(valuesOf(store, values)
+                    .get(migration.storedKey)));
+            changed = true;
+        }
+        for (String previousKey : migration.previousKeys) {
+            if (store.contains(previousKey)) {
+                // a value stored under the current name is newer than the ones stored under earlier names
+                if (!present) {
+                    Object value = valuesOf(store, values).get(previousKey);
+                    put(editor, migration.storedKey, migration.converter != null
+                            ? migration.converter.convert(value) : value);
+                    present = true;
+                }
+                editor.remove(previousKey);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static Map<String, ?> valuesOf(SharedPreferences store,
+                                           Map<SharedPreferences, Map<String, ?>> values) {
+        Map<String, ?> result = values.get(store);
+        if (result == null) {
+            result = store.getAll();
+            values.put(store, result);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the value with the expected type, stores throw a ClassCastException if it was stored with another one.
+     */
+    private static boolean hasType(SharedPreferences store, String key, int type) {
+        try {
+            switch (type) {
+                case TYPE_STRING_SET:
+                    store.getStringSet(key, null);
+                    break;
+                case TYPE_INT:
+                    store.getInt(key, 0);
+                    break;
+                case TYPE_LONG:
+                    store.getLong(key, 0L);
+                    break;
+                case TYPE_FLOAT:
+                    store.getFloat(key, 0f);
+                    break;
+                case TYPE_BOOLEAN:
+                    store.getBoolean(key, false);
+                    break;
+                default:
+                    store.getString(key, null);
+                    break;
+            }
+            return true;
+        } catch (ClassCastException e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void put(SharedPreferences.Editor editor, String key, Object value) {
+        if (value == null) {
+            editor.remove(key);
+        } else if (value instanceof String) {
+            editor.putString(key, (String) value);
+        } else if (value instanceof Integer) {
+            editor.putInt(key, (Integer) value);
+        } else if (value instanceof Long) {
+            editor.putLong(key, (Long) value);
+        } else if (value instanceof Float) {
+            editor.putFloat(key, (Float) value);
+        } else if (value instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Set) {
+            editor.putStringSet(key, (Set<String>) value);
+        } else {
+            throw new IllegalArgumentException("Preference " + key + " cannot be stored as "
+                    + value.getClass().getName() + ".");
+        }
+    }
+
+    private static class Migration {
+        private final String storedKey;
+        private final int type;
+        private final MigrationConverter converter;
+        private final String[] previousKeys;
+
+        Migration(String storedKey, int type, MigrationConverter converter, String[] previousKeys) {
+            this.storedKey = storedKey;
+            this.type = type;
+            this.converter = converter;
+            this.previousKeys = previousKeys;
+        }
+    }
+}
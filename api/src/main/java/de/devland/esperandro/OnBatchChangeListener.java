@@ -0,0 +1,33 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+import java.util.Set;
+
+/**
+ * Listener for bursts of changes, registered through
+ * {@link SharedPreferenceActions#registerOnBatchChangeListener(OnBatchChangeListener)}. Changes are collected until
+ * the main looper has finished its current message, or for the window set by
+ * {@link de.devland.esperandro.annotations.experimental.CoalesceChanges}, and then reported at once.
+ */
+public interface OnBatchChangeListener {
+    /**
+     * Called on the main thread.
+     *
+     * @param keys the names of all preferences that changed since the last call, an unmodifiable set
+     */
+    void onPreferencesChanged(Set<String> keys);
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A map-valued preference whose entries are stored under separate keys of the form {@code <key>.<entry>}. Reading or
+ * writing a single entry only touches that entry. Declare a getter returning {@code PreferenceMap<V>} in a preference
+ * interface to use it.
+ * <p>
+ * {@code String}, {@code Integer}, {@code Long}, {@code Float}, {@code Boolean} and enum values are stored natively,
+ * all other value types go through the {@link Esperandro#getSerializer() serializer}. Entries are not covered by
+ * {@link de.devland.esperandro.annotations.experimental.Cached}.
+ */
+public class PreferenceMap<V> {
+
+    private final SharedPreferences preferences;
+    private final String prefix;
+    private final Class<V> valueClass;
+
+    public PreferenceMap(SharedPreferences preferences, String key, Class<V> valueClass) {
+        this.preferences = preferences;
+        this.prefix = key + ".";
+        this.valueClass = valueClass;
+    }
+
+    /**
+     * @return the value of the entry or null if there is none
+     */
+    public V get(String entry) {
+        String key = prefix + entry;
+        Object result;
+        // the defaults are unlikely values, contains is only checked if the default is returned
+        if (valueClass == String.class) {
+            result = preferences.getString(key, null);
+        } else if (valueClass == Integer.class) {
+            int value = preferences.getInt(key, Integer.MIN_VALUE);
+            result = value != Integer.MIN_VALUE || preferences.contains(key) ? value : null;
+        } else if (valueClass == Long.class) {
+            long value = preferences.getLong(key, Long.MIN_VALUE);
+            result = value != Long.MIN_VALUE || preferences.contains(key) ? value : null;
+        } else if (valueClass == Float.class) {
+            float value = preferences.getFloat(key, Float.NaN);
+            result = !Float.isNaN(value) || preferences.contains(key) ? value : null;
+        } else if (valueClass == Boolean.class) {
+            boolean value = preferences.getBoolean(key, false);
+            result = value || preferences.contains(key) ? value : null;
+        } else if (valueClass.isEnum()) {
+            result = enumValue(preferences.getString(key, null));
+        } else {
+            String serialized = preferences.getString(key, null);
+            result = serialized != null ? Esperandro.getSerializer().deserialize(serialized, valueClass) : null;
+        }
+        return valueClass.cast(result);
+    }
+
+    /**
+     * Stores the value of a single entry. A null value removes the entry.
+     */
+    public void put(String entry, V value) {
+        String key = prefix + entry;
+        SharedPreferences.Editor editor = preferences.edit();
+        if (value == null) {
+            editor.remove(key);
+        } else if (value instanceof String) {
+            editor.putString(key, (String) value);
+        } else if (value instanceof Integer) {
+            editor.putInt(key, (Integer) value);
+        } else if (value instanceof Long) {
+            editor.putLong(key, (Long) value);
+        } else if (value instanceof Float) {
+            editor.putFloat(key, (Float) value);
+        } else if (value instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Enum) {
+            editor.putString(key, ((Enum<?>) value).name());
+        } else {
+            editor.putString(key, Esperandro.getSerializer().serialize(value));
+        }
+        editor.apply();
+    }
+
+    public void remove(String entry) {
+        preferences.edit().remove(prefix + entry).apply();
+    }
+
+    public boolean contains(String entry) {
+        return preferences.contains(prefix + entry);
+    }
+
+    /**
+     * @return the names of all stored entries
+     */
+    public Set<String> keys() {
+        Set<String> result = new LinkedHashSet<String>();
+        for (String key : preferences.getAll().keySet()) {
+            if (key.startsWith(prefix)) {
+                result.add(key.substring(prefix.length()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        SharedPreferences.Editor editor = preferences.edit();
+        for (String entry : keys()) {
+            editor.remove(prefix + entry);
+        }
+        editor.apply();
+    }
+
+    /**
+     * @return a read-only view of all entries. Entry names are determined once when the view is first iterated or
+     * sized, values are only read when they are accessed.
+     */
+    public Map<String, V> asMap() {
+        return new MapView();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object enumValue(String name) {
+        Object result = null;
+        if (name != null) {
+            try {
+                result = Enum.valueOf(valueClass.asSubclass(Enum.class), name);
+            } catch (IllegalArgumentException ignored) {
+                // constant was removed or renamed, treat as missing
+            }
+        }
+        return result;
+    }
+
+    private class MapView extends AbstractMap<String, V> {
+        private Set<String> entries;
+
+        private Set<String> entries() {
+            if (entries == null) {
+                entries = keys();
+            }
+            return entries;
+        }
+
+        @Override
+        public V get(Object key) {
+            return key instanceof String ? PreferenceMap.this.get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && PreferenceMap.this.contains((String) key);
+        }
+
+        @Override
+        public int size() {
+            return entries().size();
+        }
+
+        @Override
+        public Set<Entry<String, V>> entrySet() {
+            return new AbstractSet<Entry<String, V>>() {
+                @Override
+                public Iterator<Entry<String, V>> iterator() {
+                    final Iterator<String> iterator = entries().iterator();
+                    return new Iterator<Entry<String, V>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, V> next() {
+                            return new LazyEntry(iterator.next());
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return entries().size();
+                }
+            };
+        }
+    }
+
+    private class LazyEntry implements Map.Entry<String, V> {
+        private final String entry;
+
+        LazyEntry(String entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public String getKey() {
+            return entry;
+        }
+
+        @Override
+        public V getValue() {
+            return get(entry);
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            V value = getValue();
+            return entry.equals(other.getKey()) && (value == null ? other.getValue() == null : value.equals(other
+                    .getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            V value = getValue();
+            return entry.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+    }
+}
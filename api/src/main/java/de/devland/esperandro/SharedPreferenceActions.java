@@ -56,6 +56,22 @@ public interface SharedPreferenceActions {
      */
     void unregisterOnChangeListener(SharedPreferences.OnSharedPreferenceChangeListener listener);
 
+    /**
+     * Registers a callback to be invoked once for a burst of changes, with the names of all changed preferences. Unlike
+     * listeners registered with {@link #registerOnChangeListener(SharedPreferences.OnSharedPreferenceChangeListener)}
+     * it is strongly referenced until it is unregistered.
+     *
+     * @param listener The callback that will run.
+     */
+    void registerOnBatchChangeListener(OnBatchChangeListener listener);
+
+    /**
+     * Unregisters a previous batch callback.
+     *
+     * @param listener The callback that should be unregistered.
+     */
+    void unregisterOnBatchChangeListener(OnBatchChangeListener listener);
+
     /**
      * Clears the complete sharedPreferences of the previously given name. (Be aware that ALL preferences under this
      * name are cleared not only the ones defined in your interface)
@@ -73,4 +89,19 @@ public interface SharedPreferenceActions {
      */
     void initDefaults();
 
+    /**
+     * Blocks until all values written before the call are persisted. Putters returning {@code void} only apply their
+     * values, this makes them durable at checkpoints like a logout without committing every single write. Should not
+     * be called on the main thread.
+     */
+    void flush();
+
+    /**
+     * Like {@link #flush()}, but waits at most the given time.
+     *
+     * @param timeoutMillis the maximum time to wait in milliseconds
+     * @return true if all values were persisted in time, false otherwise
+     */
+    boolean awaitPendingWrites(long timeoutMillis);
+
 }
@@ -15,17 +15,26 @@
  */
 package de.devland.esperandro;
 
+import android.content.Context;
+
 /**
  * Values correspond to the respective android equivalent of Context.MODE_${SharedPreferenceMode}.
  */
 public enum SharedPreferenceMode {
-    PRIVATE("Context.MODE_PRIVATE"), WORLD_READABLE("Context.MODE_WORLD_READABLE"),
-    WORLD_WRITABLE("Context.MODE_WORLD_WRITEABLE"),
-    MULTI_PROCESS("Context.MODE_MULTI_PROCESS");
+    PRIVATE("Context.MODE_PRIVATE", Context.MODE_PRIVATE),
+    @SuppressWarnings("deprecation") WORLD_READABLE("Context.MODE_WORLD_READABLE", Context.MODE_WORLD_READABLE),
+    @SuppressWarnings("deprecation") WORLD_WRITABLE("Context.MODE_WORLD_WRITEABLE", Context.MODE_WORLD_WRITEABLE),
+    @SuppressWarnings("deprecation") MULTI_PROCESS("Context.MODE_MULTI_PROCESS", Context.MODE_MULTI_PROCESS);
     String androidSharedPreferenceMode;
+    int androidSharedPreferenceModeValue;
 
-    private SharedPreferenceMode(String androidMode) {
+    private SharedPreferenceMode(String androidMode, int androidModeValue) {
         this.androidSharedPreferenceMode = androidMode;
+        this.androidSharedPreferenceModeValue = androidModeValue;
+    }
+
+    public int getSharedPreferenceMode() {
+        return androidSharedPreferenceModeValue;
     }
 
     public String getSharedPreferenceModeStatement() {
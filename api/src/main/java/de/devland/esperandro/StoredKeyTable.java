@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the keys passed to change listeners back to preference names. Several preferences may share a stored key,
+ * like packed primitives. Pairs ending with a dot describe the entries of map preferences.
+ */
+class StoredKeyTable {
+
+    private final Map<String, String[]> keysByStoredKey = new HashMap<String, String[]>();
+    private final Map<String, String> mapKeysByPrefix = new HashMap<String, String>();
+
+    /**
+     * @param keys       the preference names
+     * @param storedKeys the keys the preferences are stored under, at the same index
+     */
+    StoredKeyTable(String[] keys, String[] storedKeys) {
+        Map<String, List<String>> table = new HashMap<String, List<String>>();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].endsWith(".")) {
+                mapKeysByPrefix.put(storedKeys[i], keys[i]);
+                continue;
+            }
+            List<String> keysOfStoredKey = table.get(storedKeys[i]);
+            if (keysOfStoredKey == null) {
+                keysOfStoredKey = new ArrayList<String>(1);
+                table.put(storedKeys[i], keysOfStoredKey);
+            }
+            keysOfStoredKey.add(keys[i]);
+        }
+        for (Map.Entry<String, List<String>> entry : table.entrySet()) {
+            keysByStoredKey.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+        }
+    }
+
+    /**
+     * @return the preferences stored under the given key, null if the key is not in the table
+     */
+    String[] keysOf(String storedKey) {
+        String[] result = keysByStoredKey.get(storedKey);
+        if (result == null && storedKey != null && !mapKeysByPrefix.isEmpty()) {
+            // stored map keys contain no dots, so an entry is split at the first one
+            int separator = storedKey.indexOf('.');
+            String mapKey = separator > 0 ? mapKeysByPrefix.get(storedKey.substring(0, separator + 1)) : null;
+            if (mapKey != null) {
+                result = new String[]{mapKey + storedKey.substring(separator + 1)};
+            }
+        }
+        return result;
+    }
+}
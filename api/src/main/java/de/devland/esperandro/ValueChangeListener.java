@@ -0,0 +1,26 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+/**
+ * Typed listener for a single preference. It is registered through {@code void on<Key>Changed(ValueChangeListener<T>)}
+ * and removed through {@code void unregisterOn<Key>Changed(ValueChangeListener<T>)}, which are implemented if the
+ * preference interface declares them. It is called on the main thread with the new value, which is decoded once for
+ * all listeners of the preference.
+ */
+public interface ValueChangeListener<T> {
+    void onValueChanged(T value);
+}
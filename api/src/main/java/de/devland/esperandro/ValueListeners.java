@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Typed change listeners of a generated preference implementation. A single listener is registered at each store
+ * once the first typed listener of a preference in it is added. Changes are dispatched by a table from stored key to
+ * preference, so a change only reaches the listeners of its own preference. The new value is read once and passed to
+ * all of them, and only if it differs from the value they have seen last. The latter matters for preferences sharing
+ * a stored key, like packed primitives.
+ */
+public abstract class ValueListeners implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    private final StoredKeyTable keyTable;
+    private final Map<String, Subscription> subscriptions = new HashMap<String, Subscription>();
+    private final List<SharedPreferences> registeredStores = new ArrayList<SharedPreferences>();
+
+    /**
+     * @param keys       the preference names
+     * @param storedKeys the keys the preferences are stored under, at the same index
+     */
+    protected ValueListeners(String[] keys, String[] storedKeys) {
+        this.keyTable = new StoredKeyTable(keys, storedKeys);
+    }
+
+    /**
+     * @return the current value of the given preference
+     */
+    protected abstract Object read(String key);
+
+    /**
+     * @return the current value of the given preference, read from the store
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T current(String key) {
+        return (T) read(key);
+    }
+
+    /**
+     * @param store the store the preference is kept in
+     */
+    public <T> void register(String key, ValueChangeListener<T> listener, SharedPreferences store) {
+        boolean registerAtStore;
+        synchronized (this) {
+            Subscription subscription = subscriptions.get(key);
+            if (subscription == null) {
+                subscription = new Subscription();
+                subscriptions.put(key, subscription);
+            }
+            if (subscription.listeners.isEmpty()) {
+                subscription.value = read(key);
+            }
+            subscription.listeners.add(listener);
+            registerAtStore = !containsStore(store);
+            if (registerAtStore) {
+                registeredStores.add(store);
+            }
+        }
+        if (registerAtStore) {
+            // the store only keeps a weak reference, the generated implementation keeps this instance alive
+            store.registerOnSharedPreferenceChangeListener(this);
+        }
+    }
+
+    public synchronized void unregister(String key, ValueChangeListener<?> listener) {
+        Subscription subscription = subscriptions.get(key);
+        if (subscription != null) {
+            subscription.listeners.remove(listener);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String storedKey) {
+        String[] keys = keyTable.keysOf(storedKey);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Subscription subscription;
+            Object value;
+            synchronized (this) {
+                subscription = subscriptions.get(key);
+                if (subscription == null || subscription.listeners.isEmpty()) {
+                    continue;
+                }
+                value = read(key);
+                Object previous = subscription.value;
+                if (previous == null ? value == null : previous.equals(value)) {
+                    continue;
+                }
+                subscription.value = value;
+            }
+            for (ValueChangeListener listener : subscription.listeners) {
+                listener.onValueChanged(value);
+            }
+        }
+    }
+
+    private boolean containsStore(SharedPreferences store) {
+        for (SharedPreferences registeredStore : registeredStores) {
+            if (registeredStore == store) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Subscription {
+        final List<ValueChangeListener<?>> listeners = new CopyOnWriteArrayList<ValueChangeListener<?>>();
+        Object value;
+    }
+}
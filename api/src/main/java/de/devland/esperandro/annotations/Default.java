@@ -21,11 +21,14 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * Allows to set a default for the primitive preferences as well as {@code String}. A {@code Set<String>} will always
- * have {@code null} as default value;
+ * Allows to set a default for the primitive preferences as well as {@code String} and enums. A {@code Set<String>}
+ * will always have {@code null} as default value;
  * <p>
  * If no annotation is given or the proper default value is not set the used defaults are: {@code boolean}: false {@code
- * int}: -1 {@code long}: -1l {@code float}: -1.0f {@code String}: "" (empty String)
+ * int}: -1 {@code long}: -1l {@code float}: -1.0f {@code double}: -1.0 {@code short}: -1 {@code String}: "" (empty String) {@code enum}: null
+ * {@code Date}: null
+ * <p>
+ * A {@code java.util.Date} preference takes its default from {@link #ofLong()} as milliseconds since the epoch.
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
@@ -35,7 +38,10 @@ public @interface Default {
     public static final int intDefault = -1;
     public static final long longDefault = -1l;
     public static final float floatDefault = -1.0f;
+    public static final double doubleDefault = -1.0;
+    public static final short shortDefault = -1;
     public static final String stringDefault = "";
+    public static final String enumDefault = "";
 
     boolean ofBoolean() default booleanDefault;
 
@@ -45,5 +51,14 @@ public @interface Default {
 
     float ofFloat() default floatDefault;
 
+    double ofDouble() default doubleDefault;
+
+    short ofShort() default shortDefault;
+
     String ofString() default stringDefault;
+
+    /**
+     * @return name of the enum constant to use as default
+     */
+    String ofEnum() default enumDefault;
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.annotations;
+
+import de.devland.esperandro.DefaultValueProvider;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Computes the default of a preference at runtime, e.g. a generated device id or a value parsed from an asset. The
+ * provider is only called when the getter finds no stored value. If the preference has a putter the result is stored
+ * with it, otherwise it is kept in memory by the instance, so the provider runs at most once either way.
+ * <p>
+ * The annotation can be placed on either the getter or the putter of a preference. It replaces {@link Default}.
+ * Getters with a runtime default still return the value they were given. Preferences with a provider are not part of
+ * snapshots and have no value listeners.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DefaultProvider {
+    /**
+     * @return the provider creating the default, needs a public no-arg constructor
+     */
+    Class<? extends DefaultValueProvider<?>> value();
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a getter that reads a single field of a stored Object preference. The serialized value is scanned with a
+ * streaming reader until the field is found, so the stored object is never deserialized completely. This needs a
+ * {@link de.devland.esperandro.serialization.ProjectingSerializer} like the Gson or Jackson addon.
+ * <p>
+ * A primitive getter returns its {@link Default} (or the implicit default) if the field is not present. Generic
+ * preferences are stored wrapped into a container, so paths into them have to start with {@code value}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Projection {
+    /**
+     * @return name of the Object preference to read from
+     */
+    String preference();
+
+    /**
+     * @return dot separated path of the field inside the stored object, e.g. {@code "address.street"}
+     */
+    String path();
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Moves a preference into a separate file. Every shard of an interface is stored as {@code <name>.<shard>} next to
+ * the main file, using the same store and mode. A write to a frequently changing preference then only rewrites the
+ * other preferences of its shard, and loading rarely used preferences does not load the frequently changing ones.
+ * Can be placed on the getter or the putter.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Shard {
+    /**
+     * name of the shard, it has to be a valid Java identifier
+     */
+    String value();
+}
@@ -16,6 +16,8 @@
 package de.devland.esperandro.annotations;
 
 import de.devland.esperandro.SharedPreferenceMode;
+import de.devland.esperandro.storage.PreferenceStoreFactory;
+import de.devland.esperandro.storage.SharedPreferencesStore;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
@@ -34,4 +36,9 @@ public @interface SharedPreferences {
     String name() default "";
 
     SharedPreferenceMode mode() default SharedPreferenceMode.PRIVATE;
+
+    /**
+     * factory of the storage backend, the platform SharedPreferences are used by default
+     */
+    Class<? extends PreferenceStoreFactory> store() default SharedPreferencesStore.Factory.class;
 }
@@ -0,0 +1,30 @@
+package de.devland.esperandro.annotations.experimental;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Moves large Object preferences out of the SharedPreferences file. If the serialized value exceeds the given
+ * threshold it is written atomically to its own file and only a versioned reference is stored in the preferences.
+ * Android parses and rewrites the complete preference file on every load and every write, so keeping big values out
+ * of it keeps unrelated preferences cheap.
+ * <p>
+ * The annotation can be placed on either the getter or the putter of an Object preference. The payload is only read
+ * when the getter is called.
+ */
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Blob {
+    /**
+     * number of characters of the serialized value from which on the value is stored in a separate file
+     */
+    int threshold() default 8192;
+
+    /**
+     * if set to true the separate file is read via a memory mapping instead of a regular stream
+     */
+    boolean memoryMapped() default false;
+}
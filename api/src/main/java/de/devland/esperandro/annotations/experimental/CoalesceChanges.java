@@ -0,0 +1,21 @@
+package de.devland.esperandro.annotations.experimental;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Sets how long changes are collected before they are reported to
+ * {@link de.devland.esperandro.OnBatchChangeListener}s. Without this annotation changes are reported once the main
+ * looper has finished its current message.
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface CoalesceChanges {
+    /**
+     * time in milliseconds changes are collected after the first one
+     */
+    long windowMillis();
+}
@@ -0,0 +1,23 @@
+package de.devland.esperandro.annotations.experimental;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Stores the preferences of an interface under short keys derived from the preference names instead of the names
+ * themselves. The keys are repeated on every write and parsed on every load, so this shrinks the files of interfaces
+ * with many preferences. A key only depends on its preference name and stays the same if other preferences are added
+ * or removed.
+ * <p>
+ * The mapping is available as {@code KEY_ALIASES} field of the generated implementation, see
+ * {@link de.devland.esperandro.KeyAliases}. Values stored before the annotation was added are moved to their new keys
+ * on first access. Change listeners registered through the implementation receive the preference names, listeners
+ * registered directly at the underlying SharedPreferences see the stored keys.
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface CompactKeys {
+}
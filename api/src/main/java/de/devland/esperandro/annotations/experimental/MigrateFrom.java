@@ -0,0 +1,33 @@
+package de.devland.esperandro.annotations.experimental;
+
+import de.devland.esperandro.MigrationConverter;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Declares how values of earlier versions of a preference are migrated. The migration of a preference runs on the
+ * first access of its getter, so preferences that are never read are never migrated. Implementations of interfaces
+ * with migrations implement {@link de.devland.esperandro.MigrationActions} to migrate all preferences at once.
+ * <p>
+ * The annotation can be placed on either the getter or the putter of a preference. It is not supported for map
+ * preferences and preferences packed by {@link PackedPrimitives}.
+ */
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface MigrateFrom {
+    /**
+     * names the preference was stored under before, newest first. The value of the first one found is taken over if
+     * there is no value under the current name, all of them are removed.
+     */
+    String[] value() default {};
+
+    /**
+     * converts values taken over from earlier names and values of the preference with a different type than the
+     * current one. Needs a public no-arg constructor.
+     */
+    Class<? extends MigrationConverter> converter() default MigrationConverter.Identity.class;
+}
@@ -0,0 +1,20 @@
+package de.devland.esperandro.annotations.experimental;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Stores all {@code int}, {@code long}, {@code float} and {@code boolean} preferences of an interface in a single
+ * binary record instead of one entry per preference, see {@link de.devland.esperandro.storage.PackedRecord}. This
+ * saves parsing and boxing of every single value when the preferences are loaded, but every write stores all packed
+ * values. Preferences assigned to a {@link de.devland.esperandro.annotations.Shard} are not packed.
+ * <p>
+ * Change listeners are notified with the key of the record, {@code __packed}.
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface PackedPrimitives {
+}
@@ -0,0 +1,18 @@
+package de.devland.esperandro.annotations.experimental;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Version of the migrations declared with {@link MigrateFrom}. Once all preferences are migrated the version is
+ * stored, later processes skip the migrations entirely until the version is increased. It has to be increased
+ * whenever migrations are added or changed. Without this annotation every process checks each preference once.
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface SchemaVersion {
+    int value();
+}
@@ -0,0 +1,30 @@
+package de.devland.esperandro.annotations.experimental;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Buffers writes of preferences that change very often, e.g. scroll positions or slider values. Applied values are
+ * visible to all getters immediately, but they are only handed to the store once the interval has passed since the
+ * first unwritten change, so the disk sees at most one write per preference and interval. Putters returning
+ * {@code boolean} still commit immediately. Buffered values are written early on
+ * {@link android.content.ComponentCallbacks2#onTrimMemory(int)} and by
+ * {@link de.devland.esperandro.SharedPreferenceActions#flush()}.
+ * <p>
+ * On the interface the annotation applies to all preferences, on the getter or putter of a preference it overrides
+ * the interval of this preference. Preferences packed by {@link PackedPrimitives} share the interval of their record.
+ * Change listeners are notified once the values are written. Not supported for
+ * {@link de.devland.esperandro.SharedPreferenceMode#MULTI_PROCESS} preferences.
+ */
+@Target({TYPE, METHOD})
+@Retention(RUNTIME)
+public @interface WriteBehind {
+    /**
+     * time in milliseconds changes are buffered before they are written
+     */
+    long intervalMillis();
+}
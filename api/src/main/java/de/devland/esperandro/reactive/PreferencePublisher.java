@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.reactive;
+
+import android.content.SharedPreferences;
+import de.devland.esperandro.ValueChangeListener;
+import de.devland.esperandro.ValueListeners;
+
+/**
+ * Publisher of a single preference, returned by {@code Publisher<T> <key>Publisher()} methods declared in the
+ * preference interface. Every subscriber receives the current value first and then every change that differs from
+ * the value it received last. Values are conflated: while a subscriber has no outstanding demand only the latest
+ * value is kept, so a slow subscriber never receives a backlog of intermediate values. Absent values without default
+ * are not sent, as null values are not allowed. The publisher never completes.
+ */
+public class PreferencePublisher<T> implements Publisher<T> {
+
+    private final ValueListeners listeners;
+    private final String key;
+    private final SharedPreferences store;
+
+    /**
+     * @param store the store the preference is kept in
+     */
+    public PreferencePublisher(ValueListeners listeners, String key, SharedPreferences store) {
+        this.listeners = listeners;
+        this.key = key;
+        this.store = store;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null");
+        }
+        ConflatingSubscription subscription = new ConflatingSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        listeners.register(key, subscription, store);
+        // read after registering, so no change can get lost in between
+        subscription.offer(listeners.<T>current(key));
+    }
+
+    private class ConflatingSubscription implements Subscription, ValueChangeListener<T> {
+        private final Subscriber<? super T> subscriber;
+        private long demand;
+        private T latest;
+        private boolean pending;
+        private T emitted;
+        private boolean emitting;
+        private boolean cancelled;
+
+        ConflatingSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onValueChanged(T value) {
+            offer(value);
+        }
+
+        void offer(T value) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                latest = value;
+                pending = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Only positive amounts can be requested: " + n));
+                return;
+            }
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                latest = null;
+            }
+            listeners.unregister(key, this);
+        }
+
+        /**
+         * Sends the latest value if there is demand. Only one thread sends at a time, values offered meanwhile are
+         * picked up by the sending thread.
+         */
+        private void drain() {
+            while (true) {
+                T value;
+                synchronized (this) {
+                    if (emitting || cancelled || !pending || demand == 0) {
+                        return;
+                    }
+                    value = latest;
+                    pending = false;
+                    if (value == null || value.equals(emitted)) {
+                        continue;
+                    }
+                    emitting = true;
+                    emitted = value;
+                    if (demand != Long.MAX_VALUE) {
+                        demand--;
+                    }
+                }
+                try {
+                    subscriber.onNext(value);
+                } finally {
+                    synchronized (this) {
+                        emitting = false;
+                    }
+                }
+            }
+        }
+    }
+}
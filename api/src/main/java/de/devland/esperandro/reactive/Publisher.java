@@ -0,0 +1,25 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.reactive;
+
+/**
+ * Provider of a potentially unbounded number of values, with the contract of
+ * {@code java.util.concurrent.Flow.Publisher} and Reactive Streams, which are not available on all Android versions.
+ * Adapters to other libraries only have to forward the calls.
+ */
+public interface Publisher<T> {
+    void subscribe(Subscriber<? super T> subscriber);
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.serialization;
+
+/**
+ * A serializer that is able to read a single field of a serialized object without deserializing the whole object.
+ */
+public interface ProjectingSerializer extends Serializer {
+
+    /**
+     * @param serializedObject the serialized object
+     * @param path             field names leading from the root object to the requested field
+     * @param clazz            type of the requested field
+     * @return the deserialized field or null if the object or one of the fields on the path is not present
+     */
+    <T> T deserializeField(String serializedObject, String[] path, Class<T> clazz);
+}
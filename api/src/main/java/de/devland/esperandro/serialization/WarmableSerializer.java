@@ -0,0 +1,31 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.serialization;
+
+/**
+ * A serializer that keeps prepared per-type state (e.g. reflection based adapters) and is able to build this state
+ * ahead of the first use.
+ */
+public interface WarmableSerializer extends Serializer {
+
+    /**
+     * Prepares everything that is needed to serialize and deserialize the given classes. Calling this on a background
+     * thread avoids paying the introspection costs on the first read of a preference.
+     *
+     * @param classes the classes that will be (de)serialized later on
+     */
+    void warmUp(Class<?>... classes);
+}
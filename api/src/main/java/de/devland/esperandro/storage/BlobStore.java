@@ -0,0 +1,239 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Stores large preference values in separate files next to the SharedPreferences. The preference itself only holds a
+ * reference of the form {@code esperandro-blob:<version>:<key>}. Every write creates a new version which is written to
+ * a temporary file and renamed afterwards, so a reference never points to a partially written file. The previous
+ * version is kept until the next write because the reference to it may not be persisted yet. For the same reason a
+ * value that is stored inline again only releases its blobs with {@link #deleteAfterWrite(String, long,
+ * SharedPreferences)} once the inline value was persisted.
+ */
+public class BlobStore {
+    private static final String TAG = "Esperandro";
+    private static final String REFERENCE_PREFIX = "esperandro-blob:";
+    private static final String BLOB_DIRECTORY = "esperandro-blobs";
+    private static final String FILE_SUFFIX = ".blob";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+
+    public BlobStore(Context context, String preferencesName) {
+        this.directory = new File(new File(context.getFilesDir(), BLOB_DIRECTORY), preferencesName);
+    }
+
+    /**
+     * @param value a raw value read from the preferences
+     * @return true if the value is a reference to a blob file, false otherwise
+     */
+    public static boolean isReference(String value) {
+        return value != null && value.startsWith(REFERENCE_PREFIX);
+    }
+
+    /**
+     * Writes the payload as new version of the blob for the given key.
+     *
+     * @param key     the preference key
+     * @param payload the serialized value
+     * @return the reference that has to be stored in the preferences
+     */
+    public synchronized String write(String key, String payload) {
+        long version = latestVersion(key) + 1;
+        File target = blobFile(key, version);
+        File temp = new File(directory, target.getName() + TEMP_SUFFIX);
+        try {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Could not create directory " + directory);
+            }
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(payload.getBytes(UTF_8));
+                out.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException("Could not rename " + temp + " to " + target);
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            String message = String.format("Blob for preference \"%s\" could not be written.", key);
+            throw new IllegalStateException(message, e);
+        }
+        deleteVersionsBefore(key, version - 1);
+        return REFERENCE_PREFIX + version + ":" + key;
+    }
+
+    /**
+     * Reads the payload the given reference points to.
+     *
+     * @param reference    a reference previously returned by {@link #write(String, String)}
+     * @param memoryMapped if true the file is mapped into memory instead of being read through a stream
+     * @return the payload or null if the blob file does not exist (anymore)
+     */
+    public String read(String reference, boolean memoryMapped) {
+        String versionAndKey = reference.substring(REFERENCE_PREFIX.length());
+        int separator = versionAndKey.indexOf(':');
+        long version = Long.parseLong(versionAndKey.substring(0, separator));
+        String key = versionAndKey.substring(separator + 1);
+        File file = blobFile(key, version);
+        if (!file.exists()) {
+            Log.w(TAG, "Blob for preference \"" + key + "\" is missing.");
+            return null;
+        }
+
+        try {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                FileChannel channel = in.getChannel();
+                if (memoryMapped) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    return UTF_8.decode(buffer).toString();
+                } else {
+                    byte[] bytes = new byte[(int) channel.size()];
+                    int offset = 0;
+                    int read;
+                    while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                        offset += read;
+                    }
+                    return new String(bytes, 0, offset, UTF_8);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            String message = String.format("Blob for preference \"%s\" could not be read.", key);
+            throw new IllegalStateException(message, e);
+        }
+    }
+
+    /**
+     * @param key the preference key
+     * @return the latest version of the blob for the given key, 0 if there is none
+     */
+    public synchronized long currentVersion(String key) {
+        return latestVersion(key);
+    }
+
+    /**
+     * Deletes the given and all earlier versions of the blob for the given key in the background, after all
+     * modifications applied to the store before the call are persisted. Versions written later are kept.
+     *
+     * @param key     the preference key
+     * @param version the latest version to delete, see {@link #currentVersion(String)}
+     * @param store   the store the preference is kept in
+     */
+    public void deleteAfterWrite(final String key, final long version, SharedPreferences store) {
+        if (version > 0) {
+            Runnable delete = new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (BlobStore.this) {
+                        deleteVersionsBefore(key, version + 1);
+                    }
+                }
+            };
+            if (store instanceof WriteBehindPreferenceStore) {
+                // flushing would write all buffered values before their interval has passed
+                ((WriteBehindPreferenceStore) store).afterWrite(delete);
+            } else {
+                PendingWrites.afterFlush(delete, store);
+            }
+        }
+    }
+
+    /**
+     * Deletes all versions of the blob for the given key.
+     *
+     * @param key the preference key
+     */
+    public synchronized void delete(String key) {
+        deleteVersionsBefore(key, Long.MAX_VALUE);
+    }
+
+    /**
+     * Deletes all blobs of this preference file.
+     */
+    public synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    private File blobFile(String key, long version) {
+        return new File(directory, key + "." + version + FILE_SUFFIX);
+    }
+
+    private long latestVersion(String key) {
+        long latest = 0;
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                long version = versionOf(key, name);
+                if (version > latest) {
+                    latest = version;
+                }
+            }
+        }
+        return latest;
+    }
+
+    private void deleteVersionsBefore(String key, long version) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                long fileVersion = versionOf(key, file.getName());
+                if (fileVersion != -1 && fileVersion < version) {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private static long versionOf(String key, String fileName) {
+        long version = -1;
+        if (fileName.startsWith(key + ".") && fileName.endsWith(FILE_SUFFIX)) {
+            String versionPart = fileName.substring(key.length() + 1, fileName.length() - FILE_SUFFIX.length());
+            try {
+                version = Long.parseLong(versionPart);
+            } catch (NumberFormatException ignored) {
+                // not a blob of this key, e.g. "key.other.1.blob" for key "key"
+            }
+        }
+        return version;
+    }
+}
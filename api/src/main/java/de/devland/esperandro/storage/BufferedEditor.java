@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.SharedPreferences;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Editor collecting all modifications until {@link #commit()} or {@link #apply()} hands them to the store at once.
+ * Removals are recorded as null values.
+ */
+abstract class BufferedEditor implements SharedPreferences.Editor {
+    private final Map<String, Object> modifications = new LinkedHashMap<String, Object>();
+    private boolean clear;
+
+    /**
+     * @param modifications the new values by key, null for removed keys
+     * @param clear         true if all values have to be removed before the modifications are applied
+     * @param commit        true if the modifications have to be persisted before returning
+     */
+    protected abstract void write(Map<String, Object> modifications, boolean clear, boolean commit);
+
+    /**
+     * Hands modifications collected by a buffered editor to the editor of another store.
+     */
+    @SuppressWarnings("unchecked")
+    static void putAll(SharedPreferences.Editor editor, Map<String, Object> modifications) {
+        for (Map.Entry<String, Object> modification : modifications.entrySet()) {
+            String key = modification.getKey();
+            Object value = modification.getValue();
+            if (value == null) {
+                editor.remove(key);
+            } else if (value instanceof String) {
+                editor.putString(key, (String) value);
+            } else if (value instanceof Set) {
+                editor.putStringSet(key, (Set<String>) value);
+            } else if (value instanceof Integer) {
+                editor.putInt(key, (Integer) value);
+            } else if (value instanceof Long) {
+                editor.putLong(key, (Long) value);
+            } else if (value instanceof Float) {
+                editor.putFloat(key, (Float) value);
+            } else if (value instanceof Boolean) {
+                editor.putBoolean(key, (Boolean) value);
+            }
+        }
+    }
+
+    @Override
+    public SharedPreferences.Editor putString(String key, String value) {
+        modifications.put(key, value);
+        return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor putStringSet(String key, Set<String> values) {
+        modifications.put(key, values != null ? new LinkedHashSet<String>(values) : null);
+        return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor putInt(String key, int value) {
+        modifications.put(key, value);
+        return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor putLong(String key, long value) {
+        modifications.put(key, value);
+        return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor putFloat(String key, float value) {
+        modifications.put(key, value);
+        return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor putBoolean(String key, boolean value) {
+        modifications.put(key, value);
+        return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor remove(String key) {
+        modifications.put(key, null);
+        return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor clear() {
+        clear = true;
+        return this;
+    }
+
+    @Override
+    public boolean commit() {
+        write(modifications, clear, true);
+        return true;
+    }
+
+    @Override
+    public void apply() {
+        write(modifications, clear, false);
+    }
+}
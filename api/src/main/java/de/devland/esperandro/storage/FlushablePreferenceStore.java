@@ -0,0 +1,28 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+/**
+ * A {@link PreferenceStore} that can wait for the values written by {@link Editor#apply()} to reach the disk. Stores
+ * not implementing it are flushed with an empty {@link Editor#commit()}, see {@link PendingWrites}.
+ */
+public interface FlushablePreferenceStore extends PreferenceStore {
+
+    /**
+     * Blocks until all modifications applied before the call are persisted.
+     */
+    void flush();
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.Context;
+import android.util.Log;
+import de.devland.esperandro.SharedPreferenceMode;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link PreferenceStore} for values that are written very often, e.g. counters or timestamps. Every commit or
+ * apply appends one CRC-checked record with the changed values to a log file instead of rewriting all preferences.
+ * All values are held in memory and reads never touch the disk.
+ * <p>
+ * Once the log exceeds a threshold it is folded into a snapshot on a background thread: the current values are written
+ * to a new snapshot file which atomically replaces the old one, afterwards the log is cut down to the records that
+ * were appended in the meantime. On open the snapshot is loaded and the log is replayed on top of it. A record that
+ * was only partially written before the process died fails its checksum and is dropped together with everything
+ * after it.
+ * <p>
+ * {@link Editor#apply()} only hands the record to the operating system, {@link Editor#commit()} also syncs the log to
+ * disk. Stores are shared per file within a process. Access from multiple processes is not supported.
+ */
+public class LogPreferenceStore implements FlushablePreferenceStore {
+    private static final String TAG = "Esperandro";
+    private static final String DIRECTORY = "esperandro-log";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final long COMPACTION_THRESHOLD = 64 * 1024;
+
+    private static final byte OP_CLEAR = 0;
+    private static final byte OP_REMOVE = 1;
+    private static final byte OP_INT = 2;
+    private static final byte OP_LONG = 3;
+    private static final byte OP_FLOAT = 4;
+    private static final byte OP_BOOLEAN = 5;
+    private static final byte OP_STRING = 6;
+    private static final byte OP_STRING_SET = 7;
+
+    private static final Map<String, LogPreferenceStore> INSTANCES = new HashMap<String, LogPreferenceStore>();
+    private static final Executor COMPACTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "esperandro-compactor");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final File snapshotFile;
+    private final File logFile;
+    private final Map<String, Object> values = new HashMap<String, Object>();
+    private final PreferenceListeners listeners = new PreferenceListeners();
+    private final Object compactionLock = new Object();
+    private FileOutputStream log;
+    private long logLength;
+    private boolean compactionScheduled;
+
+    private LogPreferenceStore(File directory, String name) {
+        this.snapshotFile = new File(directory, name + SNAPSHOT_SUFFIX);
+        this.logFile = new File(directory, name + LOG_SUFFIX);
+        load();
+    }
+
+    /**
+     * @return the store with the given name in the given directory, there is only one instance per name
+     */
+    public static LogPreferenceStore open(File directory, String name) {
+        synchronized (INSTANCES) {
+            String path = new File(directory, name).getAbsolutePath();
+            LogPreferenceStore result = INSTANCES.get(path);
+            if (result == null) {
+                result = new LogPreferenceStore(directory, name);
+                INSTANCES.put(path, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Discards all values held in memory and reads snapshot and log again.
+     */
+    public void reload() {
+        synchronized (compactionLock) {
+            synchronized (this) {
+                closeLog();
+                load();
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes appended to the log since the last compaction
+     */
+    public synchronized long getLogLength() {
+        return logLength;
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        Map<String, Object> result = new HashMap<String, Object>(values);
+        for (Map.Entry<String, Object> entry : result.entrySet()) {
+            if (entry.getValue() instanceof Set) {
+                entry.setValue(new HashSet<Object>((Set<?>) entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized String getString(String key, String defValue) {
+        String value = (String) values.get(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized Set<String> getStringSet(String key, Set<String> defValues) {
+        Set<String> value = (Set<String>) values.get(key);
+        return value != null ? value : defValues;
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defValue) {
+        Integer value = (Integer) values.get(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public synchronized long getLong(String key, long defValue) {
+        Long value = (Long) values.get(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public synchronized float getFloat(String key, float defValue) {
+        Float value = (Float) values.get(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        Boolean value = (Boolean) values.get(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new BufferedEditor() {
+            @Override
+            protected void write(Map<String, Object> modifications, boolean clear, boolean commit) {
+                LogPreferenceStore.this.write(modifications, clear, commit);
+            }
+        };
+    }
+
+    /**
+     * Syncs the log to disk, like a {@link Editor#commit()}.
+     */
+    @Override
+    public synchronized void flush() {
+        try {
+            log.getFD().sync();
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Log %s could not be synced.", logFile), e);
+        }
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.register(listener);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.unregister(listener);
+    }
+
+    /**
+     * Folds the log into the snapshot. This is done automatically on a background thread once the log exceeds its
+     * threshold, it only has to be called directly to shrink the files immediately.
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            Map<String, Object> state;
+            long compactedLength;
+            synchronized (this) {
+                state = new HashMap<String, Object>(values);
+                compactedLength = logLength;
+            }
+
+            // writing the snapshot does not block readers and writers, they keep appending to the log
+            File tempSnapshot = new File(snapshotFile.getPath() + TEMP_SUFFIX);
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                for (Map.Entry<String, Object> entry : state.entrySet()) {
+                    writeValue(out, entry.getKey(), entry.getValue());
+                }
+                writeFile(tempSnapshot, record(bytes.toByteArray()));
+                if (!tempSnapshot.renameTo(snapshotFile)) {
+                    throw new IOException("Could not rename " + tempSnapshot + " to " + snapshotFile);
+                }
+            } catch (IOException e) {
+                //noinspection ResultOfMethodCallIgnored
+                tempSnapshot.delete();
+                throw new IllegalStateException(String.format("Snapshot %s could not be written.", snapshotFile), e);
+            }
+
+            // the log may still be replayed on top of the new snapshot if the process dies before it is cut, this is
+            // harmless because replaying the log always ends with the values the snapshot was taken from
+            synchronized (this) {
+                File tempLog = new File(logFile.getPath() + TEMP_SUFFIX);
+                try {
+                    closeLog();
+                    byte[] tail = new byte[(int) (logLength - compactedLength)];
+                    RandomAccessFile in = new RandomAccessFile(logFile, "r");
+                    try {
+                        in.seek(compactedLength);
+                        in.readFully(tail);
+                    } finally {
+                        in.close();
+                    }
+                    writeFile(tempLog, tail);
+                    if (!tempLog.renameTo(logFile)) {
+                        throw new IOException("Could not rename " + tempLog + " to " + logFile);
+                    }
+                    logLength = tail.length;
+                } catch (IOException e) {
+                    //noinspection ResultOfMethodCallIgnored
+                    tempLog.delete();
+                    throw new IllegalStateException(String.format("Log %s could not be compacted.", logFile), e);
+                } finally {
+                    openLog();
+                }
+            }
+        }
+    }
+
+    private void load() {
+        values.clear();
+        File directory = logFile.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            throw new IllegalStateException(String.format("Directory %s could not be created.", directory));
+        }
+        try {
+            if (replay(snapshotFile) < snapshotFile.length()) {
+                Log.w(TAG, "Snapshot " + snapshotFile + " is corrupt, values may be missing.");
+            }
+            logLength = replay(logFile);
+            if (logLength < logFile.length()) {
+                Log.w(TAG, "Log " + logFile + " ends with an incomplete record, it is dropped.");
+                RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+                try {
+                    file.setLength(logLength);
+                } finally {
+                    file.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Log %s could not be read.", logFile), e);
+        }
+        compactionScheduled = false;
+        openLog();
+    }
+
+    /**
+     * @return the number of bytes of the file that contained valid records
+     */
+    private long replay(File file) throws IOException {
+        long position = 0;
+        if (!file.exists()) {
+            return position;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            long fileLength = file.length();
+            while (position + RECORD_HEADER_SIZE <= fileLength) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || position + RECORD_HEADER_SIZE + length > fileLength) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (checksum != checksum(payload)) {
+                    break;
+                }
+                apply(payload);
+                position += RECORD_HEADER_SIZE + length;
+            }
+        } catch (EOFException ignored) {
+            // the last record was not written completely
+        } finally {
+            in.close();
+        }
+        return position;
+    }
+
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        while (in.available() > 0) {
+            byte operation = in.readByte();
+            if (operation == OP_CLEAR) {
+                values.clear();
+                continue;
+            }
+            String key = readString(in);
+            switch (operation) {
+                case OP_REMOVE:
+                    values.remove(key);
+                    break;
+                case OP_INT:
+                    values.put(key, in.readInt());
+                    break;
+                case OP_LONG:
+                    values.put(key, in.readLong());
+                    break;
+                case OP_FLOAT:
+                    values.put(key, in.readFloat());
+                    break;
+                case OP_BOOLEAN:
+                    values.put(key, in.readBoolean());
+                    break;
+                case OP_STRING:
+                    values.put(key, readString(in));
+                    break;
+                case OP_STRING_SET:
+                    int count = in.readInt();
+                    Set<String> strings = new HashSet<String>(count * 2);
+                    for (int i = 0; i < count; i++) {
+                        strings.add(readString(in));
+                    }
+                    values.put(key, Collections.unmodifiableSet(strings));
+                    break;
+                default:
+                    throw new IOException("Unknown operation " + operation);
+            }
+        }
+    }
+
+    private void write(Map<String, Object> modifications, boolean clear, boolean commit) {
+        List<String> changedKeys = new ArrayList<String>();
+        synchronized (this) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                if (clear) {
+                    out.writeByte(OP_CLEAR);
+                    values.clear();
+                }
+                for (Map.Entry<String, Object> entry : modifications.entrySet()) {
+                    String key = entry.getKey();
+                    Object value = entry.getValue();
+                    if (value == null) {
+                        if (values.remove(key) != null) {
+                            out.writeByte(OP_REMOVE);
+                            writeString(out, key);
+                            changedKeys.add(key);
+                        }
+                    } else if (!value.equals(values.get(key))) {
+                        if (value instanceof Set) {
+                            value = Collections.unmodifiableSet(new HashSet<Object>((Set<?>) value));
+                        }
+                        values.put(key, value);
+                        writeValue(out, key, value);
+                        changedKeys.add(key);
+                    }
+                }
+                if (bytes.size() > 0) {
+                    byte[] record = record(bytes.toByteArray());
+                    log.write(record);
+                    if (commit) {
+                        log.getFD().sync();
+                    }
+                    logLength += record.length;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(String.format("Log %s could not be written.", logFile), e);
+            }
+            if (logLength >= COMPACTION_THRESHOLD && !compactionScheduled) {
+                compactionScheduled = true;
+                COMPACTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            compact();
+                        } catch (IllegalStateException e) {
+                            Log.w(TAG, "Compaction failed, it is retried with the next write.", e);
+                        } finally {
+                            synchronized (LogPreferenceStore.this) {
+                                compactionScheduled = false;
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        listeners.notify(this, changedKeys);
+    }
+
+    private void openLog() {
+        try {
+            log = new FileOutputStream(logFile, true);
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Log %s could not be opened.", logFile), e);
+        }
+    }
+
+    private void closeLog() {
+        try {
+            if (log != null) {
+                log.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Log " + logFile + " could not be closed.", e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, String key, Object value) throws IOException {
+        if (value instanceof Integer) {
+            out.writeByte(OP_INT);
+            writeString(out, key);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(OP_LONG);
+            writeString(out, key);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(OP_FLOAT);
+            writeString(out, key);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(OP_BOOLEAN);
+            writeString(out, key);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            out.writeByte(OP_STRING);
+            writeString(out, key);
+            writeString(out, (String) value);
+        } else {
+            Set<?> strings = (Set<?>) value;
+            out.writeByte(OP_STRING_SET);
+            writeString(out, key);
+            out.writeInt(strings.size());
+            for (Object string : strings) {
+                writeString(out, (String) string);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static byte[] record(byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_HEADER_SIZE + payload.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(payload.length);
+        out.writeInt(checksum(payload));
+        out.write(payload);
+        return bytes.toByteArray();
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFile(File file, byte[] content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+            out.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Creates stores in {@code <filesDir>/esperandro-log/}. The mode is ignored, the files are always private to the
+     * application.
+     */
+    public static class Factory implements PreferenceStoreFactory {
+
+        @Override
+        public PreferenceStore create(Context context, String name, SharedPreferenceMode mode) {
+            return open(new File(context.getFilesDir(), DIRECTORY), name);
+        }
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.Context;
+import android.util.Log;
+import de.devland.esperandro.SharedPreferenceMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link PreferenceStore} keeping its data in a memory-mapped file instead of an XML file that is parsed completely
+ * on load and rewritten completely on every write.
+ * <p>
+ * The file consists of a header followed by records of the form {@code [type][key length][key][value length][value]}.
+ * An in-memory index maps every key to the position of its live record. Primitives are read directly from the mapping
+ * without allocation and updated in place if the type does not change. All other writes append a new record and mark
+ * the previous one as removed, so a write costs O(value size). Once removed records make up more than half of the
+ * file it is compacted into a new file which replaces the old one atomically.
+ * <p>
+ * {@link Editor#apply()} leaves flushing to the operating system, {@link Editor#commit()} forces the mapping to disk.
+ * Stores are shared per file within a process. Access from multiple processes is not supported.
+ */
+public class MappedPreferenceStore implements FlushablePreferenceStore {
+    private static final String TAG = "Esperandro";
+    private static final String DIRECTORY = "esperandro-mapped";
+    private static final String FILE_SUFFIX = ".espm";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x4553504d;
+    private static final int FORMAT_VERSION = 1;
+    private static final int DATA_END_OFFSET = 8;
+    private static final int HEADER_SIZE = 12;
+    private static final int INITIAL_SIZE = 4096;
+    private static final int COMPACTION_THRESHOLD = 16 * 1024;
+
+    private static final byte TYPE_REMOVED = 0;
+    private static final byte TYPE_INT = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_FLOAT = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_STRING = 5;
+    private static final byte TYPE_STRING_SET = 6;
+
+    private static final Map<String, MappedPreferenceStore> INSTANCES = new HashMap<String, MappedPreferenceStore>();
+
+    private final File file;
+    private final Map<String, Slot> slots = new HashMap<String, Slot>();
+    private final PreferenceListeners listeners = new PreferenceListeners();
+    private MappedByteBuffer buffer;
+    private int dataEnd;
+    private int deadBytes;
+
+    private MappedPreferenceStore(File file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * @return the store for the given file, there is only one instance per file
+     */
+    public static MappedPreferenceStore open(File file) {
+        synchronized (INSTANCES) {
+            String path = file.getAbsolutePath();
+            MappedPreferenceStore result = INSTANCES.get(path);
+            if (result == null) {
+                result = new MappedPreferenceStore(file);
+                INSTANCES.put(path, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Discards the in-memory index and reads the file again.
+     */
+    public synchronized void reload() {
+        load();
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        Map<String, Object> result = new HashMap<String, Object>();
+        for (Map.Entry<String, Slot> entry : slots.entrySet()) {
+            Object value = decode(entry.getValue());
+            result.put(entry.getKey(), value instanceof Set ? new HashSet<Object>((Set<?>) value) : value);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized String getString(String key, String defValue) {
+        Slot slot = slot(key, TYPE_STRING);
+        return slot != null ? (String) decode(slot) : defValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized Set<String> getStringSet(String key, Set<String> defValues) {
+        Slot slot = slot(key, TYPE_STRING_SET);
+        return slot != null ? (Set<String>) decode(slot) : defValues;
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defValue) {
+        Slot slot = slot(key, TYPE_INT);
+        return slot != null ? buffer.getInt(slot.valueOffset) : defValue;
+    }
+
+    @Override
+    public synchronized long getLong(String key, long defValue) {
+        Slot slot = slot(key, TYPE_LONG);
+        return slot != null ? buffer.getLong(slot.valueOffset) : defValue;
+    }
+
+    @Override
+    public synchronized float getFloat(String key, float defValue) {
+        Slot slot = slot(key, TYPE_FLOAT);
+        return slot != null ? buffer.getFloat(slot.valueOffset) : defValue;
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        Slot slot = slot(key, TYPE_BOOLEAN);
+        return slot != null ? buffer.get(slot.valueOffset) != 0 : defValue;
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        return slots.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new BufferedEditor() {
+            @Override
+            protected void write(Map<String, Object> modifications, boolean clear, boolean commit) {
+                MappedPreferenceStore.this.write(modifications, clear, commit);
+            }
+        };
+    }
+
+    /**
+     * Forces the mapping to disk, like a {@link Editor#commit()}.
+     */
+    @Override
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.register(listener);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.unregister(listener);
+    }
+
+    /**
+     * @return the current size of the file including removed records
+     */
+    public synchronized int getDataSize() {
+        return dataEnd;
+    }
+
+    private Slot slot(String key, byte type) {
+        Slot slot = slots.get(key);
+        if (slot != null && slot.type != type) {
+            throw new ClassCastException(String.format("Preference \"%s\" has a different type.", key));
+        }
+        return slot;
+    }
+
+    private void load() {
+        slots.clear();
+        deadBytes = 0;
+        try {
+            File directory = file.getParentFile();
+            if (directory != null && !directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Could not create directory " + directory);
+            }
+            boolean existing = file.length() >= HEADER_SIZE;
+            map(Math.max((int) file.length(), INITIAL_SIZE));
+            if (existing && buffer.getInt(0) == MAGIC && buffer.getInt(4) == FORMAT_VERSION) {
+                dataEnd = buffer.getInt(DATA_END_OFFSET);
+                if (dataEnd < HEADER_SIZE || dataEnd > buffer.capacity()) {
+                    Log.w(TAG, "Preference file " + file + " is corrupt, starting empty.");
+                    reset();
+                } else {
+                    scan();
+                }
+            } else {
+                if (existing) {
+                    Log.w(TAG, "Preference file " + file + " has an unknown format, starting empty.");
+                }
+                reset();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Preference file %s could not be opened.", file), e);
+        }
+    }
+
+    private void scan() {
+        int position = HEADER_SIZE;
+        while (position < dataEnd) {
+            byte type = buffer.get(position);
+            int keyLength = buffer.getShort(position + 1) & 0xFFFF;
+            int valueLengthOffset = position + 3 + keyLength;
+            if (valueLengthOffset + 4 > dataEnd) {
+                break;
+            }
+            int valueLength = buffer.getInt(valueLengthOffset);
+            int end = valueLengthOffset + 4 + valueLength;
+            if (valueLength < 0 || end > dataEnd) {
+                break;
+            }
+            if (type == TYPE_REMOVED) {
+                deadBytes += end - position;
+            } else {
+                Slot slot = new Slot(type, position, valueLengthOffset + 4, valueLength);
+                Slot previous = slots.put(readString(position + 3, keyLength), slot);
+                if (previous != null) {
+                    // the process died before the previous record was marked as removed
+                    deadBytes += previous.recordLength();
+                }
+            }
+            position = end;
+        }
+        if (position != dataEnd) {
+            Log.w(TAG, "Preference file " + file + " ends with an incomplete record, it is ignored.");
+            dataEnd = position;
+            buffer.putInt(DATA_END_OFFSET, dataEnd);
+        }
+    }
+
+    private void reset() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        dataEnd = HEADER_SIZE;
+        buffer.putInt(DATA_END_OFFSET, dataEnd);
+        slots.clear();
+        deadBytes = 0;
+    }
+
+    private void map(int size) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // the mapping stays valid after the channel is closed
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > buffer.capacity()) {
+            try {
+                map(Math.max(size, buffer.capacity() * 2));
+            } catch (IOException e) {
+                throw new IllegalStateException(String.format("Preference file %s could not be grown.", file), e);
+            }
+        }
+    }
+
+    private void put(String key, Object value) {
+        byte type = typeOf(value);
+        Slot slot = slots.get(key);
+        if (slot != null && slot.type == type && type != TYPE_STRING && type != TYPE_STRING_SET) {
+            writeFixed(slot.valueOffset, type, value);
+            return;
+        }
+
+        byte[] keyBytes = key.getBytes(UTF_8);
+        byte[] variableValue = null;
+        int valueLength;
+        if (type == TYPE_STRING) {
+            variableValue = ((String) value).getBytes(UTF_8);
+            valueLength = variableValue.length;
+        } else if (type == TYPE_STRING_SET) {
+            variableValue = encodeStringSet(value);
+            valueLength = variableValue.length;
+        } else {
+            valueLength = type == TYPE_BOOLEAN ? 1 : (type == TYPE_LONG ? 8 : 4);
+        }
+        int position = dataEnd;
+        int valueOffset = position + 3 + keyBytes.length + 4;
+        ensureCapacity(valueOffset + valueLength);
+
+        buffer.put(position, type);
+        buffer.putShort(position + 1, (short) keyBytes.length);
+        for (int i = 0; i < keyBytes.length; i++) {
+            buffer.put(position + 3 + i, keyBytes[i]);
+        }
+        buffer.putInt(valueOffset - 4, valueLength);
+        if (variableValue != null) {
+            for (int i = 0; i < variableValue.length; i++) {
+                buffer.put(valueOffset + i, variableValue[i]);
+            }
+        } else {
+            writeFixed(valueOffset, type, value);
+        }
+        // the record becomes visible with the new end, before that a crash just loses it
+        dataEnd = valueOffset + valueLength;
+        buffer.putInt(DATA_END_OFFSET, dataEnd);
+
+        Slot newSlot = new Slot(type, position, valueOffset, valueLength);
+        if (variableValue != null) {
+            newSlot.decoded = type == TYPE_STRING_SET ? Collections.unmodifiableSet(new HashSet<Object>((Set<?>) value))
+                    : value;
+        }
+        Slot previous = slots.put(key, newSlot);
+        if (previous != null) {
+            markRemoved(previous);
+        }
+    }
+
+    private void remove(String key) {
+        Slot slot = slots.remove(key);
+        if (slot != null) {
+            markRemoved(slot);
+        }
+    }
+
+    private void markRemoved(Slot slot) {
+        buffer.put(slot.recordOffset, TYPE_REMOVED);
+        deadBytes += slot.recordLength();
+    }
+
+    private void writeFixed(int offset, byte type, Object value) {
+        switch (type) {
+            case TYPE_INT:
+                buffer.putInt(offset, (Integer) value);
+                break;
+            case TYPE_LONG:
+                buffer.putLong(offset, (Long) value);
+                break;
+            case TYPE_FLOAT:
+                buffer.putFloat(offset, (Float) value);
+                break;
+            case TYPE_BOOLEAN:
+                buffer.put(offset, (byte) ((Boolean) value ? 1 : 0));
+                break;
+        }
+    }
+
+    private void compactIfNecessary() {
+        if (deadBytes < COMPACTION_THRESHOLD || deadBytes < (dataEnd - HEADER_SIZE) / 2) {
+            return;
+        }
+        ByteBuffer compacted = ByteBuffer.allocate(dataEnd - deadBytes);
+        compacted.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(compacted.capacity());
+        Map<Slot, Integer> newOffsets = new HashMap<Slot, Integer>();
+        for (Slot slot : slots.values()) {
+            newOffsets.put(slot, compacted.position());
+            for (int i = 0; i < slot.recordLength(); i++) {
+                compacted.put(buffer.get(slot.recordOffset + i));
+            }
+        }
+        compacted.flip();
+
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.getChannel().write(compacted);
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp + " to " + file);
+            }
+            map(Math.max(compacted.limit() * 2, INITIAL_SIZE));
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            Log.w(TAG, "Preference file " + file + " could not be compacted.", e);
+            return;
+        }
+
+        for (Map.Entry<Slot, Integer> entry : newOffsets.entrySet()) {
+            Slot slot = entry.getKey();
+            int shift = entry.getValue() - slot.recordOffset;
+            slot.recordOffset += shift;
+            slot.valueOffset += shift;
+        }
+        dataEnd = compacted.limit();
+        deadBytes = 0;
+    }
+
+    private Object decode(Slot slot) {
+        switch (slot.type) {
+            case TYPE_INT:
+                return buffer.getInt(slot.valueOffset);
+            case TYPE_LONG:
+                return buffer.getLong(slot.valueOffset);
+            case TYPE_FLOAT:
+                return buffer.getFloat(slot.valueOffset);
+            case TYPE_BOOLEAN:
+                return buffer.get(slot.valueOffset) != 0;
+            case TYPE_STRING:
+                if (slot.decoded == null) {
+                    slot.decoded = readString(slot.valueOffset, slot.valueLength);
+                }
+                return slot.decoded;
+            case TYPE_STRING_SET:
+                if (slot.decoded == null) {
+                    slot.decoded = decodeStringSet(slot.valueOffset);
+                }
+                return slot.decoded;
+            default:
+                return null;
+        }
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    private Set<String> decodeStringSet(int offset) {
+        int count = buffer.getInt(offset);
+        int position = offset + 4;
+        Set<String> result = new HashSet<String>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt(position);
+            result.add(readString(position + 4, length));
+            position += 4 + length;
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    private static byte[] encodeStringSet(Object value) {
+        Set<?> strings = (Set<?>) value;
+        List<byte[]> encoded = new ArrayList<byte[]>(strings.size());
+        int length = 4;
+        for (Object string : strings) {
+            byte[] bytes = ((String) string).getBytes(UTF_8);
+            encoded.add(bytes);
+            length += 4 + bytes.length;
+        }
+        ByteBuffer result = ByteBuffer.allocate(length);
+        result.putInt(encoded.size());
+        for (byte[] bytes : encoded) {
+            result.putInt(bytes.length).put(bytes);
+        }
+        return result.array();
+    }
+
+    private static byte typeOf(Object value) {
+        byte type;
+        if (value instanceof Integer) {
+            type = TYPE_INT;
+        } else if (value instanceof Long) {
+            type = TYPE_LONG;
+        } else if (value instanceof Float) {
+            type = TYPE_FLOAT;
+        } else if (value instanceof Boolean) {
+            type = TYPE_BOOLEAN;
+        } else if (value instanceof String) {
+            type = TYPE_STRING;
+        } else {
+            type = TYPE_STRING_SET;
+        }
+        return type;
+    }
+
+    private void write(Map<String, Object> modifications, boolean clear, boolean force) {
+        List<String> changedKeys = new ArrayList<String>();
+        synchronized (this) {
+            if (clear) {
+                reset();
+            }
+            for (Map.Entry<String, Object> entry : modifications.entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                Slot slot = slots.get(key);
+                if (value == null) {
+                    if (slot != null) {
+                        remove(key);
+                        changedKeys.add(key);
+                    }
+                } else if (slot == null || !value.equals(decode(slot))) {
+                    put(key, value);
+                    changedKeys.add(key);
+                }
+            }
+            compactIfNecessary();
+            if (force) {
+                buffer.force();
+            }
+        }
+        listeners.notify(this, changedKeys);
+    }
+
+    private static class Slot {
+        final byte type;
+        int recordOffset;
+        int valueOffset;
+        final int valueLength;
+        Object decoded;
+
+        Slot(byte type, int recordOffset, int valueOffset, int valueLength) {
+            this.type = type;
+            this.recordOffset = recordOffset;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+        }
+
+        int recordLength() {
+            return valueOffset + valueLength - recordOffset;
+        }
+    }
+
+    /**
+     * Creates stores in {@code <filesDir>/esperandro-mapped/<name>.espm}. The mode is ignored, the files are always
+     * private to the application.
+     */
+    public static class Factory implements PreferenceStoreFactory {
+
+        @Override
+        public PreferenceStore create(Context context, String name, SharedPreferenceMode mode) {
+            return open(new File(new File(context.getFilesDir(), DIRECTORY), name + FILE_SUFFIX));
+        }
+    }
+}
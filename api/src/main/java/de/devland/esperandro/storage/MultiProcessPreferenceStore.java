@@ -0,0 +1,369 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link PreferenceStore} for platform SharedPreferences that are written by more than one process, used for
+ * {@link de.devland.esperandro.SharedPreferenceMode#MULTI_PROCESS}.
+ * <p>
+ * Every write increments a version counter in a small memory-mapped file next to the other esperandro files. The
+ * increment is done under a file lock, after the preferences were written to disk. Every access compares the counter
+ * with the version the store has seen last, which costs a single memory read as long as nothing changed. If another
+ * process wrote in the meantime the preferences are reloaded from disk. The changed keys are determined by comparing
+ * the values before and after, they are passed to the {@link #setInvalidationListener(OnSharedPreferenceChangeListener)
+ * invalidation listener} and to the registered change listeners.
+ * <p>
+ * Writes of other instances in the same process are noticed as well, so caches of all instances stay coherent.
+ */
+public class MultiProcessPreferenceStore implements FlushablePreferenceStore {
+
+    private static final String TAG = "Esperandro";
+    private static final String DIRECTORY = "esperandro-multiprocess";
+    private static final String FILE_SUFFIX = ".version";
+
+    private static final Map<String, VersionFile> VERSION_FILES = new HashMap<String, VersionFile>();
+    private static final Executor PUBLISHER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "esperandro-publisher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Context context;
+    private final String name;
+    private final VersionFile versionFile;
+    private final PreferenceListeners listeners = new PreferenceListeners();
+    private volatile SharedPreferences preferences;
+    private OnSharedPreferenceChangeListener invalidationListener;
+    private Map<String, Object> knownValues;
+    private volatile long knownVersion;
+
+    public MultiProcessPreferenceStore(Context context, String name) {
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        this.name = name;
+        this.preferences = this.context.getSharedPreferences(name, Context.MODE_MULTI_PROCESS);
+        this.versionFile = versionFile(new File(new File(this.context.getFilesDir(), DIRECTORY), name + FILE_SUFFIX));
+        this.knownVersion = versionFile.read();
+        this.knownValues = new HashMap<String, Object>(preferences.getAll());
+    }
+
+    private static VersionFile versionFile(File file) {
+        synchronized (VERSION_FILES) {
+            String path = file.getAbsolutePath();
+            VersionFile result = VERSION_FILES.get(path);
+            // the file is gone if the application data was deleted, it is created again
+            if (result == null || !file.exists()) {
+                result = new VersionFile(file);
+                VERSION_FILES.put(path, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @param listener called for every key that was changed by another process or instance, synchronously on the
+     *                 thread noticing the change and before the access continues. Meant for caches in front of the
+     *                 store, which have to drop the values before they are read again.
+     */
+    public synchronized void setInvalidationListener(OnSharedPreferenceChangeListener listener) {
+        this.invalidationListener = listener;
+    }
+
+    /**
+     * Reloads the preferences if they were written by another process or instance since the last access. Accessors
+     * of this store call it on their own, it only has to be called before reading values that were taken from the
+     * store earlier.
+     */
+    public void sync() {
+        long version = versionFile.read();
+        if (version == knownVersion) {
+            return;
+        }
+        List<String> changedKeys;
+        boolean external;
+        OnSharedPreferenceChangeListener invalidation;
+        synchronized (this) {
+            if (version == knownVersion) {
+                return;
+            }
+            external = versionFile.isExternal(knownVersion, version);
+            if (external) {
+                // re-stats the file and reloads it if it was replaced by another process
+                preferences = context.getSharedPreferences(name, Context.MODE_MULTI_PROCESS);
+            }
+            Map<String, Object> values = new HashMap<String, Object>(preferences.getAll());
+            changedKeys = changedKeys(knownValues, values);
+            knownValues = values;
+            knownVersion = version;
+            invalidation = invalidationListener;
+        }
+        if (invalidation != null) {
+            for (String key : changedKeys) {
+                invalidation.onSharedPreferenceChanged(this, key);
+            }
+        }
+        if (external) {
+            // writes of this process have already been announced by the platform preferences
+            listeners.notify(this, changedKeys);
+        }
+    }
+
+    private static List<String> changedKeys(Map<String, Object> before, Map<String, Object> after) {
+        List<String> result = new ArrayList<String>();
+        Set<String> keys = new HashSet<String>(before.keySet());
+        keys.addAll(after.keySet());
+        for (String key : keys) {
+            Object previous = before.get(key);
+            Object current = after.get(key);
+            if (previous == null ? current != null : !previous.equals(current)) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Called once the given modifications are on disk. The version is only taken over if nobody else wrote in
+     * between, otherwise the next access reloads.
+     */
+    private void publish(Map<String, Object> modifications, boolean clear) {
+        long previousVersion = versionFile.increment();
+        synchronized (this) {
+            if (clear) {
+                knownValues.clear();
+            }
+            for (Map.Entry<String, Object> modification : modifications.entrySet()) {
+                if (modification.getValue() == null) {
+                    knownValues.remove(modification.getKey());
+                } else {
+                    knownValues.put(modification.getKey(), modification.getValue());
+                }
+            }
+            if (previousVersion == knownVersion) {
+                knownVersion = previousVersion + 1;
+            }
+        }
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        sync();
+        return preferences.getAll();
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        sync();
+        return preferences.getString(key, defValue);
+    }
+
+    @Override
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+        sync();
+        return preferences.getStringSet(key, defValues);
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        sync();
+        return preferences.getInt(key, defValue);
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        sync();
+        return preferences.getLong(key, defValue);
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        sync();
+        return preferences.getFloat(key, defValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        sync();
+        return preferences.getBoolean(key, defValue);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        sync();
+        return preferences.contains(key);
+    }
+
+    @Override
+    public Editor edit() {
+        sync();
+        return new BufferedEditor() {
+            @Override
+            protected void write(Map<String, Object> modifications, boolean clear, boolean commit) {
+                MultiProcessPreferenceStore.this.write(modifications, clear, commit);
+            }
+        };
+    }
+
+    private void write(final Map<String, Object> modifications, final boolean clear, boolean commit) {
+        final SharedPreferences target = preferences;
+        SharedPreferences.Editor editor = target.edit();
+        if (clear) {
+            editor.clear();
+        }
+        BufferedEditor.putAll(editor, modifications);
+        if (commit) {
+            editor.commit();
+            publish(modifications, clear);
+        } else {
+            editor.apply();
+            PUBLISHER.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // disk writes of the platform preferences are queued in order, an empty commit waits for the
+                    // apply above without writing anything
+                    target.edit().commit();
+                    publish(modifications, clear);
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits until the applied modifications are on disk and published to the other processes.
+     */
+    @Override
+    public void flush() {
+        FutureTask<Void> barrier = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                // the publisher runs in order, all earlier applies are published once it gets here
+            }
+        }, null);
+        PUBLISHER.execute(barrier);
+        try {
+            barrier.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        preferences.registerOnSharedPreferenceChangeListener(listener);
+        listeners.register(listener);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        preferences.unregisterOnSharedPreferenceChangeListener(listener);
+        listeners.unregister(listener);
+    }
+
+    /**
+     * The version counter shared by all processes. There is one instance per file in a process, it remembers which
+     * versions were written by this process.
+     */
+    private static class VersionFile {
+        private final File file;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+        private long lastLocalVersion = -1;
+        private long lastExternalVersion = -1;
+
+        VersionFile(File file) {
+            this.file = file;
+            try {
+                File directory = file.getParentFile();
+                if (directory != null && !directory.exists() && !directory.mkdirs()) {
+                    throw new IOException("Could not create directory " + directory);
+                }
+                RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+                channel = randomAccessFile.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+            } catch (IOException e) {
+                // without the counter changes of other processes are not noticed, but the preferences keep working
+                Log.w(TAG, "Version file " + file + " could not be opened.", e);
+            }
+        }
+
+        synchronized long read() {
+            return buffer != null ? buffer.getLong(0) : 0;
+        }
+
+        /**
+         * @return the version before the increment
+         */
+        synchronized long increment() {
+            long result = lastLocalVersion;
+            if (buffer != null) {
+                FileLock lock = null;
+                try {
+                    lock = channel.lock();
+                    result = buffer.getLong(0);
+                    if (result != lastLocalVersion) {
+                        lastExternalVersion = result;
+                    }
+                    buffer.putLong(0, result + 1);
+                    lastLocalVersion = result + 1;
+                } catch (IOException e) {
+                    Log.w(TAG, "Version file " + file + " could not be locked.", e);
+                } finally {
+                    if (lock != null) {
+                        try {
+                            lock.release();
+                        } catch (IOException e) {
+                            Log.w(TAG, "Version file " + file + " could not be unlocked.", e);
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return true if any version after knownVersion up to version was written by another process
+         */
+        synchronized boolean isExternal(long knownVersion, long version) {
+            return version != lastLocalVersion || lastExternalVersion > knownVersion;
+        }
+    }
+}
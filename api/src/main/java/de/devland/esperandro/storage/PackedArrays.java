@@ -0,0 +1,258 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.SharedPreferences;
+import android.util.Base64;
+import de.devland.esperandro.LegacyValues;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Compact string encoding for int and long arrays and lists. The element count is written first, followed by the
+ * zigzag encoded elements as varints, so small values of either sign take a single byte. The result is Base64
+ * encoded to fit into a String preference.
+ * <p>
+ * Values that were stored as JSON by earlier versions are decoded with the current serializer by the {@code read}
+ * methods and rewritten in the packed format. The {@code unpack} methods treat them as missing.
+ */
+public final class PackedArrays {
+
+    private PackedArrays() {
+    }
+
+    public static String pack(int[] values) {
+        if (values == null) {
+            return null;
+        }
+        Writer writer = new Writer(values.length, 5);
+        for (int value : values) {
+            writer.write(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        }
+        return writer.toString();
+    }
+
+    public static String pack(long[] values) {
+        if (values == null) {
+            return null;
+        }
+        Writer writer = new Writer(values.length, 10);
+        for (long value : values) {
+            writer.write((value << 1) ^ (value >> 63));
+        }
+        return writer.toString();
+    }
+
+    public static String packIntegers(Collection<Integer> values) {
+        if (values == null) {
+            return null;
+        }
+        Writer writer = new Writer(values.size(), 5);
+        for (Integer value : values) {
+            if (value == null) {
+                throw new IllegalArgumentException("Collections with null elements cannot be packed.");
+            }
+            writer.write(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        }
+        return writer.toString();
+    }
+
+    public static String packLongs(Collection<Long> values) {
+        if (values == null) {
+            return null;
+        }
+        Writer writer = new Writer(values.size(), 10);
+        for (Long value : values) {
+            if (value == null) {
+                throw new IllegalArgumentException("Collections with null elements cannot be packed.");
+            }
+            writer.write((value << 1) ^ (value >> 63));
+        }
+        return writer.toString();
+    }
+
+    public static int[] readIntArray(SharedPreferences store, String key) {
+        String packed = store.getString(key, null);
+        if (isLegacy(packed)) {
+            int[] legacy = LegacyValues.deserialize(packed, int[].class);
+            if (legacy != null) {
+                LegacyValues.rewrite(store, key, pack(legacy));
+            }
+            return legacy;
+        }
+        return unpackIntArray(packed);
+    }
+
+    public static long[] readLongArray(SharedPreferences store, String key) {
+        String packed = store.getString(key, null);
+        if (isLegacy(packed)) {
+            long[] legacy = LegacyValues.deserialize(packed, long[].class);
+            if (legacy != null) {
+                LegacyValues.rewrite(store, key, pack(legacy));
+            }
+            return legacy;
+        }
+        return unpackLongArray(packed);
+    }
+
+    public static ArrayList<Integer> readIntegerList(SharedPreferences store, String key) {
+        String packed = store.getString(key, null);
+        if (isLegacy(packed)) {
+            // generic preferences were serialized in a container object
+            LegacyIntegerList legacy = LegacyValues.deserialize(packed, LegacyIntegerList.class);
+            if (legacy != null && legacy.value != null) {
+                LegacyValues.rewrite(store, key, packIntegers(legacy.value));
+                return legacy.value;
+            }
+            return null;
+        }
+        return unpackIntegerList(packed);
+    }
+
+    public static ArrayList<Long> readLongList(SharedPreferences store, String key) {
+        String packed = store.getString(key, null);
+        if (isLegacy(packed)) {
+            LegacyLongList legacy = LegacyValues.deserialize(packed, LegacyLongList.class);
+            if (legacy != null && legacy.value != null) {
+                LegacyValues.rewrite(store, key, packLongs(legacy.value));
+                return legacy.value;
+            }
+            return null;
+        }
+        return unpackLongList(packed);
+    }
+
+    public static int[] unpackIntArray(String packed) {
+        Reader reader = Reader.of(packed);
+        if (reader == null) {
+            return null;
+        }
+        int[] result = new int[reader.length];
+        for (int i = 0; i < result.length; i++) {
+            int value = (int) reader.read();
+            result[i] = (value >>> 1) ^ -(value & 1);
+        }
+        return result;
+    }
+
+    public static long[] unpackLongArray(String packed) {
+        Reader reader = Reader.of(packed);
+        if (reader == null) {
+            return null;
+        }
+        long[] result = new long[reader.length];
+        for (int i = 0; i < result.length; i++) {
+            long value = reader.read();
+            result[i] = (value >>> 1) ^ -(value & 1);
+        }
+        return result;
+    }
+
+    public static ArrayList<Integer> unpackIntegerList(String packed) {
+        Reader reader = Reader.of(packed);
+        if (reader == null) {
+            return null;
+        }
+        ArrayList<Integer> result = new ArrayList<Integer>(reader.length);
+        for (int i = 0; i < reader.length; i++) {
+            int value = (int) reader.read();
+            result.add((value >>> 1) ^ -(value & 1));
+        }
+        return result;
+    }
+
+    public static ArrayList<Long> unpackLongList(String packed) {
+        Reader reader = Reader.of(packed);
+        if (reader == null) {
+            return null;
+        }
+        ArrayList<Long> result = new ArrayList<Long>(reader.length);
+        for (int i = 0; i < reader.length; i++) {
+            long value = reader.read();
+            result.add((value >>> 1) ^ -(value & 1));
+        }
+        return result;
+    }
+
+    private static boolean isLegacy(String packed) {
+        return packed != null && (packed.startsWith("{") || packed.startsWith("["));
+    }
+
+    static class LegacyIntegerList {
+        public ArrayList<Integer> value;
+    }
+
+    static class LegacyLongList {
+        public ArrayList<Long> value;
+    }
+
+    private static class Writer {
+        private byte[] buffer;
+        private int position;
+
+        Writer(int length, int maxBytesPerElement) {
+            buffer = new byte[5 + length * maxBytesPerElement];
+            write(length);
+        }
+
+        void write(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        @Override
+        public String toString() {
+            return Base64.encodeToString(buffer, 0, position, Base64.NO_WRAP);
+        }
+    }
+
+    private static class Reader {
+        private final byte[] buffer;
+        private final int length;
+        private int position;
+
+        private Reader(byte[] buffer) {
+            this.buffer = buffer;
+            this.length = (int) read();
+        }
+
+        static Reader of(String packed) {
+            if (packed == null || isLegacy(packed)) {
+                return null;
+            }
+            return new Reader(Base64.decode(packed, Base64.NO_WRAP));
+        }
+
+        long read() {
+            long result = 0;
+            int shift = 0;
+            byte current;
+            do {
+                if (position >= buffer.length) {
+                    throw new IllegalArgumentException("Packed array is truncated.");
+                }
+                current = buffer[position++];
+                result |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.SharedPreferences;
+import android.util.Base64;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * All {@code int}, {@code long}, {@code float} and {@code boolean} preferences of an interface annotated with
+ * {@link de.devland.esperandro.annotations.experimental.PackedPrimitives}, stored as one Base64 encoded binary record
+ * under a single key. The record is decoded once into primitive slots and only decoded again if the stored value
+ * changed, e.g. because the preferences were cleared. Every write encodes and stores the complete record.
+ * <p>
+ * Every present value is written as {@code [name hash][type][value]}, so records written by other versions of the
+ * interface can still be read: values of removed preferences are dropped and added preferences start out missing.
+ * If there is no record yet, values stored under the individual keys are moved into it.
+ */
+public class PackedRecord {
+    public static final byte TYPE_INT = 1;
+    public static final byte TYPE_LONG = 2;
+    public static final byte TYPE_FLOAT = 3;
+    public static final byte TYPE_BOOLEAN = 4;
+
+    private static final int ENTRY_HEADER_SIZE = 5;
+
+    private final String key;
+    private final String[] names;
+    private final int[] nameHashes;
+    private final byte[] types;
+    private final long[] values;
+    private final boolean[] present;
+    private boolean decoded;
+    private String decodedFrom;
+
+    /**
+     * @param key   the key the record is stored under
+     * @param names the keys of the packed preferences, the index of a preference is used by all accessors
+     * @param types the types of the packed preferences, one of the {@code TYPE_} constants
+     */
+    public PackedRecord(String key, String[] names, byte[] types) {
+        this.key = key;
+        this.names = names;
+        this.types = types;
+        this.nameHashes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            nameHashes[i] = names[i].hashCode();
+        }
+        this.values = new long[names.length];
+        this.present = new boolean[names.length];
+    }
+
+    public synchronized boolean contains(SharedPreferences preferences, int index) {
+        refresh(preferences);
+        return present[index];
+    }
+
+    public synchronized int getInt(SharedPreferences preferences, int index, int defValue) {
+        refresh(preferences);
+        return present[index] ? (int) values[index] : defValue;
+    }
+
+    public synchronized long getLong(SharedPreferences preferences, int index, long defValue) {
+        refresh(preferences);
+        return present[index] ? values[index] : defValue;
+    }
+
+    public synchronized float getFloat(SharedPreferences preferences, int index, float defValue) {
+        refresh(preferences);
+        return present[index] ? Float.intBitsToFloat((int) values[index]) : defValue;
+    }
+
+    public synchronized boolean getBoolean(SharedPreferences preferences, int index, boolean defValue) {
+        refresh(preferences);
+        return present[index] ? values[index] != 0 : defValue;
+    }
+
+    /**
+     * @param commit true if the record has to be committed instead of applied
+     * @return the result of the commit, always true if the record is applied
+     */
+    public synchronized boolean putInt(SharedPreferences preferences, int index, int value, boolean commit) {
+        return put(preferences, index, value, commit);
+    }
+
+    public synchronized boolean putLong(SharedPreferences preferences, int index, long value, boolean commit) {
+        return put(preferences, index, value, commit);
+    }
+
+    public synchronized boolean putFloat(SharedPreferences preferences, int index, float value, boolean commit) {
+        return put(preferences, index, Float.floatToRawIntBits(value), commit);
+    }
+
+    public synchronized boolean putBoolean(SharedPreferences preferences, int index, boolean value, boolean commit) {
+        return put(preferences, index, value ? 1 : 0, commit);
+    }
+
+    /**
+     * Stores the record with the given value in an editor that is applied by the caller, so it can be written
+     * together with other preferences. Several values can be put into the same editor.
+     */
+    public synchronized void putInt(SharedPreferences preferences, int index, int value,
+                                    SharedPreferences.Editor editor) {
+        put(preferences, index, value, editor);
+    }
+
+    public synchronized void putLong(SharedPreferences preferences, int index, long value,
+                                     SharedPreferences.Editor editor) {
+        put(preferences, index, value, editor);
+    }
+
+    public synchronized void putFloat(SharedPreferences preferences, int index, float value,
+                                      SharedPreferences.Editor editor) {
+        put(preferences, index, Float.floatToRawIntBits(value), editor);
+    }
+
+    public synchronized void putBoolean(SharedPreferences preferences, int index, boolean value,
+                                        SharedPreferences.Editor editor) {
+        put(preferences, index, value ? 1 : 0, editor);
+    }
+
+    public synchronized boolean remove(SharedPreferences preferences, int index, boolean commit) {
+        refresh(preferences);
+        present[index] = false;
+        return write(preferences.edit(), commit);
+    }
+
+    private boolean put(SharedPreferences preferences, int index, long value, boolean commit) {
+        refresh(preferences);
+        values[index] = value;
+        present[index] = true;
+        return write(preferences.edit(), commit);
+    }
+
+    private void put(SharedPreferences preferences, int index, long value, SharedPreferences.Editor editor) {
+        refresh(preferences);
+        values[index] = value;
+        present[index] = true;
+        // the stored record is only replaced once the editor is applied, until then the slots are ahead of it
+        editor.putString(key, encode());
+    }
+
+    private boolean write(SharedPreferences.Editor editor, boolean commit) {
+        String encoded = encode();
+        decodedFrom = encoded;
+        editor.putString(key, encoded);
+        if (commit) {
+            return editor.commit();
+        }
+        editor.apply();
+        return true;
+    }
+
+    private void refresh(SharedPreferences preferences) {
+        String current = preferences.getString(key, null);
+        // stores hand out the instance that was put, so the comparison usually ends with the identity check
+        boolean changed = current != decodedFrom && (current == null || !current.equals(decodedFrom));
+        if (!decoded || changed) {
+            decoded = true;
+            decodedFrom = current;
+            decode(current);
+            if (current == null) {
+                moveIndividualValues(preferences);
+            }
+        }
+    }
+
+    private void decode(String encoded) {
+        for (int i = 0; i < present.length; i++) {
+            present[i] = false;
+        }
+        if (encoded == null) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.decode(encoded, Base64.NO_WRAP));
+            int expected = 0;
+            while (buffer.remaining() >= ENTRY_HEADER_SIZE) {
+                int hash = buffer.getInt();
+                byte type = buffer.get();
+                long value;
+                switch (type) {
+                    case TYPE_LONG:
+                        value = buffer.getLong();
+                        break;
+                    case TYPE_BOOLEAN:
+                        value = buffer.get();
+                        break;
+                    default:
+                        value = buffer.getInt();
+                        break;
+                }
+                // entries are written in slot order, so the next slot is the one to check first
+                int index = expected < nameHashes.length && nameHashes[expected] == hash ? expected : indexOf(hash);
+                if (index >= 0 && types[index] == type) {
+                    values[index] = value;
+                    present[index] = true;
+                    expected = index + 1;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // not a packed record, treat as empty
+        } catch (BufferUnderflowException e) {
+            // truncated record, keep what was decoded so far
+        }
+    }
+
+    private String encode() {
+        int size = 0;
+        for (int i = 0; i < present.length; i++) {
+            if (present[i]) {
+                size += ENTRY_HEADER_SIZE + valueSize(types[i]);
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < present.length; i++) {
+            if (present[i]) {
+                buffer.putInt(nameHashes[i]).put(types[i]);
+                switch (types[i]) {
+                    case TYPE_LONG:
+                        buffer.putLong(values[i]);
+                        break;
+                    case TYPE_BOOLEAN:
+                        buffer.put((byte) values[i]);
+                        break;
+                    default:
+                        buffer.putInt((int) values[i]);
+                        break;
+                }
+            }
+        }
+        return Base64.encodeToString(buffer.array(), Base64.NO_WRAP);
+    }
+
+    private void moveIndividualValues(SharedPreferences preferences) {
+        Map<String, ?> all = null;
+        SharedPreferences.Editor editor = null;
+        for (int i = 0; i < names.length; i++) {
+            if (preferences.contains(names[i])) {
+                if (all == null) {
+                    all = preferences.getAll();
+                    editor = preferences.edit();
+                }
+                Object value = all.get(names[i]);
+                if (types[i] == TYPE_INT && value instanceof Integer) {
+                    values[i] = (Integer) value;
+                    present[i] = true;
+                } else if (types[i] == TYPE_LONG && value instanceof Long) {
+                    values[i] = (Long) value;
+                    present[i] = true;
+                } else if (types[i] == TYPE_FLOAT && value instanceof Float) {
+                    values[i] = Float.floatToRawIntBits((Float) value);
+                    present[i] = true;
+                } else if (types[i] == TYPE_BOOLEAN && value instanceof Boolean) {
+                    values[i] = (Boolean) value ? 1 : 0;
+                    present[i] = true;
+                }
+                editor.remove(names[i]);
+            }
+        }
+        if (editor != null) {
+            write(editor, false);
+        }
+    }
+
+    private int indexOf(int hash) {
+        for (int i = 0; i < nameHashes.length; i++) {
+            if (nameHashes[i] == hash) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int valueSize(byte type) {
+        return type == TYPE_LONG ? 8 : (type == TYPE_BOOLEAN ? 1 : 4);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.SharedPreferences;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Waits for values written by {@link SharedPreferences.Editor#apply()} to be persisted. Used by the generated
+ * {@link de.devland.esperandro.SharedPreferenceActions#flush()}, so preferences can be applied everywhere and only
+ * checkpoints like a logout have to wait for the disk.
+ */
+public final class PendingWrites {
+
+    private static final ExecutorService FLUSHER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "esperandro-flusher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private PendingWrites() {
+    }
+
+    /**
+     * Blocks until all modifications applied to the given stores before the call are persisted.
+     * {@link FlushablePreferenceStore}s are flushed, all other stores get an empty commit. The platform preferences
+     * write commits and applies in order, so the commit returns after all earlier applies.
+     */
+    public static void flush(SharedPreferences... stores) {
+        for (SharedPreferences store : stores) {
+            if (store instanceof FlushablePreferenceStore) {
+                ((FlushablePreferenceStore) store).flush();
+            } else {
+                store.edit().commit();
+            }
+        }
+    }
+
+    /**
+     * Runs the given action on a background thread after all modifications applied to the given stores before the
+     * call are persisted, e.g. to delete data the previous values referenced.
+     */
+    public static void afterFlush(final Runnable action, final SharedPreferences... stores) {
+        FLUSHER.execute(new Runnable() {
+            @Override
+            public void run() {
+                flush(stores);
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Like {@link #flush(SharedPreferences...)}, but gives up after the given time. The flush is done on a background
+     * thread and continues after a timeout.
+     *
+     * @return true if all modifications were persisted in time, false otherwise
+     */
+    public static boolean await(long timeoutMillis, final SharedPreferences... stores) {
+        FutureTask<Void> flush = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                flush(stores);
+            }
+        }, null);
+        FLUSHER.execute(flush);
+        boolean result = false;
+        try {
+            flush.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            result = true;
+        } catch (TimeoutException e) {
+            // the values are still written, just later
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Pending writes could not be persisted.", e.getCause());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.WeakHashMap;
+
+/**
+ * Change listeners of a {@link PreferenceStore}. Like in the platform implementation listeners are only weakly
+ * referenced and called on the main thread.
+ */
+class PreferenceListeners {
+
+    private final WeakHashMap<SharedPreferences.OnSharedPreferenceChangeListener, Object> listeners =
+            new WeakHashMap<SharedPreferences.OnSharedPreferenceChangeListener, Object>();
+
+    public synchronized void register(SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        listeners.put(listener, this);
+    }
+
+    public synchronized void unregister(SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Calls all listeners registered at the time of the call once per changed key.
+     */
+    public void notify(final SharedPreferences source, final List<String> changedKeys) {
+        final List<SharedPreferences.OnSharedPreferenceChangeListener> listenersToNotify;
+        synchronized (this) {
+            if (listeners.isEmpty() || changedKeys.isEmpty()) {
+                return;
+            }
+            listenersToNotify = new ArrayList<SharedPreferences.OnSharedPreferenceChangeListener>(listeners.keySet());
+        }
+        Runnable notification = new Runnable() {
+            @Override
+            public void run() {
+                for (String key : changedKeys) {
+                    for (SharedPreferences.OnSharedPreferenceChangeListener listener : listenersToNotify) {
+                        listener.onSharedPreferenceChanged(source, key);
+                    }
+                }
+            }
+        };
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            notification.run();
+        } else {
+            new Handler(Looper.getMainLooper()).post(notification);
+        }
+    }
+}
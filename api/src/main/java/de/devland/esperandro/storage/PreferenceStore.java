@@ -0,0 +1,30 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.SharedPreferences;
+
+/**
+ * Storage backend beneath generated preference implementations. Generated code only talks to this interface, so the
+ * storage can be replaced per preference interface via {@link de.devland.esperandro.annotations.SharedPreferences#store()}
+ * without touching the interface definitions.
+ * <p>
+ * The contract is the one of {@link SharedPreferences}: typed getters, {@link #contains(String)}, an {@link Editor} for
+ * typed puts, removals and batch commits, and change listeners. Implementations therefore stay usable wherever
+ * Android APIs expect SharedPreferences, e.g. through {@link de.devland.esperandro.SharedPreferenceActions#get()}.
+ */
+public interface PreferenceStore extends SharedPreferences {
+}
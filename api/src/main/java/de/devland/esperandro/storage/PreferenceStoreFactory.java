@@ -0,0 +1,33 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.Context;
+import de.devland.esperandro.SharedPreferenceMode;
+
+/**
+ * Creates the {@link PreferenceStore} of a preference interface. Implementations need a public no-arg constructor.
+ */
+public interface PreferenceStoreFactory {
+
+    /**
+     * @param context the context the preferences are created for
+     * @param name    the name of the preferences, for the default preferences {@code <packageName>_preferences}
+     * @param mode    the declared mode
+     * @return the store, called once per generated instance
+     */
+    PreferenceStore create(Context context, String name, SharedPreferenceMode mode);
+}
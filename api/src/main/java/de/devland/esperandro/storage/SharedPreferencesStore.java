@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import de.devland.esperandro.SharedPreferenceMode;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The default {@link PreferenceStore}, backed by the platform SharedPreferences.
+ */
+public class SharedPreferencesStore implements PreferenceStore {
+
+    private final SharedPreferences preferences;
+
+    public SharedPreferencesStore(SharedPreferences preferences) {
+        this.preferences = preferences;
+    }
+
+    /**
+     * @return the wrapped platform preferences
+     */
+    public SharedPreferences getSharedPreferences() {
+        return preferences;
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        return preferences.getAll();
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        return preferences.getString(key, defValue);
+    }
+
+    @Override
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+        return preferences.getStringSet(key, defValues);
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        return preferences.getInt(key, defValue);
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        return preferences.getLong(key, defValue);
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        return preferences.getFloat(key, defValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        return preferences.getBoolean(key, defValue);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return preferences.contains(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return preferences.edit();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        preferences.registerOnSharedPreferenceChangeListener(listener);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        preferences.unregisterOnSharedPreferenceChangeListener(listener);
+    }
+
+    /**
+     * Creates stores backed by {@link Context#getSharedPreferences(String, int)}, or by
+     * {@link PreferenceManager#getDefaultSharedPreferences(Context)} for the default preferences.
+     * {@link SharedPreferenceMode#MULTI_PROCESS} preferences are wrapped in a {@link MultiProcessPreferenceStore}.
+     */
+    public static class Factory implements PreferenceStoreFactory {
+
+        @Override
+        public PreferenceStore create(Context context, String name, SharedPreferenceMode mode) {
+            if (mode == SharedPreferenceMode.MULTI_PROCESS) {
+                return new MultiProcessPreferenceStore(context, name);
+            }
+            SharedPreferences preferences;
+            if (name.equals(context.getPackageName() + "_preferences")) {
+                preferences = PreferenceManager.getDefaultSharedPreferences(context);
+            } else {
+                preferences = context.getSharedPreferences(name, mode.getSharedPreferenceMode());
+            }
+            return new SharedPreferencesStore(preferences);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.SharedPreferences;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only SharedPreferences over the values of a single {@link SharedPreferences#getAll()} call. Generated snapshots
+ * read all their values from it, so they see one consistent state and the store is only accessed once.
+ * <p>
+ * Like the platform implementation, reading a value with a different type throws a {@link ClassCastException}.
+ */
+public class SnapshotPreferences implements SharedPreferences {
+
+    private final Map<String, ?> values;
+
+    public SnapshotPreferences(Map<String, ?> values) {
+        this.values = values;
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        return values;
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        String value = (String) values.get(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+        Set<String> value = (Set<String>) values.get(key);
+        return value != null ? value : defValues;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        Integer value = (Integer) values.get(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        Long value = (Long) values.get(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        Float value = (Float) values.get(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Boolean value = (Boolean) values.get(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        throw new UnsupportedOperationException("Snapshots are read-only.");
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        // the values never change
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        // the values never change
+    }
+}
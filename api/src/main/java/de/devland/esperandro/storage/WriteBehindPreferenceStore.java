@@ -0,0 +1,343 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.storage;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A {@link PreferenceStore} buffering applied values in memory before they are handed to another store, used for
+ * {@link de.devland.esperandro.annotations.experimental.WriteBehind}.
+ * <p>
+ * The first applied change of a buffered key starts its interval, all further changes within the interval only replace
+ * the buffered value. Once the interval has passed the value is applied to the wrapped store on the main thread, so
+ * the wrapped store sees at most one write per key and interval. Reads return buffered values first. Commits, clears
+ * and keys without interval are passed through immediately, a commit also writes all buffered values.
+ * <p>
+ * Buffered values are written when the application is asked to trim memory, as the process may be killed afterwards,
+ * and when the store is {@link #flush() flushed}. All stores of the process share one registration for the former and
+ * are only weakly referenced by it. Change listeners are registered at the wrapped store and notified once the values
+ * are written.
+ */
+public class WriteBehindPreferenceStore implements FlushablePreferenceStore {
+
+    private static final Set<WriteBehindPreferenceStore> STORES =
+            Collections.newSetFromMap(new WeakHashMap<WriteBehindPreferenceStore, Boolean>());
+    private static Context trimCallbacksContext;
+
+    private final PreferenceStore store;
+    private final long defaultIntervalMillis;
+    private final Map<String, Long> intervals = new HashMap<String, Long>();
+    private final Map<String, Object> pending = new LinkedHashMap<String, Object>();
+    private final Map<String, Long> deadlines = new HashMap<String, Long>();
+    private final Map<Runnable, Long> waitingActions = new LinkedHashMap<Runnable, Long>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable writeDue = new Runnable() {
+        @Override
+        public void run() {
+            writePending(false);
+        }
+    };
+
+    /**
+     * @param store                 the store values are written to
+     * @param defaultIntervalMillis the interval of all keys without their own one, negative if they are not buffered
+     */
+    public WriteBehindPreferenceStore(Context context, PreferenceStore store, long defaultIntervalMillis) {
+        this.store = store;
+        this.defaultIntervalMillis = defaultIntervalMillis;
+        Context application = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        synchronized (STORES) {
+            STORES.add(this);
+            if (trimCallbacksContext != application) {
+                application.registerComponentCallbacks(new ComponentCallbacks2() {
+                    @Override
+                    public void onTrimMemory(int level) {
+                        writeAllPending();
+                    }
+
+                    @Override
+                    public void onLowMemory() {
+                        writeAllPending();
+                    }
+
+                    @Override
+                    public void onConfigurationChanged(Configuration newConfig) {
+                        // not relevant
+                    }
+                });
+                trimCallbacksContext = application;
+            }
+        }
+    }
+
+    private static void writeAllPending() {
+        List<WriteBehindPreferenceStore> stores;
+        synchronized (STORES) {
+            stores = new ArrayList<WriteBehindPreferenceStore>(STORES);
+        }
+        for (WriteBehindPreferenceStore store : stores) {
+            store.writePending(true);
+        }
+    }
+
+    /**
+     * Sets the interval of a single key.
+     *
+     * @return this store
+     */
+    public WriteBehindPreferenceStore buffer(String key, long intervalMillis) {
+        synchronized (this) {
+            intervals.put(key, intervalMillis);
+        }
+        return this;
+    }
+
+    private long intervalOf(String key) {
+        Long interval = intervals.get(key);
+        return interval != null ? interval : defaultIntervalMillis;
+    }
+
+    /**
+     * @param all true if all buffered values have to be written, false for those with a passed interval
+     */
+    private synchronized void writePending(boolean all) {
+        long now = SystemClock.uptimeMillis();
+        Map<String, Object> due = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, Object> entry : pending.entrySet()) {
+            if (all || deadlines.get(entry.getKey()) <= now) {
+                due.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!due.isEmpty()) {
+            pending.keySet().removeAll(due.keySet());
+            deadlines.keySet().removeAll(due.keySet());
+            Editor editor = store.edit();
+            BufferedEditor.putAll(editor, due);
+            editor.apply();
+        }
+        releaseWaitingActions(all, now);
+        schedule();
+    }
+
+    /**
+     * Runs the given action on a background thread once all values buffered before the call were written to the
+     * wrapped store and persisted there. Unlike {@link #flush()} this does not write them before their interval has
+     * passed, e.g. to delete data the previous values referenced.
+     */
+    public synchronized void afterWrite(Runnable action) {
+        if (pending.isEmpty()) {
+            PendingWrites.afterFlush(action, store);
+        } else {
+            long latestDeadline = Long.MIN_VALUE;
+            for (long deadline : deadlines.values()) {
+                latestDeadline = Math.max(latestDeadline, deadline);
+            }
+            waitingActions.put(action, latestDeadline);
+        }
+    }
+
+    /**
+     * Hands the actions waiting for values that were written to the wrapped store to {@link PendingWrites}, which
+     * runs them after the values are persisted.
+     */
+    private void releaseWaitingActions(boolean all, long now) {
+        Iterator<Map.Entry<Runnable, Long>> iterator = waitingActions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Runnable, Long> waitingAction = iterator.next();
+            if (all || waitingAction.getValue() <= now) {
+                PendingWrites.afterFlush(waitingAction.getKey(), store);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void schedule() {
+        handler.removeCallbacks(writeDue);
+        long next = Long.MAX_VALUE;
+        for (long deadline : deadlines.values()) {
+            next = Math.min(next, deadline);
+        }
+        if (next != Long.MAX_VALUE) {
+            handler.postAtTime(writeDue, next);
+        }
+    }
+
+    private synchronized void write(Map<String, Object> modifications, boolean clear, boolean commit) {
+        Map<String, Object> direct = new LinkedHashMap<String, Object>();
+        if (clear) {
+            pending.clear();
+            deadlines.clear();
+        } else if (commit) {
+            direct.putAll(pending);
+            pending.clear();
+            deadlines.clear();
+        }
+        long now = SystemClock.uptimeMillis();
+        boolean rescheduled = false;
+        for (Map.Entry<String, Object> modification : modifications.entrySet()) {
+            String key = modification.getKey();
+            long interval = intervalOf(key);
+            if (clear || commit || interval < 0) {
+                direct.put(key, modification.getValue());
+            } else {
+                pending.put(key, modification.getValue());
+                if (!deadlines.containsKey(key)) {
+                    deadlines.put(key, now + interval);
+                    rescheduled = true;
+                }
+            }
+        }
+        if (rescheduled) {
+            schedule();
+        }
+        if (clear || !direct.isEmpty()) {
+            Editor editor = store.edit();
+            if (clear) {
+                editor.clear();
+            }
+            BufferedEditor.putAll(editor, direct);
+            if (commit) {
+                editor.commit();
+            } else {
+                editor.apply();
+            }
+        }
+        if (clear || commit) {
+            // nothing is buffered anymore
+            releaseWaitingActions(true, now);
+        }
+    }
+
+    /**
+     * Writes all buffered values and waits until they are persisted by the wrapped store.
+     */
+    @Override
+    public void flush() {
+        writePending(true);
+        PendingWrites.flush(store);
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        Map<String, Object> result = new HashMap<String, Object>(store.getAll());
+        for (Map.Entry<String, Object> entry : pending.entrySet()) {
+            if (entry.getValue() == null) {
+                result.remove(entry.getKey());
+            } else {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized String getString(String key, String defValue) {
+        if (pending.containsKey(key)) {
+            String value = (String) pending.get(key);
+            return value != null ? value : defValue;
+        }
+        return store.getString(key, defValue);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized Set<String> getStringSet(String key, Set<String> defValues) {
+        if (pending.containsKey(key)) {
+            Set<String> value = (Set<String>) pending.get(key);
+            return value != null ? value : defValues;
+        }
+        return store.getStringSet(key, defValues);
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defValue) {
+        if (pending.containsKey(key)) {
+            Integer value = (Integer) pending.get(key);
+            return value != null ? value : defValue;
+        }
+        return store.getInt(key, defValue);
+    }
+
+    @Override
+    public synchronized long getLong(String key, long defValue) {
+        if (pending.containsKey(key)) {
+            Long value = (Long) pending.get(key);
+            return value != null ? value : defValue;
+        }
+        return store.getLong(key, defValue);
+    }
+
+    @Override
+    public synchronized float getFloat(String key, float defValue) {
+        if (pending.containsKey(key)) {
+            Float value = (Float) pending.get(key);
+            return value != null ? value : defValue;
+        }
+        return store.getFloat(key, defValue);
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        if (pending.containsKey(key)) {
+            Boolean value = (Boolean) pending.get(key);
+            return value != null ? value : defValue;
+        }
+        return store.getBoolean(key, defValue);
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        if (pending.containsKey(key)) {
+            return pending.get(key) != null;
+        }
+        return store.contains(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new BufferedEditor() {
+            @Override
+            protected void write(Map<String, Object> modifications, boolean clear, boolean commit) {
+                WriteBehindPreferenceStore.this.write(modifications, clear, commit);
+            }
+        };
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        store.registerOnSharedPreferenceChangeListener(listener);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        store.unregisterOnSharedPreferenceChangeListener(listener);
+    }
+}
@@ -17,12 +17,29 @@ package de.devland.esperandro.serialization;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-public class GsonSerializer implements Serializer {
+/**
+ * Serializer based on Gson. The {@link TypeAdapter} of every serialized class is looked up once and kept for all
+ * further calls, so the given Gson instance must not be reconfigured afterwards.
+ */
+public class GsonSerializer implements ProjectingSerializer, WarmableSerializer {
 
-    private Gsonabc gson;
+    private Gson gson;
+    private final ConcurrentMap<Class<?>, TypeAdapter<?>> adapters = new ConcurrentHashMap<Class<?>, TypeAdapter<?>>();
 
     public GsonSerializer() {
         this.gson = new GsonBuilder().create();
@@ -33,16 +50,109 @@ public class GsonSerializer implements Serializer {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public String serialize(Object object) {
-        return gson.toJson(object);
+        if (object == null) {
+            return gson.toJson((Object) null);
+        }
+        TypeAdapter<Object> adapter = (TypeAdapter<Object>) adapterFor(object.getClass());
+        StringWriter writer = new StringWriter();
+        try {
+            JsonWriter jsonWriter = gson.newJsonWriter(writer);
+            // same as Gson.toJson
+            jsonWriter.setLenient(true);
+            adapter.write(jsonWriter, object);
+            jsonWriter.close();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return writer.toString();
     }
 
     @Override
     public <T> T deserialize(String serializedObject, Class<T> clazz) {
         T deserialized = null;
         if (serializedObject != null) {
-            deserialized = gson.fromJson(serializedObject, clazz);
+            JsonReader reader = gson.newJsonReader(new StringReader(serializedObject));
+            // same as Gson.fromJson
+            reader.setLenient(true);
+            try {
+                reader.peek();
+            } catch (EOFException e) {
+                // empty document, Gson.fromJson returns null as well
+                return null;
+            } catch (IOException e) {
+                throw new JsonSyntaxException(e);
+            }
+            try {
+                deserialized = adapterFor(clazz).read(reader);
+                if (reader.peek() != JsonToken.END_DOCUMENT) {
+                    throw new JsonIOException("JSON document was not fully consumed.");
+                }
+            } catch (IOException e) {
+                throw new JsonSyntaxException(e);
+            } catch (IllegalStateException e) {
+                throw new JsonSyntaxException(e);
+            }
+        }
+        return deserialized;
+    }
+
+    @Override
+    public <T> T deserializeField(String serializedObject, String[] path, Class<T> clazz) {
+        T deserialized = null;
+        if (serializedObject != null) {
+            JsonReader reader = gson.newJsonReader(new StringReader(serializedObject));
+            reader.setLenient(true);
+            try {
+                if (moveTo(reader, path)) {
+                    deserialized = adapterFor(clazz).read(reader);
+                }
+                reader.close();
+            } catch (IOException e) {
+                String message = String.format("Saved preference \"%s\" could not be parsed from JSON.",
+                        serializedObject);
+                throw new IllegalArgumentException(message, e);
+            }
         }
         return deserialized;
     }
+
+    @Override
+    public void warmUp(Class<?>... classes) {
+        for (Class<?> clazz : classes) {
+            adapterFor(clazz);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> TypeAdapter<T> adapterFor(Class<T> clazz) {
+        TypeAdapter<T> adapter = (TypeAdapter<T>) adapters.get(clazz);
+        if (adapter == null) {
+            adapter = gson.getAdapter(clazz);
+            adapters.putIfAbsent(clazz, adapter);
+        }
+        return adapter;
+    }
+
+    private static boolean moveTo(JsonReader reader, String[] path) throws IOException {
+        for (String fieldName : path) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return false;
+            }
+            reader.beginObject();
+            boolean found = false;
+            while (!found && reader.hasNext()) {
+                if (reader.nextName().equals(fieldName)) {
+                    found = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -15,15 +15,27 @@
  */
 package de.devland.esperandro.serialization;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-public class JacksonSerializer implements Serializer {
+/**
+ * Serializer based on Jackson. An {@link ObjectReader} and {@link ObjectWriter} is created once per serialized class
+ * and kept for all further calls, so the given ObjectMapper must not be reconfigured afterwards.
+ */
+public class JacksonSerializer implements ProjectingSerializer, WarmableSerializer {
 
-    private ObjectMapperabc objectMapper;
+    private ObjectMapper objectMapper;
+    private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<Class<?>, ObjectReader>();
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<Class<?>, ObjectWriter>();
 
     public JacksonSerializer() {
         objectMapper = new ObjectMapper();
@@ -36,7 +48,11 @@ public class JacksonSerializer implements Serializer {
     @Override
     public String serialize(Object object) {
         try {
-            return objectMapper.writeValueAsString(object);
+            if (object == null) {
+                return objectMapper.writeValueAsString(null);
+            } else {
+                return writerFor(object.getClass()).writeValueAsString(object);
+            }
         } catch (JsonProcessingException e) {
             String message = String.format("Object \"%s\" could not be written to a JSON String.", object);
             throw new IllegalArgumentException(message, e);
@@ -49,11 +65,84 @@ public class JacksonSerializer implements Serializer {
             if (serializedObject == null) {
                 return null;
             } else {
-                return objectMapper.readValue(serializedObject, clazz);
+                return readerFor(clazz).readValue(serializedObject);
             }
         } catch (IOException e) {
             String message = String.format("Saved preference \"%s\" could not be parsed from JSON.", serializedObject);
             throw new IllegalArgumentException(message, e);
         }
     }
+
+    @Override
+    public <T> T deserializeField(String serializedObject, String[] path, Class<T> clazz) {
+        if (serializedObject == null) {
+            return null;
+        }
+        try {
+            JsonParser parser = objectMapper.getFactory().createParser(serializedObject);
+            try {
+                parser.nextToken();
+                if (moveTo(parser, path)) {
+                    return readerFor(clazz).readValue(parser);
+                } else {
+                    return null;
+                }
+            } finally {
+                parser.close();
+            }
+        } catch (IOException e) {
+            String message = String.format("Saved preference \"%s\" could not be parsed from JSON.", serializedObject);
+            throw new IllegalArgumentException(message, e);
+        }
+    }
+
+    @Override
+    public void warmUp(Class<?>... classes) {
+        for (Class<?> clazz : classes) {
+            readerFor(clazz);
+            writerFor(clazz);
+        }
+    }
+
+    private ObjectReader readerFor(Class<?> clazz) {
+        ObjectReader reader = readers.get(clazz);
+        if (reader == null) {
+            // prefetches the root deserializer as DeserializationFeature.EAGER_DESERIALIZER_FETCH is on by default
+            reader = objectMapper.readerFor(clazz);
+            readers.putIfAbsent(clazz, reader);
+        }
+        return reader;
+    }
+
+    private ObjectWriter writerFor(Class<?> clazz) {
+        ObjectWriter writer = writers.get(clazz);
+        if (writer == null) {
+            // prefetches the root serializer as SerializationFeature.EAGER_SERIALIZER_FETCH is on by default
+            writer = objectMapper.writerFor(clazz);
+            writers.putIfAbsent(clazz, writer);
+        }
+        return writer;
+    }
+
+    private static boolean moveTo(JsonParser parser, String[] path) throws IOException {
+        for (String fieldName : path) {
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            boolean found = false;
+            while (!found && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String currentName = parser.getCurrentName();
+                parser.nextToken();
+                if (currentName.equals(fieldName)) {
+                    found = true;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
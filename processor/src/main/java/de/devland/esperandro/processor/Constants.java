@@ -3,11 +3,13 @@ package de.devland.esperandro.processor;
 import javax.lang.model.element.Modifier;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class Constants {
     public static final String RUNTIME_DEFAULT_SUFFIX = "$Default";
     public static final String IMPLEMENTATION_SUFFIX = "$$Impl";
+    public static final String SERIALIZED_TYPES_FIELD = "SERIALIZED_TYPES";
 
     public static final String[] STANDARD_IMPORTS = new String[]{"android.os.Build", "android.content.Context",
             "android.content.SharedPreferences", "android.annotation.SuppressLint"};
@@ -18,6 +20,44 @@ public class Constants {
     public static final Set<Modifier> MODIFIER_PUBLIC = new HashSet<Modifier>(Arrays.asList(Modifier.PUBLIC));
 
 
+    public static final String PREFERENCES_FIELD = "preferences";
+    public static final String SHARD_SEPARATOR = ".";
+    public static final String KEY_ALIASES_FIELD = "KEY_ALIASES";
+    public static final String MIGRATE_KEYS_METHOD = "__migrateKeys";
+    public static final String KEY_LISTENERS_FIELD = "__keyListeners";
+    public static final String COMPACT_KEY_PREFIX = "~";
+    public static final String PACKED_RECORD_FIELD = "__record";
+    public static final String PACKED_RECORD_KEY = "__packed";
+    public static final String SNAPSHOT_METHOD = "snapshot";
+    public static final String SNAPSHOT_CLASS = "Snapshot";
+    public static final String VALUE_LISTENERS_FIELD = "__valueListeners";
+    public static final String BATCH_LISTENERS_FIELD = "__batchListeners";
+    public static final String MIGRATIONS_FIELD = "__migrations";
+    public static final String CONTEXT_FIELD = "__context";
+    public static final String PROVIDER_LOCK_FIELD = "__providerLock";
+    public static final String VALUE_LISTENER_PREFIX = "on";
+    public static final String VALUE_LISTENER_REMOVAL_PREFIX = "unregisterOn";
+    public static final String VALUE_LISTENER_SUFFIX = "Changed";
+    public static final String PUBLISHER_SUFFIX = "Publisher";
+    public static final int COMPACT_KEY_RANGE = 36 * 36 * 36 * 36 * 36;
+
+    public static final String STRINGSET_ADD_PREFIX = "addTo";
+    public static final String STRINGSET_REMOVE_PREFIX = "removeFrom";
+    public static final String STRINGSET_CONTAINS_SUFFIX = "Contains";
+    public static final String NUMERIC_INCREMENT_PREFIX = "increment";
+    public static final String NUMERIC_COMPARE_AND_SET_PREFIX = "compareAndSet";
+    public static final String NUMERIC_UPDATE_PREFIX = "update";
+    public static final List<String> NUMERIC_UPDATE_PREFIXES = Arrays.asList(NUMERIC_INCREMENT_PREFIX,
+            NUMERIC_COMPARE_AND_SET_PREFIX, NUMERIC_UPDATE_PREFIX);
+    public static final int LOCK_STRIPES = 16;
+
     public static final String DECLARED_TYPENAME_STRING = "java.lang.String";
     public static final String DECLARED_TYPENAME_STRINGSET = "java.util.Set<java.lang.String>";
+    public static final String DECLARED_TYPENAME_BYTE_ARRAY = "byte[]";
+    public static final String DECLARED_TYPENAME_DATE = "java.util.Date";
+    public static final String DECLARED_TYPENAME_PREFERENCE_MAP = "de.devland.esperandro.PreferenceMap";
+    public static final Set<String> DECLARED_TYPENAMES_INT_LIST = new HashSet<String>(Arrays.asList(
+            "java.util.List<java.lang.Integer>", "java.util.ArrayList<java.lang.Integer>"));
+    public static final Set<String> DECLARED_TYPENAMES_LONG_LIST = new HashSet<String>(Arrays.asList(
+            "java.util.List<java.lang.Long>", "java.util.ArrayList<java.lang.Long>"));
 }
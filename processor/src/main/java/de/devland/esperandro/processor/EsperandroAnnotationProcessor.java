@@ -18,21 +18,53 @@
 package de.devland.esperandro.processor;
 
 import com.squareup.javapoet.*;
+import de.devland.esperandro.BatchListeners;
 import de.devland.esperandro.CacheActions;
+import de.devland.esperandro.KeyAliases;
+import de.devland.esperandro.MigrationActions;
+import de.devland.esperandro.MigrationConverter;
+import de.devland.esperandro.Migrations;
+import de.devland.esperandro.OnBatchChangeListener;
 import de.devland.esperandro.SharedPreferenceActions;
 import de.devland.esperandro.SharedPreferenceMode;
+import de.devland.esperandro.ValueChangeListener;
+import de.devland.esperandro.ValueListeners;
+import de.devland.esperandro.annotations.experimental.Blob;
 import de.devland.esperandro.annotations.experimental.Cached;
+import de.devland.esperandro.annotations.experimental.CoalesceChanges;
+import de.devland.esperandro.annotations.experimental.CompactKeys;
 import de.devland.esperandro.annotations.experimental.GenerateStringResources;
+import de.devland.esperandro.annotations.experimental.MigrateFrom;
+import de.devland.esperandro.annotations.experimental.PackedPrimitives;
+import de.devland.esperandro.annotations.experimental.SchemaVersion;
+import de.devland.esperandro.annotations.experimental.WriteBehind;
+import de.devland.esperandro.annotations.DefaultProvider;
+import de.devland.esperandro.annotations.EnumByOrdinal;
+import de.devland.esperandro.annotations.Projection;
+import de.devland.esperandro.annotations.Shard;
 import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.reactive.PreferencePublisher;
+import de.devland.esperandro.reactive.Publisher;
+import de.devland.esperandro.storage.BlobStore;
+import de.devland.esperandro.storage.MultiProcessPreferenceStore;
+import de.devland.esperandro.storage.PackedRecord;
+import de.devland.esperandro.storage.PendingWrites;
+import de.devland.esperandro.storage.PreferenceStore;
+import de.devland.esperandro.storage.SharedPreferencesStore;
+import de.devland.esperandro.storage.SnapshotPreferences;
+import de.devland.esperandro.storage.WriteBehindPreferenceStore;
 
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.*;
+import javax.lang.model.type.MirroredTypeException;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -50,6 +82,8 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
     private Warner warner;
     private GetterGenerator getterGenerator;
     private PutterGenerator putterGenerator;
+    private Map<String, TypeName> listenerMethodTypes;
+    private Map<String, Element> listenerMethodElements;
     private Map<TypeMirror, Element> rootElements;
     private String resDirLocation;
     private static final String STRING_RESOURCES_HINT = "<!--generated by esperandro-->\n";
@@ -78,17 +112,34 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
                     if (interfaze.getKind() == ElementKind.INTERFACE && interfaze.getAnnotation(SharedPreferences
                             .class) != null) {
                         try {
+                            SharedPreferences prefAnnotation = interfaze.getAnnotation(SharedPreferences.class);
+                            TypeName storeFactory = getStoreFactory(interfaze, prefAnnotation);
+                            KeyAnnotations keyAnnotations = new KeyAnnotations(
+                                    interfaze.getAnnotation(CompactKeys.class) != null,
+                                    interfaze.getAnnotation(PackedPrimitives.class) != null,
+                                    isMultiProcess(prefAnnotation, storeFactory));
+                            collectKeyAnnotations(interfaze, keyAnnotations);
                             // reinitialize getterGenerator and putter to start fresh for each interface
-                            getterGenerator = new GetterGenerator(warner);
-                            putterGenerator = new PutterGenerator();
+                            getterGenerator = new GetterGenerator(warner, keyAnnotations);
+                            putterGenerator = new PutterGenerator(keyAnnotations);
+                            listenerMethodTypes = new LinkedHashMap<String, TypeName>();
+                            listenerMethodElements = new HashMap<String, Element>();
                             Cached cacheAnnotation = interfaze.getAnnotation(Cached.class);
                             boolean caching = cacheAnnotation != null;
-                            TypeSpec.Builder type = initImplementation(interfaze, cacheAnnotation);
+                            TypeSpec.Builder type = initImplementation(interfaze, cacheAnnotation, keyAnnotations,
+                                    storeFactory);
                             processInterfaceMethods(interfaze, interfaze, type, cacheAnnotation);
-                            createGenericActions(type, caching);
+                            putterGenerator.createLocks(type);
+                            createKeyAliases(interfaze, type, keyAnnotations);
+                            createPackedRecord(interfaze, type, keyAnnotations);
+                            createSnapshot(interfaze, type, keyAnnotations);
+                            createValueListeners(type, keyAnnotations);
+                            createGenericActions(type, caching, keyAnnotations);
+                            createBatchListeners(interfaze, type, keyAnnotations);
                             createGenericClassImplementations(type);
+                            createSerializedTypes(type);
                             createDefaultConstructor(type, cacheAnnotation);
-                            finish(interfaze, type);
+                            finish(interfaze, type, keyAnnotations);
                             checkPreferenceKeys();
                         } catch (IOException e) {
                             throw new RuntimeException(e);
@@ -102,31 +153,318 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
         return false;
     }
 
+    /**
+     * Adds {@code snapshot()}, which reads every store once and returns the values of all preferences in a generated
+     * immutable class.
+     */
+    private void createSnapshot(Element interfaze, TypeSpec.Builder type, KeyAnnotations keyAnnotations) {
+        Set<String> keys = getterGenerator.getPlainGetterKeys();
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (keyAnnotations.containsKey(Constants.SNAPSHOT_METHOD)) {
+            warner.emitWarning("No snapshot() is generated, '" + Constants.SNAPSHOT_METHOD
+                    + "' is used as preference name.", interfaze);
+            return;
+        }
+        ClassName sharedPreferences = ClassName.get("android.content", "SharedPreferences");
+        // nested in the implementation, so the simple name is in scope
+        ClassName snapshotType = ClassName.get("", Constants.SNAPSHOT_CLASS);
+        TypeSpec.Builder snapshotClass = TypeSpec.classBuilder(Constants.SNAPSHOT_CLASS)
+                .addJavadoc("Values of all preferences at the time {@code snapshot()} was called.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+        MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE);
+        MethodSpec.Builder snapshot = MethodSpec.methodBuilder(Constants.SNAPSHOT_METHOD)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(snapshotType);
+        if (!keyAnnotations.migratedKeys().isEmpty()) {
+            // the snapshot reads every preference, so all of them are migrated at once
+            snapshot.addStatement("migrateAll()");
+        }
+        if (!keyAnnotations.packedKeys().isEmpty()) {
+            // moves values stored on their own into the record before the values are taken
+            snapshot.addStatement("$L.contains($L, 0)", Constants.PACKED_RECORD_FIELD, keyAnnotations.storeAccessFor(
+                    keyAnnotations.packedKeys().get(0)));
+        }
+        StringBuilder sources = new StringBuilder();
+        // only stores with values in the snapshot are read
+        Set<String> stores = new LinkedHashSet<String>();
+        for (String key : keys) {
+            stores.add(keyAnnotations.storeFor(key));
+        }
+        for (String store : stores) {
+            String source = snapshotSourceFor(store);
+            String storeAccess = keyAnnotations.storeAccess(store);
+            snapshot.addStatement("$T $L = new $T($L.getAll())", sharedPreferences, source, SnapshotPreferences.class,
+                    storeAccess);
+            constructor.addParameter(sharedPreferences, source);
+            sources.append(sources.length() > 0 ? ", " : "").append(source);
+        }
+        snapshot.addStatement("return new $T($L)", snapshotType, sources);
+
+        for (String key : keys) {
+            PreferenceTypeInformation typeInformation = getterGenerator.getPlainGetterType(key);
+            snapshotClass.addField(typeInformation.getType(), key, Modifier.PUBLIC, Modifier.FINAL);
+            constructor.addCode("{\n$>")
+                    .addCode(getterGenerator.createPlainRead(type, key, snapshotSourceFor(keyAnnotations.storeFor(key))));
+            if (typeInformation.getPreferenceType() == PreferenceType.STRINGSET) {
+                constructor.addStatement("__result = __result != null ? $T.unmodifiableSet(__result) : null",
+                        Collections.class);
+            }
+            constructor.addStatement("this.$L = __result", key)
+                    .addCode("$<}\n");
+        }
+        snapshotClass.addMethod(constructor.build());
+        type.addType(snapshotClass.build());
+        type.addMethod(snapshot.build());
+    }
+
+    /**
+     * @return the variable holding the values of the given store while a snapshot is created
+     */
+    private static String snapshotSourceFor(String store) {
+        return "__" + store.replace("__", "") + "Values";
+    }
+
+    /**
+     * @return true if the method is one of {@code on<Key>Changed}, {@code unregisterOn<Key>Changed} or
+     * {@code <key>Publisher}, they are implemented once all preferences are known
+     */
+    private static boolean isValueListenerMethod(String methodName, List<TypeName> parameterTypes,
+                                                 TypeName returnType) {
+        boolean result = false;
+        if (methodName.endsWith(Constants.VALUE_LISTENER_SUFFIX) && (methodName.startsWith(
+                Constants.VALUE_LISTENER_PREFIX) || methodName.startsWith(Constants.VALUE_LISTENER_REMOVAL_PREFIX))) {
+            result = returnType.equals(TypeName.VOID) && parameterTypes.size() == 1
+                    && rawType(parameterTypes.get(0)).equals(ClassName.get(ValueChangeListener.class));
+        } else if (methodName.endsWith(Constants.PUBLISHER_SUFFIX)) {
+            result = parameterTypes.isEmpty() && rawType(returnType).equals(ClassName.get(Publisher.class));
+        }
+        return result;
+    }
+
+    private static TypeName rawType(TypeName typeName) {
+        return typeName instanceof ParameterizedTypeName ? ((ParameterizedTypeName) typeName).rawType : typeName;
+    }
+
+    private void addListenerMethod(String methodName, List<TypeName> parameterTypes, TypeName returnType,
+                                   Element element) {
+        listenerMethodTypes.put(methodName, parameterTypes.isEmpty() ? returnType : parameterTypes.get(0));
+        listenerMethodElements.put(methodName, element);
+    }
+
+    /**
+     * @return true if the interface declares the given method with the expected type, it is no longer reported as
+     * unknown afterwards
+     */
+    private boolean isDeclaredListenerMethod(String methodName, TypeName expectedType) {
+        TypeName declaredType = listenerMethodTypes.remove(methodName);
+        if (declaredType != null && !declaredType.equals(expectedType)) {
+            warner.emitError("'" + methodName + "' has to use " + expectedType + ".",
+                    listenerMethodElements.get(methodName));
+            declaredType = null;
+        }
+        return declaredType != null;
+    }
+
+    /**
+     * Implements the {@code on<Key>Changed}, {@code unregisterOn<Key>Changed} and {@code <key>Publisher} methods
+     * declared by the interface, for preferences that can be read without arguments. The listeners are dispatched by
+     * {@link ValueListeners}, which reads the new value directly from the store, bypassing the cache. Only
+     * preferences with one of these methods are part of it.
+     */
+    private void createValueListeners(TypeSpec.Builder type, KeyAnnotations keyAnnotations) {
+        List<String> keys = new ArrayList<String>();
+        List<MethodSpec> methods = new ArrayList<MethodSpec>();
+        for (String key : getterGenerator.getPlainGetterKeys()) {
+            TypeName valueType = getterGenerator.getPlainGetterType(key).getObjectType();
+            TypeName listenerType = ParameterizedTypeName.get(ClassName.get(ValueChangeListener.class), valueType);
+            String suffix = Utils.createClassNameForPreference(key) + Constants.VALUE_LISTENER_SUFFIX;
+            String register = Constants.VALUE_LISTENER_PREFIX + suffix;
+            String unregister = Constants.VALUE_LISTENER_REMOVAL_PREFIX + suffix;
+            String publisher = key + Constants.PUBLISHER_SUFFIX;
+            boolean registerDeclared = isDeclaredListenerMethod(register, listenerType);
+            boolean unregisterDeclared = isDeclaredListenerMethod(unregister, listenerType);
+            TypeName publisherType = ParameterizedTypeName.get(ClassName.get(Publisher.class), valueType);
+            boolean publisherDeclared = isDeclaredListenerMethod(publisher, publisherType);
+            if (registerDeclared) {
+                methods.add(MethodSpec.methodBuilder(register)
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(listenerType, "listener")
+                        .addStatement("$L.register($S, listener, $L)", Constants.VALUE_LISTENERS_FIELD, key,
+                                keyAnnotations.storeFor(key))
+                        .build());
+            }
+            if (unregisterDeclared) {
+                methods.add(MethodSpec.methodBuilder(unregister)
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(listenerType, "listener")
+                        .addStatement("$L.unregister($S, listener)", Constants.VALUE_LISTENERS_FIELD, key)
+                        .build());
+            }
+            if (publisherDeclared) {
+                methods.add(MethodSpec.methodBuilder(publisher)
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(publisherType)
+                        .addStatement("return new $T<$T>($L, $S, $L)", PreferencePublisher.class, valueType,
+                                Constants.VALUE_LISTENERS_FIELD, key, keyAnnotations.storeFor(key))
+                        .build());
+            }
+            if (registerDeclared || unregisterDeclared || publisherDeclared) {
+                keys.add(key);
+            }
+        }
+        for (String methodName : listenerMethodTypes.keySet()) {
+            warner.emitError("No preference found for '" + methodName + "', it has to be readable without " +
+                    "arguments.", listenerMethodElements.get(methodName));
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        MethodSpec.Builder read = MethodSpec.methodBuilder("read")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PROTECTED)
+                .returns(Object.class)
+                .addParameter(String.class, "key")
+                .beginControlFlow("switch (key)");
+        CodeBlock.Builder names = CodeBlock.builder();
+        CodeBlock.Builder storedKeys = CodeBlock.builder();
+        for (String key : keys) {
+            read.beginControlFlow("case $S:", key);
+            if (keyAnnotations.migrationIndex(key) >= 0) {
+                read.addStatement("$L.migrate($L, $L)", Constants.MIGRATIONS_FIELD, keyAnnotations.storeAccessFor(key),
+                        keyAnnotations.migrationIndex(key));
+            }
+            read.addCode(getterGenerator.createPlainRead(type, key, keyAnnotations.storeAccessFor(key)))
+                    .addStatement("return __result")
+                    .endControlFlow();
+            String storedKey = keyAnnotations.packedIndex(key) >= 0 ? Constants.PACKED_RECORD_KEY
+                    : keyAnnotations.storedKey(key);
+            String separator = key.equals(keys.get(0)) ? "" : ", ";
+            names.add(separator + "$S", key);
+            storedKeys.add(separator + "$S", storedKey);
+        }
+        read.addCode("default:\n$>return null;\n$<")
+                .endControlFlow();
+        TypeSpec listeners = TypeSpec.anonymousClassBuilder("new String[]{$L}, new String[]{$L}", names.build(),
+                storedKeys.build())
+                .superclass(ValueListeners.class)
+                .addMethod(read.build())
+                .build();
+        type.addField(FieldSpec.builder(ValueListeners.class, Constants.VALUE_LISTENERS_FIELD, Modifier.PRIVATE,
+                Modifier.FINAL).initializer("$L", listeners).build());
+        type.addMethods(methods);
+    }
+
     private void createGenericClassImplementations(TypeSpec.Builder type) throws IOException {
-        for (String preferenceName : getterGenerator.getGenericTypeNames().keySet()) {
+        // preferences with only a putter need the container as well
+        Map<String, TypeName> genericTypeNames = new LinkedHashMap<String, TypeName>();
+        genericTypeNames.putAll(putterGenerator.getGenericTypeNames());
+        genericTypeNames.putAll(getterGenerator.getGenericTypeNames());
+        for (String preferenceName : genericTypeNames.keySet()) {
             TypeSpec innerGenericType = TypeSpec.classBuilder(preferenceName)
                     .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                     .addSuperinterface(Serializable.class)
-                    .addField(getterGenerator.getGenericTypeNames().get(preferenceName), "value", Modifier.PUBLIC)
+                    .addField(genericTypeNames.get(preferenceName), "value", Modifier.PUBLIC)
                     .build();
 
             type.addType(innerGenericType);
         }
     }
 
+    private void createSerializedTypes(TypeSpec.Builder type) {
+        // Object preferences that are only written have to be warmed up as well
+        Map<String, CodeBlock> serializedTypes = new LinkedHashMap<String, CodeBlock>();
+        serializedTypes.putAll(getterGenerator.getSerializedTypes());
+        serializedTypes.putAll(putterGenerator.getSerializedTypes());
+        CodeBlock.Builder initializer = CodeBlock.builder().add("{");
+        boolean first = true;
+        for (CodeBlock serializedType : serializedTypes.values()) {
+            initializer.add(first ? "$L" : ", $L", serializedType);
+            first = false;
+        }
+        TypeName classArray = ArrayTypeName.of(ParameterizedTypeName.get(ClassName.get(Class.class),
+                WildcardTypeName.subtypeOf(Object.class)));
+        type.addField(FieldSpec.builder(classArray, Constants.SERIALIZED_TYPES_FIELD, Modifier.PUBLIC,
+                Modifier.STATIC, Modifier.FINAL)
+                .initializer(initializer.add("}").build())
+                .build());
+    }
+
     private void preProcessEnvironment(RoundEnvironment roundEnv) {
         for (Element element : roundEnv.getRootElements()) {
             rootElements.put(element.asType(), element);
         }
     }
 
+    private void collectKeyAnnotations(Element currentInterface, KeyAnnotations keyAnnotations) {
+        for (Element element : currentInterface.getEnclosedElements()) {
+            if (element.getKind() == ElementKind.METHOD) {
+                keyAnnotations.add(element);
+            }
+        }
+
+        for (TypeMirror subInterfaceType : ((TypeElement) currentInterface).getInterfaces()) {
+            Element subInterface = rootElements.get(subInterfaceType);
+            String subInterfaceTypeName = subInterfaceType.toString();
+            if (!subInterfaceTypeName.equals(SharedPreferenceActions.class.getName()) &&
+                    !subInterfaceTypeName.equals(CacheActions.class.getName()) &&
+                    !subInterfaceTypeName.equals(MigrationActions.class.getName())) {
+                if (subInterface != null) {
+                    collectKeyAnnotations(subInterface, keyAnnotations);
+                } else {
+                    try {
+                        collectKeyAnnotationsReflection(Class.forName(subInterfaceTypeName), keyAnnotations);
+                    } catch (ClassNotFoundException e) {
+                        // reported during method processing
+                    }
+                }
+            }
+        }
+    }
+
+    private void collectKeyAnnotationsReflection(Class<?> interfaceClass, KeyAnnotations keyAnnotations) {
+        for (Method method : interfaceClass.getDeclaredMethods()) {
+            keyAnnotations.add(method);
+        }
+
+        for (Class<?> subInterfaceClass : interfaceClass.getInterfaces()) {
+            if (subInterfaceClass.getName() != null && !subInterfaceClass.getName().equals(SharedPreferenceActions
+                    .class.getName())) {
+                collectKeyAnnotationsReflection(subInterfaceClass, keyAnnotations);
+            }
+        }
+    }
+
     private void processInterfaceMethods(Element topLevelInterface, Element currentInterface,
                                          TypeSpec.Builder type, Cached cachedAnnotation) throws IOException {
         List<? extends Element> potentialMethods = currentInterface.getEnclosedElements();
         for (Element element : potentialMethods) {
             if (element.getKind() == ElementKind.METHOD) {
                 ExecutableElement method = (ExecutableElement) element;
-                if (putterGenerator.isPutter(method)) {
+                List<TypeName> parameterTypes = new ArrayList<TypeName>();
+                for (VariableElement parameter : method.getParameters()) {
+                    parameterTypes.add(TypeName.get(parameter.asType()));
+                }
+                String methodName = method.getSimpleName().toString();
+                TypeName returnType = TypeName.get(method.getReturnType());
+                if (method.getAnnotation(Projection.class) != null) {
+                    getterGenerator.createProjectionFromModel(method, type);
+                } else if (isValueListenerMethod(methodName, parameterTypes, returnType)) {
+                    addListenerMethod(methodName, parameterTypes, returnType, method);
+                } else if (putterGenerator.isStringSetMutator(method)) {
+                    putterGenerator.createStringSetMutatorFromModel(method, type, cachedAnnotation);
+                } else if (putterGenerator.isNumericUpdater(method)) {
+                    String ambiguity = putterGenerator.checkAmbiguousUpdater(method);
+                    if (ambiguity != null) {
+                        warner.emitWarning(ambiguity, method);
+                    }
+                    putterGenerator.createNumericUpdaterFromModel(method, type, cachedAnnotation);
+                } else if (putterGenerator.isPutter(method)) {
                     putterGenerator.createPutterFromModel(method, type, cachedAnnotation);
                 } else if (getterGenerator.isGetter(method)) {
                     getterGenerator.createGetterFromModel(method, type, cachedAnnotation != null);
@@ -141,7 +479,8 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
             Element subInterface = rootElements.get(subInterfaceType);
             String subInterfaceTypeName = subInterfaceType.toString();
             if (!subInterfaceTypeName.equals(SharedPreferenceActions.class.getName()) &&
-                    !subInterfaceTypeName.equals(CacheActions.class.getName())) {
+                    !subInterfaceTypeName.equals(CacheActions.class.getName()) &&
+                    !subInterfaceTypeName.equals(MigrationActions.class.getName())) {
                 if (subInterface != null) {
                     processInterfaceMethods(topLevelInterface, subInterface, type, cachedAnnotation);
                 } else {
@@ -161,7 +500,24 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
                                              TypeSpec.Builder type, Cached cachedAnnotation) throws IOException {
 
         for (Method method : interfaceClass.getDeclaredMethods()) {
-            if (putterGenerator.isPutter(method)) {
+            List<TypeName> parameterTypes = new ArrayList<TypeName>();
+            for (Type parameterType : method.getGenericParameterTypes()) {
+                parameterTypes.add(TypeName.get(parameterType));
+            }
+            TypeName returnType = TypeName.get(method.getGenericReturnType());
+            if (method.getAnnotation(Projection.class) != null) {
+                getterGenerator.createProjectionFromReflection(method, topLevelInterface, type);
+            } else if (isValueListenerMethod(method.getName(), parameterTypes, returnType)) {
+                addListenerMethod(method.getName(), parameterTypes, returnType, topLevelInterface);
+            } else if (putterGenerator.isStringSetMutator(method)) {
+                putterGenerator.createStringSetMutatorFromReflection(method, type, cachedAnnotation);
+            } else if (putterGenerator.isNumericUpdater(method)) {
+                String ambiguity = putterGenerator.checkAmbiguousUpdater(method);
+                if (ambiguity != null) {
+                    warner.emitWarning(ambiguity, topLevelInterface);
+                }
+                putterGenerator.createNumericUpdaterFromReflection(method, type, cachedAnnotation);
+            } else if (putterGenerator.isPutter(method)) {
                 putterGenerator.createPutterFromReflection(method, topLevelInterface, type, cachedAnnotation);
             } else if (getterGenerator.isGetter(method)) {
                 getterGenerator.createGetterFromReflection(method, topLevelInterface, type, cachedAnnotation != null);
@@ -181,7 +537,7 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
 
     private void checkPreferenceKeys() {
         for (String key : getterGenerator.getPreferenceKeys().keySet()) {
-            if (!putterGenerator.getPreferenceKeys().containsKey(key)) {
+            if (!putterGenerator.getPreferenceKeys().containsKey(key) && !getterGenerator.getMapKeys().contains(key)) {
                 warner.emitWarning("No putter found for getter '" + key + "'", getterGenerator.getPreferenceKeys().get(key));
             }
         }
@@ -193,7 +549,45 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
         }
     }
 
-    private TypeSpec.Builder initImplementation(Element interfaze, Cached cacheAnnotation) {
+    private TypeName getStoreFactory(Element interfaze, SharedPreferences prefAnnotation) {
+        TypeName result;
+        try {
+            result = TypeName.get(prefAnnotation.store());
+        } catch (MirroredTypeException e) {
+            // class literals of annotations are not loaded during annotation processing
+            TypeMirror storeFactory = e.getTypeMirror();
+            result = TypeName.get(storeFactory);
+            if (!isInstantiable(storeFactory)) {
+                warner.emitError("Store factory " + storeFactory + " needs a public no-arg constructor.", interfaze);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the given class can be created by generated code with a public no-arg constructor
+     */
+    private boolean isInstantiable(TypeMirror type) {
+        boolean hasPublicDefaultConstructor = false;
+        Element element = processingEnv.getTypeUtils().asElement(type);
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            hasPublicDefaultConstructor |= constructor.getParameters().isEmpty()
+                    && constructor.getModifiers().contains(Modifier.PUBLIC);
+        }
+        return hasPublicDefaultConstructor && !element.getModifiers().contains(Modifier.ABSTRACT);
+    }
+
+    /**
+     * @return true if the stores are created as {@link MultiProcessPreferenceStore}s. Custom stores decide on their
+     * own how to handle the mode.
+     */
+    private boolean isMultiProcess(SharedPreferences prefAnnotation, TypeName storeFactory) {
+        return prefAnnotation.mode() == SharedPreferenceMode.MULTI_PROCESS
+                && storeFactory.equals(ClassName.get(SharedPreferencesStore.Factory.class));
+    }
+
+    private TypeSpec.Builder initImplementation(Element interfaze, Cached cacheAnnotation,
+                                                KeyAnnotations keyAnnotations, TypeName storeFactory) {
         TypeSpec.Builder result;
         SharedPreferences prefAnnotation = interfaze.getAnnotation(SharedPreferences.class);
         String preferencesName = prefAnnotation.name();
@@ -206,23 +600,73 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
             QualifiedNameable qualifiedNameable = (QualifiedNameable) interfaze;
             boolean preferenceNamePresent = preferencesName != null && !preferencesName.equals("");
             String[] split = qualifiedNameable.getQualifiedName().toString().split("\\.");
+            ClassName storeType = keyAnnotations.isMultiProcess() ? ClassName.get(MultiProcessPreferenceStore.class)
+                    : ClassName.get(PreferenceStore.class);
             String typeName = split[split.length - 1] + Constants.IMPLEMENTATION_SUFFIX;
             result = TypeSpec.classBuilder(typeName)
                     .addModifiers(Modifier.PUBLIC)
                     .addSuperinterface(SharedPreferenceActions.class)
                     .addSuperinterface(TypeName.get(interfaze.asType()))
-                    .addField(ClassName.get("android.content", "SharedPreferences"), "preferences", Modifier.PRIVATE, Modifier.FINAL);
+                    .addField(storeType, Constants.PREFERENCES_FIELD, Modifier.PRIVATE, Modifier.FINAL);
             if (cacheAnnotation != null) {
                 result.addSuperinterface(CacheActions.class);
             }
             MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
                     .addModifiers(Modifier.PUBLIC)
                     .addParameter(ClassName.get("android.content", "Context"), "context");
-            if (preferenceNamePresent) {
-                constructor.addStatement("this.preferences = context.getSharedPreferences($S, $L)", preferencesName,
-                        mode.getSharedPreferenceModeStatement());
-            } else {
-                constructor.addStatement("this.preferences = $T.getDefaultSharedPreferences(context)", ClassName.get("android.preference", "PreferenceManager"));
+            String baseName = preferenceNamePresent ? preferencesName : "_preferences";
+            WriteBehind writeBehind = interfaze.getAnnotation(WriteBehind.class);
+            boolean writingBehind = writeBehind != null || !keyAnnotations.keysWith(WriteBehind.class).isEmpty();
+            if (writingBehind && keyAnnotations.isMultiProcess()) {
+                warner.emitWarning("@WriteBehind is ignored for MULTI_PROCESS preferences.", interfaze);
+                writingBehind = false;
+            }
+            long defaultInterval = writeBehind != null ? writeBehind.intervalMillis() : -1;
+            if (writeBehind != null && defaultInterval < 0) {
+                warner.emitError("The interval of @WriteBehind must not be negative.", interfaze);
+            }
+            CodeBlock store = createStore(baseName, preferenceNamePresent, storeFactory, mode, !preferenceNamePresent);
+            if (writingBehind) {
+                store = createWriteBehindStore(interfaze, store, Constants.PREFERENCES_FIELD, defaultInterval,
+                        keyAnnotations);
+            }
+            constructor.addStatement("this.$L = $L", Constants.PREFERENCES_FIELD, store);
+            for (String shard : keyAnnotations.shards()) {
+                if (!SourceVersion.isIdentifier(shard)) {
+                    warner.emitError("Shard name '" + shard + "' is not a valid Java identifier.", interfaze);
+                    continue;
+                }
+                result.addField(storeType, KeyAnnotations.shardField(shard), Modifier.PRIVATE, Modifier.FINAL);
+                CodeBlock shardStore = createStore(baseName + Constants.SHARD_SEPARATOR + shard, preferenceNamePresent,
+                        storeFactory, mode, false);
+                if (writingBehind) {
+                    shardStore = createWriteBehindStore(interfaze, shardStore, KeyAnnotations.shardField(shard),
+                            defaultInterval, keyAnnotations);
+                }
+                constructor.addStatement("this.$L = $L", KeyAnnotations.shardField(shard), shardStore);
+            }
+
+            createMigrations(interfaze, result, constructor, keyAnnotations);
+
+            if (!keyAnnotations.keysWith(DefaultProvider.class).isEmpty()) {
+                result.addField(ClassName.get("android.content", "Context"), Constants.CONTEXT_FIELD, Modifier.PRIVATE,
+                        Modifier.FINAL)
+                        .addField(FieldSpec.builder(Object.class, Constants.PROVIDER_LOCK_FIELD, Modifier.PRIVATE,
+                                Modifier.FINAL)
+                                .initializer("new $T()", Object.class)
+                                .build());
+                constructor.addStatement("this.$L = context.getApplicationContext() != null ? "
+                        + "context.getApplicationContext() : context", Constants.CONTEXT_FIELD);
+            }
+
+            if (!keyAnnotations.keysWith(Blob.class).isEmpty()) {
+                result.addField(BlobStore.class, "blobStore", Modifier.PRIVATE, Modifier.FINAL);
+                if (preferenceNamePresent) {
+                    constructor.addStatement("this.blobStore = new $T(context, $S)", BlobStore.class, preferencesName);
+                } else {
+                    constructor.addStatement("this.blobStore = new $T(context, context.getPackageName() + $S)",
+                            BlobStore.class, "_preferences");
+                }
             }
 
             if (cacheAnnotation != null) {
@@ -240,6 +684,9 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
                 result.addField(lruCache, "cache", Modifier.PRIVATE, Modifier.FINAL);
 
                 constructor.addStatement("cache = new LruCache<$T, $T>(cacheSize)", String.class, Object.class);
+                if (keyAnnotations.isMultiProcess()) {
+                    createCacheInvalidation(constructor, keyAnnotations);
+                }
             }
 
             result.addMethod(constructor.build());
@@ -250,6 +697,187 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
         return result;
     }
 
+    /**
+     * @return the creation of a store. Unnamed preferences are stored in files prefixed with the package name, like
+     * the default SharedPreferences.
+     */
+    private CodeBlock createStore(String name, boolean namePresent, TypeName storeFactory, SharedPreferenceMode mode,
+                                  boolean defaultSharedPreferences) {
+        CodeBlock nameBlock = namePresent ? CodeBlock.of("$S", name) :
+                CodeBlock.of("context.getPackageName() + $S", name);
+        CodeBlock result;
+        if (!storeFactory.equals(ClassName.get(SharedPreferencesStore.Factory.class))) {
+            result = CodeBlock.of("new $T().create(context, $L, $T.$L)", storeFactory, nameBlock,
+                    SharedPreferenceMode.class, mode.name());
+        } else if (mode == SharedPreferenceMode.MULTI_PROCESS) {
+            // the default preferences are loaded by name, MODE_MULTI_PROCESS is not available for them otherwise
+            result = CodeBlock.of("new $T(context, $L)", MultiProcessPreferenceStore.class, nameBlock);
+        } else if (defaultSharedPreferences) {
+            result = CodeBlock.of("new $T($T.getDefaultSharedPreferences(context))", SharedPreferencesStore.class,
+                    ClassName.get("android.preference", "PreferenceManager"));
+        } else {
+            result = CodeBlock.of("new $T(context.getSharedPreferences($L, $L))", SharedPreferencesStore.class,
+                    nameBlock, mode.getSharedPreferenceModeStatement());
+        }
+        return result;
+    }
+
+    /**
+     * @return the given store wrapped in a {@link WriteBehindPreferenceStore} buffering all keys of the field that have
+     * an interval. Packed keys are written together, so their record gets the shortest interval of them.
+     */
+    private CodeBlock createWriteBehindStore(Element interfaze, CodeBlock store, String field, long defaultInterval,
+                                             KeyAnnotations keyAnnotations) {
+        Map<String, Long> intervals = new LinkedHashMap<String, Long>();
+        for (String key : keyAnnotations.keysWith(WriteBehind.class)) {
+            if (!keyAnnotations.storeFor(key).equals(field)) {
+                continue;
+            }
+            long interval = keyAnnotations.get(key, WriteBehind.class).intervalMillis();
+            PreferenceTypeInformation type = keyAnnotations.typeOf(key);
+            if (interval < 0) {
+                warner.emitError("The interval of @WriteBehind on '" + key + "' must not be negative.", interfaze);
+            } else if (type != null && type.getPreferenceType() == PreferenceType.MAP) {
+                // every entry of a map is stored under its own key
+                warner.emitWarning("@WriteBehind is ignored on map preference '" + key + "', annotate the interface "
+                        + "instead.", interfaze);
+            } else if (keyAnnotations.packedIndex(key) >= 0) {
+                Long recordInterval = intervals.get(Constants.PACKED_RECORD_KEY);
+                if (recordInterval == null || interval < recordInterval) {
+                    intervals.put(Constants.PACKED_RECORD_KEY, interval);
+                }
+            } else {
+                intervals.put(keyAnnotations.storedKey(key), interval);
+            }
+        }
+        if (defaultInterval < 0 && intervals.isEmpty()) {
+            return store;
+        }
+        CodeBlock.Builder result = CodeBlock.builder()
+                .add("new $T(context, $L, $LL)", WriteBehindPreferenceStore.class, store, defaultInterval);
+        for (Map.Entry<String, Long> interval : intervals.entrySet()) {
+            result.add("\n$>$>.buffer($S, $LL)$<$<", interval.getKey(), interval.getValue());
+        }
+        return result.build();
+    }
+
+    /**
+     * Adds the {@link Migrations} of all preferences with {@link MigrateFrom} and {@code migrateAll()}. The getters
+     * migrate their preference on their own.
+     */
+    private void createMigrations(Element interfaze, TypeSpec.Builder type, MethodSpec.Builder constructor,
+                                  KeyAnnotations keyAnnotations) {
+        for (String key : keyAnnotations.keysWith(MigrateFrom.class)) {
+            if (keyAnnotations.migrationIndex(key) < 0) {
+                warner.emitWarning("@MigrateFrom is ignored on '" + key + "', map preferences and packed preferences "
+                        + "cannot be migrated.", interfaze);
+            }
+        }
+        List<String> keys = keyAnnotations.migratedKeys();
+        if (keys.isEmpty()) {
+            return;
+        }
+        SchemaVersion schemaVersion = interfaze.getAnnotation(SchemaVersion.class);
+        int version = schemaVersion != null ? schemaVersion.value() : 0;
+        if (version < 0) {
+            warner.emitError("The schema version must not be negative.", interfaze);
+        }
+        CodeBlock.Builder migrations = CodeBlock.builder()
+                .add("new $T($L, $L)", Migrations.class, Constants.PREFERENCES_FIELD, version);
+        CodeBlock.Builder stores = CodeBlock.builder();
+        String separator = "";
+        for (String key : keys) {
+            MigrateFrom migrateFrom = keyAnnotations.get(key, MigrateFrom.class);
+            CodeBlock.Builder arguments = CodeBlock.builder()
+                    .add("$S, $T.$L, $L", keyAnnotations.storedKey(key), Migrations.class, storedTypeOf(key,
+                            keyAnnotations), createConverter(interfaze, migrateFrom));
+            for (String previousKey : migrateFrom.value()) {
+                arguments.add(", $S", previousKey);
+            }
+            migrations.add("\n$>$>.add($L)$<$<", arguments.build());
+            stores.add(separator + "$L", keyAnnotations.storeAccessFor(key));
+            separator = ", ";
+        }
+        type.addSuperinterface(MigrationActions.class)
+                .addField(Migrations.class, Constants.MIGRATIONS_FIELD, Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.methodBuilder("migrateAll")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(void.class)
+                        .addStatement("$L.migrateAll($L)", Constants.MIGRATIONS_FIELD, stores.build())
+                        .build());
+        constructor.addStatement("this.$L = $L", Constants.MIGRATIONS_FIELD, migrations.build());
+    }
+
+    /**
+     * @return the creation of the converter of the given migration, null if values are taken over unchanged
+     */
+    private CodeBlock createConverter(Element interfaze, MigrateFrom migrateFrom) {
+        TypeName converter;
+        try {
+            converter = TypeName.get(migrateFrom.converter());
+        } catch (MirroredTypeException e) {
+            // class literals of annotations are not loaded during annotation processing
+            converter = TypeName.get(e.getTypeMirror());
+            if (!isInstantiable(e.getTypeMirror())) {
+                warner.emitError("Migration converter " + converter + " needs a public no-arg constructor.",
+                        interfaze);
+            }
+        }
+        return converter.equals(ClassName.get(MigrationConverter.Identity.class)) ? CodeBlock.of("null")
+                : CodeBlock.of("new $T()", converter);
+    }
+
+    /**
+     * @return the {@link Migrations} constant of the type the given preference is stored as
+     */
+    private static String storedTypeOf(String key, KeyAnnotations keyAnnotations) {
+        String methodSuffix = Utils.getMethodSuffix(keyAnnotations.typeOf(key).getPreferenceType());
+        if (keyAnnotations.typeOf(key).getPreferenceType() == PreferenceType.ENUM
+                && keyAnnotations.get(key, EnumByOrdinal.class) != null) {
+            methodSuffix = "Int";
+        }
+        return "TYPE_" + methodSuffix.replace("StringSet", "String_Set").toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Drops the cached values of keys that were written by other processes or instances, the stores report them
+     * before the next access returns.
+     */
+    private void createCacheInvalidation(MethodSpec.Builder constructor, KeyAnnotations keyAnnotations) {
+        ClassName sharedPreferences = ClassName.get("android.content", "SharedPreferences");
+        ClassName listenerType = ClassName.get("android.content", "SharedPreferences",
+                "OnSharedPreferenceChangeListener");
+        MethodSpec.Builder onChange = MethodSpec.methodBuilder("onSharedPreferenceChanged")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(void.class)
+                .addParameter(sharedPreferences, "sharedPreferences")
+                .addParameter(String.class, "key");
+        if (!keyAnnotations.packedKeys().isEmpty()) {
+            onChange.beginControlFlow("if (key.equals($S))", Constants.PACKED_RECORD_KEY)
+                    .addStatement("cache.evictAll()")
+                    .addStatement("return")
+                    .endControlFlow();
+        }
+        if (keyAnnotations.isCompactKeys()) {
+            onChange.addStatement("cache.remove($L.keyOf(key))", Constants.KEY_ALIASES_FIELD);
+        } else {
+            onChange.addStatement("cache.remove(key)");
+        }
+        TypeSpec invalidation = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(listenerType)
+                .addMethod(onChange.build())
+                .build();
+        constructor.addStatement("$T __invalidation = $L", listenerType, invalidation);
+        constructor.addStatement("$L.setInvalidationListener(__invalidation)", Constants.PREFERENCES_FIELD);
+        for (String shard : keyAnnotations.shards()) {
+            if (SourceVersion.isIdentifier(shard)) {
+                constructor.addStatement("$L.setInvalidationListener(__invalidation)", KeyAnnotations.shardField(shard));
+            }
+        }
+    }
+
     private void createDefaultConstructor(TypeSpec.Builder type, Cached cacheAnnotation) {
         if (cacheAnnotation != null) {
             MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
@@ -268,7 +896,26 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
     }
 
 
-    private void createGenericActions(TypeSpec.Builder type, boolean caching) throws IOException {
+    private void createGenericActions(TypeSpec.Builder type, boolean caching, KeyAnnotations keyAnnotations)
+            throws IOException {
+        List<String> stores = new ArrayList<String>();
+        stores.add(Constants.PREFERENCES_FIELD);
+        for (String shard : keyAnnotations.shards()) {
+            if (SourceVersion.isIdentifier(shard)) {
+                stores.add(KeyAnnotations.shardField(shard));
+            }
+        }
+        // keys are only known at runtime here, so sharded interfaces look up the store of a key
+        String keyStore = Constants.PREFERENCES_FIELD;
+        if (stores.size() > 1) {
+            keyStore = "__storeFor(key)";
+            createStoreLookup(type, keyAnnotations);
+        }
+        String storedKey = "key";
+        if (keyAnnotations.isCompactKeys()) {
+            keyStore = keyAnnotations.storeAccess(keyStore);
+            storedKey = Constants.KEY_ALIASES_FIELD + ".storedKey(key)";
+        }
 
         MethodSpec.Builder get = MethodSpec.methodBuilder("get")
                 .addAnnotation(Override.class)
@@ -280,41 +927,55 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
                 .addAnnotation(Override.class)
                 .addModifiers(Modifier.PUBLIC)
                 .returns(boolean.class)
-                .addParameter(String.class, "key")
-                .addStatement("return preferences.contains(key)");
+                .addParameter(String.class, "key");
 
         MethodSpec.Builder remove = MethodSpec.methodBuilder("remove")
                 .addAnnotation(Override.class)
                 .addModifiers(Modifier.PUBLIC)
                 .returns(void.class)
-                .addParameter(String.class, "key")
-                .addStatement("preferences.edit().remove(key).$L", PreferenceEditorCommitStyle.APPLY.getStatementPart());
+                .addParameter(String.class, "key");
+
+        List<String> packedKeys = keyAnnotations.packedKeys();
+        if (!packedKeys.isEmpty()) {
+            String recordStore = keyAnnotations.storeAccessFor(packedKeys.get(0));
+            createPackedIndexLookup(type, packedKeys);
+            contains.addStatement("int __index = __packedIndex(key)")
+                    .beginControlFlow("if (__index >= 0)")
+                    .addStatement("return $L.contains($L, __index)", Constants.PACKED_RECORD_FIELD, recordStore)
+                    .endControlFlow();
+            remove.addStatement("int __index = __packedIndex(key)")
+                    .beginControlFlow("if (__index >= 0)")
+                    .addStatement("$L.remove($L, __index, false)", Constants.PACKED_RECORD_FIELD, recordStore)
+                    .nextControlFlow("else");
+        }
+        contains.addStatement("return $L.contains($L)", keyStore, storedKey);
+        remove.addStatement("$L.edit().remove($L).$L", keyStore, storedKey,
+                PreferenceEditorCommitStyle.APPLY.getStatementPart());
+        if (!packedKeys.isEmpty()) {
+            remove.endControlFlow();
+        }
 
         MethodSpec.Builder registerListener = MethodSpec.methodBuilder("registerOnChangeListener")
                 .addAnnotation(Override.class)
                 .addModifiers(Modifier.PUBLIC)
                 .returns(void.class)
-                .addParameter(ClassName.get("android.content", "SharedPreferences.OnSharedPreferenceChangeListener"), "listener")
-                .addStatement("preferences.registerOnSharedPreferenceChangeListener(listener)");
+                .addParameter(ClassName.get("android.content", "SharedPreferences.OnSharedPreferenceChangeListener"), "listener");
 
         MethodSpec.Builder unregisterListener = MethodSpec.methodBuilder("unregisterOnChangeListener")
                 .addAnnotation(Override.class)
                 .addModifiers(Modifier.PUBLIC)
                 .returns(void.class)
-                .addParameter(ClassName.get("android.content", "SharedPreferences.OnSharedPreferenceChangeListener"), "listener")
-                .addStatement("preferences.unregisterOnSharedPreferenceChangeListener(listener)");
+                .addParameter(ClassName.get("android.content", "SharedPreferences.OnSharedPreferenceChangeListener"), "listener");
 
         MethodSpec.Builder clear = MethodSpec.methodBuilder("clear")
                 .addAnnotation(Override.class)
                 .addModifiers(Modifier.PUBLIC)
-                .returns(void.class)
-                .addStatement("preferences.edit().clear().$L", PreferenceEditorCommitStyle.APPLY.getStatementPart());
+                .returns(void.class);
 
         MethodSpec.Builder clearDefinedBuilder = MethodSpec.methodBuilder("clearDefined")
                 .addAnnotation(Override.class)
                 .addModifiers(Modifier.PUBLIC)
-                .returns(void.class)
-                .addStatement("SharedPreferences.Editor editor = preferences.edit()");
+                .returns(void.class);
 
         MethodSpec.Builder resetCache = MethodSpec.methodBuilder("resetCache")
                 .addAnnotation(Override.class)
@@ -323,11 +984,78 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
                 .addStatement("cache.evictAll()");
 
 
+        String listener = "listener";
+        if (keyAnnotations.isCompactKeys()) {
+            // listeners receive the preference names instead of the compact keys, the wrapper lives as long as the
+            // listener it was created for
+            ClassName listenerType = ClassName.get("android.content", "SharedPreferences.OnSharedPreferenceChangeListener");
+            type.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Map.class), listenerType,
+                    listenerType), Constants.KEY_LISTENERS_FIELD, Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("new $T<$T, $T>()", WeakHashMap.class, listenerType, listenerType)
+                    .build());
+            listener = "__listener";
+            registerListener.addStatement("$T $L", listenerType, listener)
+                    .beginControlFlow("synchronized ($L)", Constants.KEY_LISTENERS_FIELD)
+                    .addStatement("$L = $L.get(listener)", listener, Constants.KEY_LISTENERS_FIELD)
+                    .beginControlFlow("if ($L == null)", listener)
+                    .addStatement("$L = $L.translating(listener)", listener, Constants.KEY_ALIASES_FIELD)
+                    .addStatement("$L.put(listener, $L)", Constants.KEY_LISTENERS_FIELD, listener)
+                    .endControlFlow()
+                    .endControlFlow();
+            unregisterListener.addStatement("$T $L", listenerType, listener)
+                    .beginControlFlow("synchronized ($L)", Constants.KEY_LISTENERS_FIELD)
+                    .addStatement("$L = $L.remove(listener)", listener, Constants.KEY_LISTENERS_FIELD)
+                    .endControlFlow()
+                    .beginControlFlow("if ($L == null)", listener)
+                    .addStatement("return")
+                    .endControlFlow();
+        }
+        for (String store : stores) {
+            registerListener.addStatement("$L.registerOnSharedPreferenceChangeListener($L)", store, listener);
+            unregisterListener.addStatement("$L.unregisterOnSharedPreferenceChangeListener($L)", store, listener);
+            clear.addStatement("$L.edit().clear().$L", store, PreferenceEditorCommitStyle.APPLY.getStatementPart());
+            clearDefinedBuilder.addStatement("SharedPreferences.Editor $L = $L.edit()", editorFor(store),
+                    keyAnnotations.storeAccess(store));
+        }
+
+        // each store is cleared in its own transaction
         Set<String> preferenceNames = new LinkedHashSet<String>();
         preferenceNames.addAll(putterGenerator.getPreferenceKeys().keySet());
         preferenceNames.addAll(getterGenerator.getPreferenceKeys().keySet());
         for (String preferenceName : preferenceNames) {
-            clearDefinedBuilder.addStatement("editor.remove($S)", preferenceName);
+            clearDefinedBuilder.addStatement("$L.remove($S)", editorFor(keyAnnotations.storeFor(preferenceName)),
+                    keyAnnotations.storedKey(preferenceName));
+        }
+        if (!packedKeys.isEmpty()) {
+            clearDefinedBuilder.addStatement("editor.remove($S)", Constants.PACKED_RECORD_KEY);
+        }
+        Set<String> mapKeys = getterGenerator.getMapKeys();
+        for (String store : stores) {
+            boolean loopStarted = false;
+            for (String mapKey : mapKeys) {
+                if (keyAnnotations.storeFor(mapKey).equals(store)) {
+                    if (!loopStarted) {
+                        clearDefinedBuilder.beginControlFlow("for (String __key : $L.getAll().keySet())", store);
+                        loopStarted = true;
+                    }
+                    clearDefinedBuilder.beginControlFlow("if (__key.startsWith($S))",
+                            keyAnnotations.storedKey(mapKey) + ".")
+                            .addStatement("$L.remove(__key)", editorFor(store))
+                            .endControlFlow();
+                }
+            }
+            if (loopStarted) {
+                clearDefinedBuilder.endControlFlow();
+            }
+        }
+
+        Set<String> blobKeys = keyAnnotations.keysWith(Blob.class);
+        if (!blobKeys.isEmpty()) {
+            remove.addStatement("blobStore.delete(key)");
+            clear.addStatement("blobStore.clear()");
+            for (String blobKey : blobKeys) {
+                clearDefinedBuilder.addStatement("blobStore.delete($S)", blobKey);
+            }
         }
 
         if (caching) {
@@ -338,24 +1066,79 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
             }
         }
 
-        MethodSpec clearDefined = clearDefinedBuilder
-                .addStatement("editor.$L", PreferenceEditorCommitStyle.APPLY.getStatementPart())
-                .build();
+        for (String store : stores) {
+            clearDefinedBuilder.addStatement("$L.$L", editorFor(store), PreferenceEditorCommitStyle.APPLY.getStatementPart());
+        }
+        MethodSpec clearDefined = clearDefinedBuilder.build();
 
         MethodSpec.Builder initDefaultsBuilder = MethodSpec.methodBuilder("initDefaults")
                 .addAnnotation(Override.class)
                 .addModifiers(Modifier.PUBLIC)
                 .returns(void.class);
 
+        // like clearDefined, each store is written in its own transaction. Stored values are kept, so only the
+        // missing ones are written.
+        Set<String> defaultKeys = new LinkedHashSet<String>();
+        Set<String> defaultStores = new LinkedHashSet<String>();
         for (String preferenceKey : getterGenerator.getPreferenceKeys().keySet()) {
             if (putterGenerator.getPreferenceKeys().containsKey(preferenceKey)) {
-                initDefaultsBuilder.addStatement("this.$L(this.$L())", preferenceKey, preferenceKey);
+                defaultKeys.add(preferenceKey);
+                if (keyAnnotations.get(preferenceKey, DefaultProvider.class) == null) {
+                    defaultStores.add(keyAnnotations.storeFor(preferenceKey));
+                }
+            }
+        }
+        for (String store : defaultStores) {
+            initDefaultsBuilder.addStatement("SharedPreferences.Editor $L = $L.edit()", editorFor(store),
+                    keyAnnotations.storeAccess(store));
+        }
+        for (String preferenceKey : defaultKeys) {
+            if (keyAnnotations.get(preferenceKey, DefaultProvider.class) != null) {
+                // the getter stores the provided default itself
+                initDefaultsBuilder.addStatement("this.$L()", preferenceKey);
+                continue;
+            }
+            String storeAccess = keyAnnotations.storeAccessFor(preferenceKey);
+            int packedIndex = keyAnnotations.packedIndex(preferenceKey);
+            CodeBlock.Builder initDefault = CodeBlock.builder();
+            if (packedIndex >= 0) {
+                initDefault.beginControlFlow("if (!$L.contains($L, $L))", Constants.PACKED_RECORD_FIELD, storeAccess,
+                        packedIndex);
+            } else {
+                initDefault.beginControlFlow("if (!$L.contains($S))", storeAccess,
+                        keyAnnotations.storedKey(preferenceKey));
             }
+            initDefault.addStatement("$T __value = this.$L()", keyAnnotations.typeOf(preferenceKey).getType(),
+                    preferenceKey);
+            putterGenerator.addEditorPut(initDefault, preferenceKey, "__value",
+                    editorFor(keyAnnotations.storeFor(preferenceKey)));
+            initDefaultsBuilder.addCode(initDefault.endControlFlow().build());
+        }
+        for (String store : defaultStores) {
+            initDefaultsBuilder.addStatement("$L.$L", editorFor(store),
+                    PreferenceEditorCommitStyle.APPLY.getStatementPart());
         }
 
 
         MethodSpec initDefaults = initDefaultsBuilder.build();
 
+        StringBuilder storeList = new StringBuilder();
+        for (String store : stores) {
+            storeList.append(storeList.length() > 0 ? ", " : "").append(store);
+        }
+        MethodSpec.Builder flush = MethodSpec.methodBuilder("flush")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(void.class)
+                .addStatement("$T.flush($L)", PendingWrites.class, storeList);
+
+        MethodSpec.Builder awaitPendingWrites = MethodSpec.methodBuilder("awaitPendingWrites")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class)
+                .addParameter(long.class, "timeoutMillis")
+                .addStatement("return $T.await(timeoutMillis, $L)", PendingWrites.class, storeList);
+
         type.addMethod(get.build())
                 .addMethod(contains.build())
                 .addMethod(remove.build())
@@ -363,15 +1146,200 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
                 .addMethod(unregisterListener.build())
                 .addMethod(clear.build())
                 .addMethod(clearDefined)
-                .addMethod(initDefaults);
+                .addMethod(initDefaults)
+                .addMethod(flush.build())
+                .addMethod(awaitPendingWrites.build());
 
         if (caching) {
             type.addMethod(resetCache.build());
         }
     }
 
+    /**
+     * Adds the registration of {@link OnBatchChangeListener}s, which are notified by a single {@link BatchListeners}
+     * listening to all stores.
+     */
+    private void createBatchListeners(Element interfaze, TypeSpec.Builder type, KeyAnnotations keyAnnotations) {
+        CoalesceChanges coalesceChanges = interfaze.getAnnotation(CoalesceChanges.class);
+        long windowMillis = coalesceChanges != null ? coalesceChanges.windowMillis() : 0;
+        if (windowMillis < 0) {
+            warner.emitError("The window of @CoalesceChanges must not be negative.", interfaze);
+        }
+        CodeBlock.Builder keys = CodeBlock.builder();
+        CodeBlock.Builder storedKeys = CodeBlock.builder();
+        Set<String> preferenceNames = new LinkedHashSet<String>();
+        preferenceNames.addAll(getterGenerator.getPreferenceKeys().keySet());
+        preferenceNames.addAll(putterGenerator.getPreferenceKeys().keySet());
+        String separator = "";
+        for (String key : preferenceNames) {
+            String storedKey = keyAnnotations.packedIndex(key) >= 0 ? Constants.PACKED_RECORD_KEY
+                    : keyAnnotations.storedKey(key);
+            // keys stored under their name are reported as they are
+            if (!storedKey.equals(key)) {
+                String suffix = getterGenerator.getMapKeys().contains(key) ? "." : "";
+                keys.add(separator + "$S", key + suffix);
+                storedKeys.add(separator + "$S", storedKey + suffix);
+                separator = ", ";
+            }
+        }
+        type.addField(FieldSpec.builder(BatchListeners.class, Constants.BATCH_LISTENERS_FIELD, Modifier.PRIVATE,
+                Modifier.FINAL)
+                .initializer("new $T(new String[]{$L}, new String[]{$L}, $LL)", BatchListeners.class, keys.build(),
+                        storedKeys.build(), windowMillis)
+                .build());
+
+        StringBuilder stores = new StringBuilder(Constants.PREFERENCES_FIELD);
+        for (String shard : keyAnnotations.shards()) {
+            if (SourceVersion.isIdentifier(shard)) {
+                stores.append(", ").append(KeyAnnotations.shardField(shard));
+            }
+        }
+        type.addMethod(MethodSpec.methodBuilder("registerOnBatchChangeListener")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(OnBatchChangeListener.class, "listener")
+                .addStatement("$L.register(listener, $L)", Constants.BATCH_LISTENERS_FIELD, stores)
+                .build());
+        type.addMethod(MethodSpec.methodBuilder("unregisterOnBatchChangeListener")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(OnBatchChangeListener.class, "listener")
+                .addStatement("$L.unregister(listener)", Constants.BATCH_LISTENERS_FIELD)
+                .build());
+    }
+
+    private void createStoreLookup(TypeSpec.Builder type, KeyAnnotations keyAnnotations) {
+        Map<String, List<String>> keysByStore = new LinkedHashMap<String, List<String>>();
+        for (String key : keyAnnotations.keysWith(Shard.class)) {
+            String store = keyAnnotations.storeFor(key);
+            if (!keysByStore.containsKey(store)) {
+                keysByStore.put(store, new ArrayList<String>());
+            }
+            keysByStore.get(store).add(key);
+        }
+
+        MethodSpec.Builder storeFor = MethodSpec.methodBuilder("__storeFor")
+                .addModifiers(Modifier.PRIVATE)
+                .returns(PreferenceStore.class)
+                .addParameter(String.class, "key")
+                .beginControlFlow("switch (key)");
+        for (Map.Entry<String, List<String>> entry : keysByStore.entrySet()) {
+            for (String key : entry.getValue()) {
+                storeFor.addCode("case $S:\n", key);
+            }
+            storeFor.addStatement("$>return $L$<", entry.getKey());
+        }
+        storeFor.addCode("default:\n")
+                .addStatement("$>return $L$<", Constants.PREFERENCES_FIELD)
+                .endControlFlow();
+        type.addMethod(storeFor.build());
+    }
+
+    private void createKeyAliases(Element interfaze, TypeSpec.Builder type, KeyAnnotations keyAnnotations) {
+        if (!keyAnnotations.isCompactKeys()) {
+            return;
+        }
+        Set<String> preferenceNames = new LinkedHashSet<String>();
+        preferenceNames.addAll(getterGenerator.getPreferenceKeys().keySet());
+        preferenceNames.addAll(putterGenerator.getPreferenceKeys().keySet());
+        Map<String, String> keysByStoredKey = new HashMap<String, String>();
+        CodeBlock.Builder keys = CodeBlock.builder();
+        CodeBlock.Builder storedKeys = CodeBlock.builder();
+        for (String preferenceName : preferenceNames) {
+            String storedKey = keyAnnotations.storedKey(preferenceName);
+            String collidingKey = keysByStoredKey.put(storedKey, preferenceName);
+            if (collidingKey != null) {
+                warner.emitError("Preferences '" + collidingKey + "' and '" + preferenceName + "' have the same " +
+                        "compact key, one of them has to be renamed.", interfaze);
+            }
+            String suffix = getterGenerator.getMapKeys().contains(preferenceName) ? "." : "";
+            keys.add(keysByStoredKey.size() == 1 ? "$S" : ", $S", preferenceName + suffix);
+            storedKeys.add(keysByStoredKey.size() == 1 ? "$S" : ", $S", storedKey + suffix);
+        }
+        type.addField(FieldSpec.builder(KeyAliases.class, Constants.KEY_ALIASES_FIELD, Modifier.PUBLIC,
+                Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T(new String[]{$L}, new String[]{$L})", KeyAliases.class, keys.build(),
+                        storedKeys.build())
+                .build());
+
+        // every instance migrates each of its stores once, the flag is only read after that
+        TypeVariableName storeType = TypeVariableName.get("T", ClassName.get("android.content", "SharedPreferences"));
+        MethodSpec.Builder migrateKeys = MethodSpec.methodBuilder(Constants.MIGRATE_KEYS_METHOD)
+                .addModifiers(Modifier.PRIVATE)
+                .addTypeVariable(storeType)
+                .returns(storeType)
+                .addParameter(storeType, "store");
+        List<String> stores = new ArrayList<String>();
+        stores.add(Constants.PREFERENCES_FIELD);
+        for (String shard : keyAnnotations.shards()) {
+            if (SourceVersion.isIdentifier(shard)) {
+                stores.add(KeyAnnotations.shardField(shard));
+            }
+        }
+        for (String store : stores) {
+            String migratedField = "__" + store.replaceFirst("^__", "") + "KeysMigrated";
+            type.addField(boolean.class, migratedField, Modifier.PRIVATE, Modifier.VOLATILE);
+            migrateKeys.beginControlFlow("if (store == $L && !$L)", store, migratedField)
+                    .beginControlFlow("synchronized (this)")
+                    .beginControlFlow("if (!$L)", migratedField)
+                    .addStatement("$L.migrate(store)", Constants.KEY_ALIASES_FIELD)
+                    .addStatement("$L = true", migratedField)
+                    .endControlFlow()
+                    .endControlFlow()
+                    .endControlFlow();
+        }
+        migrateKeys.addStatement("return store");
+        type.addMethod(migrateKeys.build());
+    }
+
+    private void createPackedIndexLookup(TypeSpec.Builder type, List<String> packedKeys) {
+        MethodSpec.Builder packedIndex = MethodSpec.methodBuilder("__packedIndex")
+                .addModifiers(Modifier.PRIVATE)
+                .returns(int.class)
+                .addParameter(String.class, "key")
+                .beginControlFlow("switch (key)");
+        for (int i = 0; i < packedKeys.size(); i++) {
+            packedIndex.addCode("case $S:\n", packedKeys.get(i))
+                    .addStatement("$>return $L$<", i);
+        }
+        packedIndex.addCode("default:\n")
+                .addStatement("$>return -1$<")
+                .endControlFlow();
+        type.addMethod(packedIndex.build());
+    }
+
+    private void createPackedRecord(Element interfaze, TypeSpec.Builder type, KeyAnnotations keyAnnotations) {
+        List<String> packedKeys = keyAnnotations.packedKeys();
+        if (packedKeys.isEmpty()) {
+            return;
+        }
+        // the record identifies its values by the hash code of the stored key
+        Map<Integer, String> keysByHash = new HashMap<Integer, String>();
+        CodeBlock.Builder names = CodeBlock.builder();
+        CodeBlock.Builder types = CodeBlock.builder();
+        for (int i = 0; i < packedKeys.size(); i++) {
+            String key = packedKeys.get(i);
+            String collidingKey = keysByHash.put(keyAnnotations.storedKey(key).hashCode(), key);
+            if (collidingKey != null) {
+                warner.emitError("Preferences '" + collidingKey + "' and '" + key + "' have the same hash code in " +
+                        "the packed record, one of them has to be renamed.", interfaze);
+            }
+            String typeConstant = "TYPE_" + keyAnnotations.typeOf(key).getPreferenceType().name();
+            names.add(i == 0 ? "$S" : ", $S", keyAnnotations.storedKey(key));
+            types.add(i == 0 ? "$T.$L" : ", $T.$L", PackedRecord.class, typeConstant);
+        }
+        type.addField(FieldSpec.builder(PackedRecord.class, Constants.PACKED_RECORD_FIELD, Modifier.PRIVATE,
+                Modifier.FINAL)
+                .initializer("new $T($S, new String[]{$L}, new byte[]{$L})", PackedRecord.class,
+                        Constants.PACKED_RECORD_KEY, names.build(), types.build())
+                .build());
+    }
+
+    private static String editorFor(String store) {
+        return store.equals(Constants.PREFERENCES_FIELD) ? "editor" : store + "Editor";
+    }
 
-    private void finish(Element interfaze, TypeSpec.Builder type) throws IOException {
+    private void finish(Element interfaze, TypeSpec.Builder type, KeyAnnotations keyAnnotations) throws IOException {
         GenerateStringResources generateAnnotation = interfaze.getAnnotation(GenerateStringResources.class);
         QualifiedNameable qualifiedNameable = (QualifiedNameable) interfaze;
         String[] split = qualifiedNameable.getQualifiedName().toString().split("\\.");
@@ -390,11 +1358,12 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
         javaFile.writeTo(filer);
 
         if (generateAnnotation != null) {
-            generateStringResources(interfaze, generateAnnotation);
+            generateStringResources(interfaze, generateAnnotation, keyAnnotations);
         }
     }
 
-    private void generateStringResources(Element interfaze, GenerateStringResources generateAnnotation) throws IOException {
+    private void generateStringResources(Element interfaze, GenerateStringResources generateAnnotation,
+                                         KeyAnnotations keyAnnotations) throws IOException {
         if (resDirLocation != null && new File(resDirLocation, "values").exists()) {
             Path stringsPath = Paths.get(resDirLocation, "values",
                     generateAnnotation.filePrefix() + interfaze.getSimpleName() + ".xml");
@@ -418,8 +1387,9 @@ public class EsperandroAnnotationProcessor extends AbstractProcessor {
             allKeys.addAll(getterGenerator.getPreferenceKeys().keySet());
             allKeys.addAll(putterGenerator.getPreferenceKeys().keySet());
             for (String key : allKeys) {
+                // preference screens have to use the key the value is stored under
                 resFile.append("    <string translatable=\"false\" name=\"" + generateAnnotation.stringPrefix() + key + "\">"
-                        + key + "</string>\n");
+                        + keyAnnotations.storedKey(key) + "</string>\n");
             }
             resFile.append("</resources>");
 
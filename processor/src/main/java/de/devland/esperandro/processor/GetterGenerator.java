@@ -15,36 +15,62 @@
  */
 package de.devland.esperandro.processor;
 
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import de.devland.esperandro.EnumLookup;
 import de.devland.esperandro.Esperandro;
+import de.devland.esperandro.LegacyValues;
 import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.DefaultProvider;
+import de.devland.esperandro.annotations.EnumByOrdinal;
+import de.devland.esperandro.annotations.Projection;
+import de.devland.esperandro.annotations.experimental.Blob;
 import de.devland.esperandro.serialization.Serializer;
+import de.devland.esperandro.storage.BlobStore;
+import de.devland.esperandro.storage.PackedArrays;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.MirroredTypeException;
 import javax.lang.model.type.TypeMirror;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class GetterGenerator {
 
     private Warner warner;
+    private KeyAnnotations keyAnnotations;
 
     private Map<String, Element> preferenceKeys;
     private Map<String, TypeName> genericTypeNames;
+    private Map<String, CodeBlock> serializedTypes;
+    private Map<TypeName, String> enumLookups;
+    private Set<String> mapKeys;
+    private Map<String, PlainGetter> plainGetters;
 
-    public GetterGenerator(Warner warner) {
+    public GetterGenerator(Warner warner, KeyAnnotations keyAnnotations) {
         this.warner = warner;
+        this.keyAnnotations = keyAnnotations;
         preferenceKeys = new HashMap<String, Element>();
         genericTypeNames = new HashMap<String, TypeName>();
+        serializedTypes = new LinkedHashMap<String, CodeBlock>();
+        enumLookups = new HashMap<TypeName, String>();
+        mapKeys = new LinkedHashSet<String>();
+        plainGetters = new LinkedHashMap<String, PlainGetter>();
     }
 
     public boolean isGetter(ExecutableElement method) {
@@ -145,6 +171,25 @@ public class GetterGenerator {
         createGetter(defaultAnnotation, topLevelInterface, type, valueName, preferenceTypeInformation, runtimeDefault, caching);
     }
 
+    public void createProjectionFromModel(ExecutableElement method, TypeSpec.Builder type) {
+        if (method.getParameters() != null && !method.getParameters().isEmpty()) {
+            warner.emitError("Projections must not have parameters.", method);
+        } else {
+            createProjection(method.getAnnotation(Projection.class), method.getAnnotation(Default.class), method,
+                    type, method.getSimpleName().toString(), PreferenceTypeInformation.from(method.getReturnType()));
+        }
+    }
+
+    public void createProjectionFromReflection(Method method, Element topLevelInterface, TypeSpec.Builder type) {
+        if (method.getParameterTypes().length > 0) {
+            warner.emitError("Projection '" + method.getName() + "' must not have parameters.", topLevelInterface);
+        } else {
+            createProjection(method.getAnnotation(Projection.class), method.getAnnotation(Default.class),
+                    topLevelInterface, type, method.getName(),
+                    PreferenceTypeInformation.from(method.getGenericReturnType()));
+        }
+    }
+
     private PreferenceTypeInformation getPreferenceTypeFromMethod(ExecutableElement method) {
         TypeMirror returnType = method.getReturnType();
         return PreferenceTypeInformation.from(returnType);
@@ -153,8 +198,22 @@ public class GetterGenerator {
 
     private void createGetter(Default defaultAnnotation, Element element, TypeSpec.Builder type, String valueName,
                               PreferenceTypeInformation preferenceTypeInformation, boolean runtimeDefault, boolean caching) throws IOException {
+        if (preferenceTypeInformation.getPreferenceType() == PreferenceType.MAP) {
+            createMapGetter(defaultAnnotation, element, type, valueName, preferenceTypeInformation, runtimeDefault);
+            return;
+        }
         MethodSpec.Builder getterBuilder = initGetter(valueName, preferenceTypeInformation, runtimeDefault);
+        String store = keyAnnotations.storeAccessFor(valueName);
+        String storedKey = keyAnnotations.storedKey(valueName);
+        int packedIndex = keyAnnotations.packedIndex(valueName);
 
+        if (caching && keyAnnotations.isMultiProcess()) {
+            getterBuilder.addStatement("$L.sync()", keyAnnotations.storeFor(valueName));
+        }
+        int migrationIndex = keyAnnotations.migrationIndex(valueName);
+        if (migrationIndex >= 0) {
+            getterBuilder.addStatement("$L.migrate($L, $L)", Constants.MIGRATIONS_FIELD, store, migrationIndex);
+        }
         if (caching) {
             getterBuilder.addStatement("$T __result = ($T) cache.get($S)", preferenceTypeInformation.getObjectType(), preferenceTypeInformation.getObjectType(), valueName);
             getterBuilder.beginControlFlow("if (__result == null)");
@@ -162,40 +221,38 @@ public class GetterGenerator {
             getterBuilder.addStatement("$T __result", preferenceTypeInformation.getType());
         }
 
+        DefaultProvider defaultProvider = keyAnnotations.get(valueName, DefaultProvider.class);
+        boolean provided = defaultProvider != null && !runtimeDefault;
+        CodeBlock contains = packedIndex >= 0
+                ? CodeBlock.of("$L.contains($L, $L)", Constants.PACKED_RECORD_FIELD, store, packedIndex)
+                : CodeBlock.of("$L.contains($S)", store, storedKey);
         if (runtimeDefault) {
-            getterBuilder.beginControlFlow("if (preferences.contains($S))", valueName);
+            getterBuilder.beginControlFlow("if ($L)", contains);
+        } else if (provided) {
+            getterBuilder.beginControlFlow("if (!$L)", contains)
+                    .addStatement("__result = $L()", createProvider(defaultProvider, type, valueName,
+                            preferenceTypeInformation, contains, store))
+                    .nextControlFlow("else");
         }
 
-        String statementPattern = "preferences.get%s(\"%s\", %s)";
-        String methodSuffix = Utils.getMethodSuffix(preferenceTypeInformation.getPreferenceType());
-        String defaultValue = getDefaultValue(defaultAnnotation, preferenceTypeInformation.getPreferenceType(), element);
-        if (preferenceTypeInformation.getPreferenceType() == PreferenceType.OBJECT) {
-            getterBuilder.addStatement("$T __serializer = $T.getSerializer()", Serializer.class, Esperandro.class);
-            if (preferenceTypeInformation.isGeneric()) {
-                String genericClassName = Utils.createClassNameForPreference(valueName);
-                genericTypeNames.put(genericClassName, preferenceTypeInformation.getType());
-                String statement = String.format(statementPattern, methodSuffix, valueName, defaultValue);
-                getterBuilder.addStatement("$L __container = __serializer.deserialize($L, $L.class)", genericClassName, statement, genericClassName);
-                getterBuilder.addStatement("$L __value = null", preferenceTypeInformation.getTypeName());
-                getterBuilder.beginControlFlow("if (__container != null)");
-                getterBuilder.addStatement("__value = __container.value");
-                getterBuilder.endControlFlow();
-                statementPattern = "__value";
-            } else {
-                statementPattern = String.format("__serializer.deserialize(%s, %s.class)",
-                        statementPattern, preferenceTypeInformation.getTypeName());
-            }
+        if (keyAnnotations.get(valueName, Blob.class) != null
+                && preferenceTypeInformation.getPreferenceType() != PreferenceType.OBJECT) {
+            warner.emitError("@Blob is only supported for Object preferences.", element);
         }
-
-        if (defaultAnnotation != null && runtimeDefault) {
+        if (defaultAnnotation != null && (runtimeDefault || defaultProvider != null)) {
             warner.emitWarning("Pointless @Default Annotation", element);
         }
-        String statement = String.format(statementPattern, methodSuffix, valueName, defaultValue);
-        getterBuilder.addStatement("__result = $L", statement);
+        String defaultValue = getDefaultValue(provided ? null : defaultAnnotation, preferenceTypeInformation, element);
+        getterBuilder.addCode(createRead(type, valueName, preferenceTypeInformation, defaultValue, store));
+        if (!runtimeDefault && !provided) {
+            plainGetters.put(valueName, new PlainGetter(preferenceTypeInformation, defaultValue));
+        }
         if (runtimeDefault) {
             getterBuilder.nextControlFlow("else")
                     .addStatement("__result = defaultValue")
                     .endControlFlow();
+        } else if (provided) {
+            getterBuilder.endControlFlow();
         }
 
         if (caching) {
@@ -208,6 +265,229 @@ public class GetterGenerator {
         type.addMethod(getterBuilder.build());
     }
 
+    /**
+     * Adds the method computing the default of a preference with a {@link DefaultProvider}. The provider runs under a
+     * lock, so concurrent first reads get the same value. The result is stored with the putter of the preference if
+     * there is one, otherwise it is kept in a field.
+     *
+     * @return the name of the added method
+     */
+    private String createProvider(DefaultProvider defaultProvider, TypeSpec.Builder type, String valueName,
+                                  PreferenceTypeInformation preferenceTypeInformation, CodeBlock contains,
+                                  String store) {
+        TypeName provider;
+        try {
+            provider = TypeName.get(defaultProvider.value());
+        } catch (MirroredTypeException e) {
+            // class literals of annotations are not loaded during annotation processing
+            provider = TypeName.get(e.getTypeMirror());
+        }
+        String methodName = "__provide" + Utils.createClassNameForPreference(valueName);
+        MethodSpec.Builder method = MethodSpec.methodBuilder(methodName)
+                .addModifiers(Modifier.PRIVATE)
+                .returns(preferenceTypeInformation.getType())
+                .addStatement("$T __result", preferenceTypeInformation.getType())
+                .beginControlFlow("synchronized ($L)", Constants.PROVIDER_LOCK_FIELD);
+        if (keyAnnotations.hasPutter(valueName)) {
+            String defaultValue = getDefaultValue(null, preferenceTypeInformation, null);
+            // another thread may have stored the value in the meantime
+            method.beginControlFlow("if ($L)", contains)
+                    .addCode(createRead(type, valueName, preferenceTypeInformation, defaultValue, store))
+                    .nextControlFlow("else")
+                    .addStatement("__result = new $T().provide($L)", provider, Constants.CONTEXT_FIELD)
+                    .addStatement("$L(__result)", valueName)
+                    .endControlFlow();
+        } else {
+            String field = "__" + valueName + "Default";
+            String providedField = "__" + valueName + "Provided";
+            type.addField(preferenceTypeInformation.getType(), field, Modifier.PRIVATE);
+            type.addField(boolean.class, providedField, Modifier.PRIVATE);
+            method.beginControlFlow("if (!$L)", providedField)
+                    .addStatement("$L = new $T().provide($L)", field, provider, Constants.CONTEXT_FIELD)
+                    .addStatement("$L = true", providedField)
+                    .endControlFlow()
+                    .addStatement("__result = $L", field);
+        }
+        type.addMethod(method.endControlFlow()
+                .addStatement("return __result")
+                .build());
+        return methodName;
+    }
+
+    /**
+     * @return the statements reading the preference from the given store into the variable {@code __result}
+     */
+    private CodeBlock createRead(TypeSpec.Builder type, String valueName,
+                                 PreferenceTypeInformation preferenceTypeInformation, String defaultValue,
+                                 String store) {
+        CodeBlock.Builder read = CodeBlock.builder();
+        String storedKey = keyAnnotations.storedKey(valueName);
+        int packedIndex = keyAnnotations.packedIndex(valueName);
+        String statementPattern = store + ".get%s(\"%s\", %s)";
+        String methodSuffix = Utils.getMethodSuffix(preferenceTypeInformation.getPreferenceType());
+        Blob blobAnnotation = keyAnnotations.get(valueName, Blob.class);
+        if (preferenceTypeInformation.getPreferenceType() == PreferenceType.OBJECT) {
+            read.addStatement("$T __serializer = $T.getSerializer()", Serializer.class, Esperandro.class);
+            if (blobAnnotation != null) {
+                read.addStatement("String __serialized = $L",
+                        String.format(statementPattern, methodSuffix, storedKey, defaultValue));
+                read.beginControlFlow("if ($T.isReference(__serialized))", BlobStore.class)
+                        .addStatement("__serialized = blobStore.read(__serialized, $L)", blobAnnotation.memoryMapped())
+                        .endControlFlow();
+                statementPattern = "__serialized";
+            }
+            if (preferenceTypeInformation.isGeneric()) {
+                String genericClassName = Utils.createClassNameForPreference(valueName);
+                genericTypeNames.put(genericClassName, preferenceTypeInformation.getType());
+                serializedTypes.put(genericClassName, CodeBlock.of("$L.class", genericClassName));
+                String statement = String.format(statementPattern, methodSuffix, storedKey, defaultValue);
+                read.addStatement("$L __container = __serializer.deserialize($L, $L.class)", genericClassName, statement, genericClassName);
+                read.addStatement("$L __value = null", preferenceTypeInformation.getTypeName());
+                read.beginControlFlow("if (__container != null)");
+                read.addStatement("__value = __container.value");
+                read.endControlFlow();
+                statementPattern = "__value";
+            } else {
+                serializedTypes.put(preferenceTypeInformation.getTypeName(),
+                        CodeBlock.of("$T.class", preferenceTypeInformation.getType()));
+                statementPattern = String.format("__serializer.deserialize(%s, %s.class)",
+                        statementPattern, preferenceTypeInformation.getTypeName());
+            }
+        }
+
+        switch (preferenceTypeInformation.getPreferenceType()) {
+            case DOUBLE:
+                statementPattern = "Double.longBitsToDouble(" + store + ".get%s(\"%s\", Double.doubleToRawLongBits(%s)))";
+                break;
+            case SHORT:
+                statementPattern = "(short) " + store + ".get%s(\"%s\", %s)";
+                break;
+            case BYTE_ARRAY:
+                read.addStatement("String __encoded = $L.getString($S, null)", store, storedKey);
+                ClassName base64 = ClassName.get("android.util", "Base64");
+                read.addStatement("byte[] __decoded = __encoded != null ? $T.decode(__encoded, $T.NO_WRAP) : null",
+                        base64, base64);
+                statementPattern = "__decoded";
+                break;
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            case INT_LIST:
+            case LONG_LIST:
+                read.addStatement("$T __decoded = $T.$L($L, $S)",
+                        preferenceTypeInformation.getType(), PackedArrays.class,
+                        getReadMethod(preferenceTypeInformation.getPreferenceType()), store, storedKey);
+                statementPattern = "__decoded";
+                break;
+            case DATE:
+                statementPattern = LegacyValues.class.getName() + ".readDate(" + store + ", \"%2$s\", %3$s)";
+                break;
+        }
+        if (preferenceTypeInformation.getPreferenceType() == PreferenceType.ENUM) {
+            String lookupField = getEnumLookup(type, preferenceTypeInformation);
+            if (keyAnnotations.get(valueName, EnumByOrdinal.class) != null) {
+                methodSuffix = "Int";
+                statementPattern = lookupField + ".readOrdinal(" + store + ", \"%2$s\", %3$s)";
+            } else {
+                statementPattern = lookupField + ".read(" + store + ", \"%2$s\", %3$s)";
+            }
+        }
+
+        if (packedIndex >= 0) {
+            statementPattern = Constants.PACKED_RECORD_FIELD + ".get%1$s(" + store + ", " + packedIndex + ", %3$s)";
+        }
+
+        String statement = String.format(statementPattern, methodSuffix, storedKey, defaultValue);
+        read.addStatement("__result = $L", statement);
+        return read.build();
+    }
+
+    private void createMapGetter(Default defaultAnnotation, Element element, TypeSpec.Builder type, String valueName,
+                                 PreferenceTypeInformation preferenceTypeInformation, boolean runtimeDefault) {
+        TypeName valueType = preferenceTypeInformation.getMapValueType();
+        if (runtimeDefault || defaultAnnotation != null
+                || keyAnnotations.get(valueName, DefaultProvider.class) != null) {
+            warner.emitError("Map preferences cannot have defaults.", element);
+            return;
+        }
+        if (!(valueType instanceof ClassName)) {
+            warner.emitError("Map preferences cannot have generic values.", element);
+            return;
+        }
+        mapKeys.add(valueName);
+        MethodSpec getter = initGetter(valueName, preferenceTypeInformation, false)
+                .addStatement("return new $T($L, $S, $T.class)", preferenceTypeInformation.getType(),
+                        keyAnnotations.storeAccessFor(valueName), keyAnnotations.storedKey(valueName), valueType)
+                .build();
+        type.addMethod(getter);
+    }
+
+    private void createProjection(Projection projection, Default defaultAnnotation, Element element,
+                                  TypeSpec.Builder type, String methodName,
+                                  PreferenceTypeInformation preferenceTypeInformation) {
+        String preferenceName = projection.preference();
+        TypeName returnType = preferenceTypeInformation.getType();
+        PreferenceType preferenceType = preferenceTypeInformation.getPreferenceType();
+        if (!keyAnnotations.containsKey(preferenceName)) {
+            warner.emitError("Projection refers to unknown preference '" + preferenceName + "'.", element);
+            return;
+        }
+        if (projection.path().isEmpty()) {
+            warner.emitError("Projection path must not be empty.", element);
+            return;
+        }
+        if (returnType instanceof ParameterizedTypeName) {
+            warner.emitError("Projections cannot return generic types.", element);
+            return;
+        }
+        if (returnType.isPrimitive() && preferenceType == PreferenceType.UNKNOWN) {
+            warner.emitError("Projections cannot return " + returnType + ".", element);
+            return;
+        }
+
+        String pathField = "__" + methodName + "Path";
+        CodeBlock.Builder pathInitializer = CodeBlock.builder().add("{");
+        String[] path = projection.path().split("\\.");
+        for (int i = 0; i < path.length; i++) {
+            pathInitializer.add(i == 0 ? "$S" : ", $S", path[i]);
+        }
+        type.addField(FieldSpec.builder(String[].class, pathField, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer(pathInitializer.add("}").build())
+                .build());
+
+        MethodSpec.Builder projectionBuilder = MethodSpec.methodBuilder(methodName)
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(returnType);
+        int migrationIndex = keyAnnotations.migrationIndex(preferenceName);
+        if (migrationIndex >= 0) {
+            projectionBuilder.addStatement("$L.migrate($L, $L)", Constants.MIGRATIONS_FIELD,
+                    keyAnnotations.storeAccessFor(preferenceName), migrationIndex);
+        }
+        projectionBuilder.addStatement("String __serialized = $L.getString($S, null)",
+                keyAnnotations.storeAccessFor(preferenceName), keyAnnotations.storedKey(preferenceName));
+        Blob blobAnnotation = keyAnnotations.get(preferenceName, Blob.class);
+        if (blobAnnotation != null) {
+            projectionBuilder.beginControlFlow("if ($T.isReference(__serialized))", BlobStore.class)
+                    .addStatement("__serialized = blobStore.read(__serialized, $L)", blobAnnotation.memoryMapped())
+                    .endControlFlow();
+        }
+        if (!returnType.isPrimitive() && preferenceType != PreferenceType.STRING) {
+            serializedTypes.put(returnType.toString(), CodeBlock.of("$T.class", returnType));
+        }
+        projectionBuilder.addStatement("$T __value = $T.getProjectingSerializer().deserializeField(__serialized, $L, " +
+                "$T.class)", returnType.box(), Esperandro.class, pathField, returnType.box());
+
+        boolean useDefault = returnType.isPrimitive() || (defaultAnnotation != null
+                && (preferenceType == PreferenceType.STRING || preferenceType == PreferenceType.ENUM));
+        if (useDefault) {
+            String defaultValue = getDefaultValue(defaultAnnotation, preferenceTypeInformation, element);
+            projectionBuilder.addStatement("return __value != null ? __value : $L", defaultValue);
+        } else {
+            projectionBuilder.addStatement("return __value");
+        }
+        type.addMethod(projectionBuilder.build());
+    }
+
     private MethodSpec.Builder initGetter(String valueName, PreferenceTypeInformation preferenceTypeInformation, boolean runtimeDefault) {
         MethodSpec.Builder getterBuilder;
         if (runtimeDefault) {
@@ -222,7 +502,52 @@ public class GetterGenerator {
         return getterBuilder;
     }
 
-    private String getDefaultValue(Default defaultAnnotation, PreferenceType preferenceType, Element element) {
+    private String getReadMethod(PreferenceType preferenceType) {
+        String readMethod = null;
+        switch (preferenceType) {
+            case INT_ARRAY:
+                readMethod = "readIntArray";
+                break;
+            case LONG_ARRAY:
+                readMethod = "readLongArray";
+                break;
+            case INT_LIST:
+                readMethod = "readIntegerList";
+                break;
+            case LONG_LIST:
+                readMethod = "readLongList";
+                break;
+        }
+        return readMethod;
+    }
+
+    /**
+     * Adds a static {@link EnumLookup} field for the given enum type if there is none yet.
+     *
+     * @return the name of the field
+     */
+    private String getEnumLookup(TypeSpec.Builder type, PreferenceTypeInformation preferenceTypeInformation) {
+        TypeName enumType = preferenceTypeInformation.getType();
+        String fieldName = enumLookups.get(enumType);
+        if (fieldName == null) {
+            String simpleName = ((ClassName) enumType).simpleName();
+            String baseName = "__" + Character.toLowerCase(simpleName.charAt(0)) + simpleName.substring(1) + "Lookup";
+            fieldName = baseName;
+            for (int i = 2; enumLookups.containsValue(fieldName); i++) {
+                fieldName = baseName + i;
+            }
+            enumLookups.put(enumType, fieldName);
+            type.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(EnumLookup.class), enumType),
+                    fieldName, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$T.of($T.class)", EnumLookup.class, enumType)
+                    .build());
+        }
+        return fieldName;
+    }
+
+    private String getDefaultValue(Default defaultAnnotation, PreferenceTypeInformation preferenceTypeInformation,
+                                   Element element) {
+        PreferenceType preferenceType = preferenceTypeInformation.getPreferenceType();
         boolean allDefaults = false;
         boolean hasDefaultAnnotation = defaultAnnotation != null;
         if (hasDefaultAnnotation) {
@@ -253,6 +578,21 @@ public class GetterGenerator {
                         (Default.floatDefault);
                 defaultValue += "f";
                 break;
+            case DOUBLE:
+                if (hasDefaultAnnotation && !allDefaults && defaultAnnotation.ofDouble() == Default.doubleDefault) {
+                    warner.emitMissingDefaultWarning("double", element);
+                }
+                defaultValue = hasDefaultAnnotation ? String.valueOf(defaultAnnotation.ofDouble()) : String.valueOf
+                        (Default.doubleDefault);
+                defaultValue += "d";
+                break;
+            case SHORT:
+                if (hasDefaultAnnotation && !allDefaults && defaultAnnotation.ofShort() == Default.shortDefault) {
+                    warner.emitMissingDefaultWarning("short", element);
+                }
+                defaultValue = "(short) " + (hasDefaultAnnotation ? String.valueOf(defaultAnnotation.ofShort()) :
+                        String.valueOf(Default.shortDefault));
+                break;
             case BOOLEAN:
                 //noinspection PointlessBooleanExpression
                 if (hasDefaultAnnotation && !allDefaults && defaultAnnotation.ofBoolean() == Default.booleanDefault) {
@@ -275,6 +615,37 @@ public class GetterGenerator {
                 }
                 defaultValue = "null";
                 break;
+            case BYTE_ARRAY:
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            case INT_LIST:
+            case LONG_LIST:
+                if (hasDefaultAnnotation) {
+                    warner.emitWarning("No default for array and list preferences allowed.", element);
+                }
+                defaultValue = "null";
+                break;
+            case DATE:
+                defaultValue = "null";
+                if (hasDefaultAnnotation && !allDefaults && defaultAnnotation.ofLong() == Default.longDefault) {
+                    warner.emitMissingDefaultWarning("long", element);
+                } else if (hasDefaultAnnotation && defaultAnnotation.ofLong() != Default.longDefault) {
+                    defaultValue = "new java.util.Date(" + defaultAnnotation.ofLong() + "l)";
+                }
+                break;
+            case ENUM:
+                defaultValue = "null";
+                if (hasDefaultAnnotation && !allDefaults && defaultAnnotation.ofEnum().equals(Default.enumDefault)) {
+                    warner.emitMissingDefaultWarning("enum", element);
+                } else if (hasDefaultAnnotation && !defaultAnnotation.ofEnum().equals(Default.enumDefault)) {
+                    if (preferenceTypeInformation.getEnumConstants().contains(defaultAnnotation.ofEnum())) {
+                        defaultValue = preferenceTypeInformation.getTypeName() + "." + defaultAnnotation.ofEnum();
+                    } else {
+                        warner.emitError(String.format("%s has no constant \"%s\".",
+                                preferenceTypeInformation.getTypeName(), defaultAnnotation.ofEnum()), element);
+                    }
+                }
+                break;
             case OBJECT:
                 if (hasDefaultAnnotation) {
                     warner.emitWarning("No default for Object preferences allowed.", element);
@@ -296,6 +667,49 @@ public class GetterGenerator {
         return genericTypeNames;
     }
 
+    /**
+     * @return keys of preferences whose entries are stored as separate {@code key.entry} preferences
+     */
+    public Set<String> getMapKeys() {
+        return mapKeys;
+    }
+
+    public Map<String, CodeBlock> getSerializedTypes() {
+        return serializedTypes;
+    }
+
+    /**
+     * @return the preferences with a getter without runtime default, which can be read without arguments
+     */
+    public Set<String> getPlainGetterKeys() {
+        return plainGetters.keySet();
+    }
+
+    public PreferenceTypeInformation getPlainGetterType(String key) {
+        return plainGetters.get(key).typeInformation;
+    }
+
+    /**
+     * @return statements reading the given preference from the given store into a new variable {@code __result}
+     */
+    public CodeBlock createPlainRead(TypeSpec.Builder type, String key, String store) {
+        PlainGetter getter = plainGetters.get(key);
+        return CodeBlock.builder()
+                .addStatement("$T __result", getter.typeInformation.getType())
+                .add(createRead(type, key, getter.typeInformation, getter.defaultValue, store))
+                .build();
+    }
+
+    private static class PlainGetter {
+        final PreferenceTypeInformation typeInformation;
+        final String defaultValue;
+
+        PlainGetter(PreferenceTypeInformation typeInformation, String defaultValue) {
+            this.typeInformation = typeInformation;
+            this.defaultValue = defaultValue;
+        }
+    }
+
 
     private boolean hasAllDefaults(Default defaultAnnotation) {
         //noinspection PointlessBooleanExpression
@@ -303,7 +717,10 @@ public class GetterGenerator {
         hasAllDefaults &= defaultAnnotation.ofInt() == Default.intDefault;
         hasAllDefaults &= defaultAnnotation.ofFloat() == Default.floatDefault;
         hasAllDefaults &= defaultAnnotation.ofLong() == Default.longDefault;
+        hasAllDefaults &= defaultAnnotation.ofDouble() == Default.doubleDefault;
+        hasAllDefaults &= defaultAnnotation.ofShort() == Default.shortDefault;
         hasAllDefaults &= defaultAnnotation.ofString().equals(Default.stringDefault);
+        hasAllDefaults &= defaultAnnotation.ofEnum().equals(Default.enumDefault);
 
         return hasAllDefaults;
     }
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2013 David Kunzler
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package de.devland.esperandro.processor;
+
+import de.devland.esperandro.annotations.Shard;
+import de.devland.esperandro.annotations.experimental.MigrateFrom;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotations of all methods of a preference interface grouped by preference key. Key-level options may be declared
+ * on the getter as well as on the putter, so the generators need to see all of them regardless of which accessor is
+ * generated first.
+ */
+public class KeyAnnotations {
+
+    private Map<String, List<Element>> modelMethods = new HashMap<String, List<Element>>();
+    private Map<String, List<Method>> reflectionMethods = new HashMap<String, List<Method>>();
+    private final boolean compactKeys;
+    private final boolean packedPrimitives;
+    private final boolean multiProcess;
+    private List<String> packedKeys;
+    private List<String> migratedKeys;
+
+    public KeyAnnotations(boolean compactKeys, boolean packedPrimitives, boolean multiProcess) {
+        this.compactKeys = compactKeys;
+        this.packedPrimitives = packedPrimitives;
+        this.multiProcess = multiProcess;
+    }
+
+    public void add(Element method) {
+        String key = keyFor(method.getSimpleName().toString());
+        List<Element> methods = modelMethods.get(key);
+        if (methods == null) {
+            methods = new ArrayList<Element>();
+            modelMethods.put(key, methods);
+        }
+        methods.add(method);
+    }
+
+    public void add(Method method) {
+        String key = keyFor(method.getName());
+        List<Method> methods = reflectionMethods.get(key);
+        if (methods == null) {
+            methods = new ArrayList<Method>();
+            reflectionMethods.put(key, methods);
+        }
+        methods.add(method);
+    }
+
+    public boolean containsKey(String key) {
+        return modelMethods.containsKey(key) || reflectionMethods.containsKey(key);
+    }
+
+    public <A extends Annotation> A get(String key, Class<A> annotationType) {
+        A result = null;
+        if (modelMethods.containsKey(key)) {
+            for (Element method : modelMethods.get(key)) {
+                if (result == null) {
+                    result = method.getAnnotation(annotationType);
+                }
+            }
+        }
+        if (reflectionMethods.containsKey(key)) {
+            for (Method method : reflectionMethods.get(key)) {
+                if (result == null) {
+                    result = method.getAnnotation(annotationType);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if there is a getter without parameters for the given key
+     */
+    public boolean hasGetter(String key) {
+        boolean result = false;
+        if (modelMethods.containsKey(key)) {
+            for (Element method : modelMethods.get(key)) {
+                result |= ((ExecutableElement) method).getParameters().isEmpty();
+            }
+        }
+        if (reflectionMethods.containsKey(key)) {
+            for (Method method : reflectionMethods.get(key)) {
+                result |= method.getParameterTypes().length == 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if there is a putter for the given key
+     */
+    public boolean hasPutter(String key) {
+        boolean result = false;
+        if (modelMethods.containsKey(key)) {
+            for (Element method : modelMethods.get(key)) {
+                result |= method.getSimpleName().contentEquals(key)
+                        && ((ExecutableElement) method).getParameters().size() == 1;
+            }
+        }
+        if (reflectionMethods.containsKey(key)) {
+            for (Method method : reflectionMethods.get(key)) {
+                result |= method.getName().equals(key) && method.getParameterTypes().length == 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the type of the preference as declared by its getter or putter, null if there is neither
+     */
+    public PreferenceTypeInformation typeOf(String key) {
+        PreferenceTypeInformation result = null;
+        if (modelMethods.containsKey(key)) {
+            for (Element element : modelMethods.get(key)) {
+                ExecutableElement method = (ExecutableElement) element;
+                if (result == null && method.getSimpleName().contentEquals(key)) {
+                    if (method.getParameters().isEmpty()) {
+                        result = PreferenceTypeInformation.from(method.getReturnType());
+                    } else if (method.getParameters().size() == 1) {
+                        result = PreferenceTypeInformation.from(method.getParameters().get(0).asType());
+                    }
+                }
+            }
+        }
+        if (reflectionMethods.containsKey(key)) {
+            for (Method method : reflectionMethods.get(key)) {
+                if (result == null && method.getName().equals(key)) {
+                    if (method.getParameterTypes().length == 0) {
+                        result = PreferenceTypeInformation.from(method.getGenericReturnType());
+                    } else if (method.getParameterTypes().length == 1) {
+                        result = PreferenceTypeInformation.from(method.getGenericParameterTypes()[0]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the field holding the store the given key is read from and written to
+     */
+    public String storeFor(String key) {
+        Shard shard = get(key, Shard.class);
+        return shard != null ? shardField(shard.value()) : Constants.PREFERENCES_FIELD;
+    }
+
+    /**
+     * @return the expression the generated accessors of the given key use to get their store
+     */
+    public String storeAccessFor(String key) {
+        return storeAccess(storeFor(key));
+    }
+
+    /**
+     * @return the expression to access the given store, with compact keys its legacy keys are migrated first
+     */
+    public String storeAccess(String store) {
+        return compactKeys ? Constants.MIGRATE_KEYS_METHOD + "(" + store + ")" : store;
+    }
+
+    /**
+     * @return true if all stores are {@link de.devland.esperandro.storage.MultiProcessPreferenceStore}s, which have to
+     * be synced before cached values are used
+     */
+    public boolean isMultiProcess() {
+        return multiProcess;
+    }
+
+    public boolean isCompactKeys() {
+        return compactKeys;
+    }
+
+    /**
+     * @return the key the given preference is stored under. Compact keys only depend on the preference name, so they
+     * stay stable when other preferences are added or removed.
+     */
+    public String storedKey(String key) {
+        String result = key;
+        if (compactKeys) {
+            int hash = (key.hashCode() & Integer.MAX_VALUE) % Constants.COMPACT_KEY_RANGE;
+            result = Constants.COMPACT_KEY_PREFIX + Integer.toString(hash, Character.MAX_RADIX);
+        }
+        return result;
+    }
+
+    /**
+     * @return the keys stored in the packed record, in slot order. Only primitive preferences with a getter in the
+     * main store are packed. The order does not matter for compatibility, it is sorted to be independent of the
+     * compiler.
+     */
+    public List<String> packedKeys() {
+        if (packedKeys == null) {
+            packedKeys = new ArrayList<String>();
+            if (packedPrimitives) {
+                for (String key : keys()) {
+                    PreferenceTypeInformation type = typeOf(key);
+                    boolean packableType = type != null && (type.getPreferenceType() == PreferenceType.INT
+                            || type.getPreferenceType() == PreferenceType.LONG
+                            || type.getPreferenceType() == PreferenceType.FLOAT
+                            || type.getPreferenceType() == PreferenceType.BOOLEAN);
+                    if (packableType && hasGetter(key) && storeFor(key).equals(Constants.PREFERENCES_FIELD)) {
+                        packedKeys.add(key);
+                    }
+                }
+                Collections.sort(packedKeys);
+            }
+        }
+        return packedKeys;
+    }
+
+    /**
+     * @return the slot of the given key in the packed record, -1 if it is stored on its own
+     */
+    public int packedIndex(String key) {
+        return packedKeys().indexOf(key);
+    }
+
+    /**
+     * @return the keys with migrations, in index order. Map preferences and packed preferences cannot be migrated.
+     */
+    public List<String> migratedKeys() {
+        if (migratedKeys == null) {
+            migratedKeys = new ArrayList<String>();
+            for (String key : keysWith(MigrateFrom.class)) {
+                PreferenceTypeInformation type = typeOf(key);
+                if (type != null && type.getPreferenceType() != PreferenceType.MAP && packedIndex(key) < 0) {
+                    migratedKeys.add(key);
+                }
+            }
+        }
+        return migratedKeys;
+    }
+
+    /**
+     * @return the index of the migration of the given key, -1 if it has none
+     */
+    public int migrationIndex(String key) {
+        return migratedKeys().indexOf(key);
+    }
+
+    /**
+     * @return the names of all shards keys are assigned to
+     */
+    public Set<String> shards() {
+        Set<String> result = new LinkedHashSet<String>();
+        for (String key : keysWith(Shard.class)) {
+            result.add(get(key, Shard.class).value());
+        }
+        return result;
+    }
+
+    public static String shardField(String shard) {
+        return "__" + shard + "Preferences";
+    }
+
+    public Set<String> keys() {
+        Set<String> result = new LinkedHashSet<String>();
+        result.addAll(modelMethods.keySet());
+        result.addAll(reflectionMethods.keySet());
+        return result;
+    }
+
+    public Set<String> keysWith(Class<? extends Annotation> annotationType) {
+        Set<String> result = new LinkedHashSet<String>();
+        for (String key : keys()) {
+            if (get(key, annotationType) != null) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    private static String keyFor(String methodName) {
+        String key = methodName;
+        if (key.endsWith(Constants.RUNTIME_DEFAULT_SUFFIX)) {
+            key = key.substring(0, key.indexOf(Constants.RUNTIME_DEFAULT_SUFFIX));
+        }
+        return key;
+    }
+}
@@ -16,5 +16,6 @@
 package de.devland.esperandro.processor;
 
 public enum PreferenceType {
-    UNKNOWN, INT, LONG, FLOAT, BOOLEAN, STRING, STRINGSET, OBJECT;
+    UNKNOWN, INT, LONG, FLOAT, DOUBLE, SHORT, BOOLEAN, STRING, STRINGSET, BYTE_ARRAY, DATE, ENUM,
+    INT_ARRAY, LONG_ARRAY, INT_LIST, LONG_LIST, MAP, OBJECT;
 }
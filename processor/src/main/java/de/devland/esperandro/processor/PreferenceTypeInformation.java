@@ -1,9 +1,18 @@
 package de.devland.esperandro.processor;
 
 import com.squareup.javapoet.TypeName;
+import de.devland.esperandro.PreferenceMap;
 
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 
 public class PreferenceTypeInformation {
     private PreferenceType preferenceType = PreferenceType.UNKNOWN;
@@ -13,6 +22,8 @@ public class PreferenceTypeInformation {
     private String declaredTypeName;
     private Type type;
     private TypeMirror typeMirror;
+    private List<String> enumConstants;
+    private TypeName mapValueType;
 
     public static PreferenceTypeInformation from(TypeMirror typeMirror) {
         PreferenceTypeInformation result = new PreferenceTypeInformation();
@@ -35,6 +46,28 @@ public class PreferenceTypeInformation {
                 result.preferenceType = PreferenceType.FLOAT;
                 result.declaredTypeName = "float";
                 break;
+            case DOUBLE:
+                result.preferenceType = PreferenceType.DOUBLE;
+                result.declaredTypeName = "double";
+                break;
+            case SHORT:
+                result.preferenceType = PreferenceType.SHORT;
+                result.declaredTypeName = "short";
+                break;
+            case ARRAY:
+                TypeKind componentKind = ((ArrayType) typeMirror).getComponentType().getKind();
+                result.declaredTypeName = typeMirror.toString();
+                if (componentKind == TypeKind.BYTE) {
+                    result.isPrimitive = false;
+                    result.preferenceType = PreferenceType.BYTE_ARRAY;
+                } else if (componentKind == TypeKind.INT) {
+                    result.isPrimitive = false;
+                    result.preferenceType = PreferenceType.INT_ARRAY;
+                } else if (componentKind == TypeKind.LONG) {
+                    result.isPrimitive = false;
+                    result.preferenceType = PreferenceType.LONG_ARRAY;
+                }
+                break;
             case DECLARED:
                 result.isPrimitive = false;
                 if (Constants.DECLARED_TYPENAME_STRING.equals(typeMirror.toString())) {
@@ -43,6 +76,28 @@ public class PreferenceTypeInformation {
                 } else if (Constants.DECLARED_TYPENAME_STRINGSET.equals(typeMirror.toString())) {
                     result.preferenceType = PreferenceType.STRINGSET;
                     result.declaredTypeName = Constants.DECLARED_TYPENAME_STRINGSET;
+                } else if (typeMirror.toString().startsWith(Constants.DECLARED_TYPENAME_PREFERENCE_MAP + "<")) {
+                    result.preferenceType = PreferenceType.MAP;
+                    result.declaredTypeName = typeMirror.toString();
+                    result.mapValueType = TypeName.get(((DeclaredType) typeMirror).getTypeArguments().get(0));
+                } else if (Constants.DECLARED_TYPENAMES_INT_LIST.contains(typeMirror.toString())) {
+                    result.preferenceType = PreferenceType.INT_LIST;
+                    result.declaredTypeName = typeMirror.toString();
+                } else if (Constants.DECLARED_TYPENAMES_LONG_LIST.contains(typeMirror.toString())) {
+                    result.preferenceType = PreferenceType.LONG_LIST;
+                    result.declaredTypeName = typeMirror.toString();
+                } else if (Constants.DECLARED_TYPENAME_DATE.equals(typeMirror.toString())) {
+                    result.preferenceType = PreferenceType.DATE;
+                    result.declaredTypeName = Constants.DECLARED_TYPENAME_DATE;
+                } else if (((DeclaredType) typeMirror).asElement().getKind() == ElementKind.ENUM) {
+                    result.preferenceType = PreferenceType.ENUM;
+                    result.declaredTypeName = typeMirror.toString();
+                    result.enumConstants = new ArrayList<String>();
+                    for (Element enclosed : ((DeclaredType) typeMirror).asElement().getEnclosedElements()) {
+                        if (enclosed.getKind() == ElementKind.ENUM_CONSTANT) {
+                            result.enumConstants.add(enclosed.getSimpleName().toString());
+                        }
+                    }
                 } else {
                     result.preferenceType = PreferenceType.OBJECT;
                     result.declaredTypeName = typeMirror.toString();
@@ -69,9 +124,44 @@ public class PreferenceTypeInformation {
         } else if (typeString.equals("float")) {
             result.preferenceType = PreferenceType.FLOAT;
             result.declaredTypeName = typeString;
+        } else if (typeString.equals("double")) {
+            result.preferenceType = PreferenceType.DOUBLE;
+            result.declaredTypeName = typeString;
+        } else if (typeString.equals("short")) {
+            result.preferenceType = PreferenceType.SHORT;
+            result.declaredTypeName = typeString;
         } else if (typeString.equals("boolean")) {
             result.preferenceType = PreferenceType.BOOLEAN;
             result.declaredTypeName = typeString;
+        } else if (type == byte[].class) {
+            result.isPrimitive = false;
+            result.preferenceType = PreferenceType.BYTE_ARRAY;
+            result.declaredTypeName = Constants.DECLARED_TYPENAME_BYTE_ARRAY;
+        } else if (type == int[].class) {
+            result.isPrimitive = false;
+            result.preferenceType = PreferenceType.INT_ARRAY;
+            result.declaredTypeName = "int[]";
+        } else if (type == long[].class) {
+            result.isPrimitive = false;
+            result.preferenceType = PreferenceType.LONG_ARRAY;
+            result.declaredTypeName = "long[]";
+        } else if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == PreferenceMap.class) {
+            result.isPrimitive = false;
+            result.preferenceType = PreferenceType.MAP;
+            result.declaredTypeName = typeString;
+            result.mapValueType = TypeName.get(((ParameterizedType) type).getActualTypeArguments()[0]);
+        } else if (Constants.DECLARED_TYPENAMES_INT_LIST.contains(typeString)) {
+            result.isPrimitive = false;
+            result.preferenceType = PreferenceType.INT_LIST;
+            result.declaredTypeName = typeString;
+        } else if (Constants.DECLARED_TYPENAMES_LONG_LIST.contains(typeString)) {
+            result.isPrimitive = false;
+            result.preferenceType = PreferenceType.LONG_LIST;
+            result.declaredTypeName = typeString;
+        } else if (typeString.equals("class java.util.Date")) {
+            result.isPrimitive = false;
+            result.preferenceType = PreferenceType.DATE;
+            result.declaredTypeName = Constants.DECLARED_TYPENAME_DATE;
         } else if (typeString.equals("java.util.Set<java.lang.String>")) {
             result.isPrimitive = false;
             result.preferenceType = PreferenceType.STRINGSET;
@@ -80,6 +170,14 @@ public class PreferenceTypeInformation {
             result.isPrimitive = false;
             result.preferenceType = PreferenceType.STRING;
             result.declaredTypeName = Constants.DECLARED_TYPENAME_STRING;
+        } else if (type instanceof Class && ((Class<?>) type).isEnum()) {
+            result.isPrimitive = false;
+            result.preferenceType = PreferenceType.ENUM;
+            result.declaredTypeName = ((Class<?>) type).getCanonicalName();
+            result.enumConstants = new ArrayList<String>();
+            for (Object constant : ((Class<?>) type).getEnumConstants()) {
+                result.enumConstants.add(((Enum<?>) constant).name());
+            }
         } else if (typeString.startsWith("class ")) {
             result.isPrimitive = false;
             result.preferenceType = PreferenceType.OBJECT;
@@ -111,6 +209,20 @@ public class PreferenceTypeInformation {
         return declaredTypeName;
     }
 
+    /**
+     * @return names of the enum constants in declaration order, null if this is not an enum preference
+     */
+    public List<String> getEnumConstants() {
+        return enumConstants;
+    }
+
+    /**
+     * @return the value type of a {@link PreferenceMap}, null if this is not a map preference
+     */
+    public TypeName getMapValueType() {
+        return mapValueType;
+    }
+
     public TypeName getType() {
         return isType ? TypeName.get(type) : TypeName.get(typeMirror);
     }
@@ -128,6 +240,12 @@ public class PreferenceTypeInformation {
                 case FLOAT:
                     result = TypeName.get(Float.class);
                     break;
+                case DOUBLE:
+                    result = TypeName.get(Double.class);
+                    break;
+                case SHORT:
+                    result = TypeName.get(Short.class);
+                    break;
                 case BOOLEAN:
                     result = TypeName.get(Boolean.class);
                     break;
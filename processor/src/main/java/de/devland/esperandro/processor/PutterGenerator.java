@@ -8,9 +8,21 @@
  */
 package de.devland.esperandro.processor;
 
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import de.devland.esperandro.Esperandro;
+import de.devland.esperandro.IntOperator;
+import de.devland.esperandro.LongOperator;
+import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.EnumByOrdinal;
+import de.devland.esperandro.annotations.experimental.Blob;
 import de.devland.esperandro.annotations.experimental.Cached;
+import de.devland.esperandro.storage.PackedArrays;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
@@ -25,13 +37,18 @@ import java.util.*;
 
 public class PutterGenerator {
 
+    private KeyAnnotations keyAnnotations;
     private Map<String, Element> preferenceKeys;
+    private Map<String, Integer> lockStripes = new LinkedHashMap<String, Integer>();
+    private Map<String, TypeName> genericTypeNames = new HashMap<String, TypeName>();
+    private Map<String, CodeBlock> serializedTypes = new LinkedHashMap<String, CodeBlock>();
 
     private Set<TypeKind> validPutterReturnTypes = new HashSet<TypeKind>(Arrays.asList(TypeKind.VOID,
             TypeKind.BOOLEAN));
 
 
-    public PutterGenerator() {
+    public PutterGenerator(KeyAnnotations keyAnnotations) {
+        this.keyAnnotations = keyAnnotations;
         preferenceKeys = new HashMap<String, Element>();
     }
 
@@ -45,7 +62,7 @@ public class PutterGenerator {
 
         boolean hasParameter = parameters != null && parameters.size() == 1;
         boolean hasValidReturnType = validPutterReturnTypes.contains(returnTypeKind);
-        boolean hasValidPreferenceType = hasParameter ? PreferenceTypeInformation.from(parameters.get(0).asType()).getPreferenceType() != PreferenceType.UNKNOWN : false;
+        boolean hasValidPreferenceType = hasParameter ? isValidPutterType(PreferenceTypeInformation.from(parameters.get(0).asType())) : false;
         boolean nameEndsWithDefaultSuffix = method.getSimpleName().toString().endsWith(Constants.RUNTIME_DEFAULT_SUFFIX);
 
         if (hasParameter && hasValidReturnType && hasValidPreferenceType && !nameEndsWithDefaultSuffix) {
@@ -63,7 +80,7 @@ public class PutterGenerator {
         boolean hasValidReturnType = method.getReturnType().toString().equals("void")
                 || method.getReturnType().toString().equals("boolean");
         //noinspection SimplifiableConditionalExpression
-        boolean hasValidPreferenceType = hasParameter ? PreferenceTypeInformation.from(parameterTypes[0]).getPreferenceType() != PreferenceType.UNKNOWN : false;
+        boolean hasValidPreferenceType = hasParameter ? isValidPutterType(PreferenceTypeInformation.from(parameterTypes[0])) : false;
         boolean hasRuntimeDefault = false;
 
         if (hasParameter) {
@@ -83,6 +100,13 @@ public class PutterGenerator {
     }
 
 
+    private boolean isValidPutterType(PreferenceTypeInformation preferenceTypeInformation) {
+        PreferenceType preferenceType = preferenceTypeInformation.getPreferenceType();
+        // map preferences are written entry by entry through the PreferenceMap returned by the getter
+        return preferenceType != PreferenceType.UNKNOWN && preferenceType != PreferenceType.MAP;
+    }
+
+
     public void createPutterFromModel(ExecutableElement method, TypeSpec.Builder type, Cached cachedAnnotation) throws IOException {
         String valueName = method.getSimpleName().toString();
         preferenceKeys.put(valueName, method);
@@ -114,7 +138,9 @@ public class PutterGenerator {
                 .addParameter(preferenceTypeInformation.getType(), valueName);
         boolean shouldReturnValue = returnType.equalsIgnoreCase(Boolean.class.getSimpleName());
         PreferenceEditorCommitStyle commitStyle = PreferenceEditorCommitStyle.APPLY;
-        StringBuilder statementPattern = new StringBuilder("preferences.edit().put%s(\"%s\", %s)");
+        String store = keyAnnotations.storeAccessFor(valueName);
+        String storedKey = keyAnnotations.storedKey(valueName);
+        StringBuilder statementPattern = new StringBuilder(store + ".edit().put%s(\"%s\", %s)");
 
         if (shouldReturnValue) {
             putterBuilder.returns(boolean.class);
@@ -124,20 +150,18 @@ public class PutterGenerator {
             putterBuilder.returns(void.class);
         }
 
-        String methodSuffix = Utils.getMethodSuffix(preferenceTypeInformation.getPreferenceType());
-        switch (preferenceTypeInformation.getPreferenceType()) {
-            case OBJECT:
-                if (preferenceTypeInformation.isGeneric()) {
-                    String genericClassName = Utils.createClassNameForPreference(valueName);
-                    putterBuilder.addStatement("$L __container = new $L()", genericClassName, genericClassName);
-                    putterBuilder.addStatement("__container.value = $L", valueName);
-                    value = "Esperandro.getSerializer().serialize(__container)";
-                } else {
-                    value = String.format("Esperandro.getSerializer().serialize(%s)", valueName);
-                }
-                break;
-            case UNKNOWN:
-                break;
+        String methodSuffix = storedMethodSuffix(valueName, preferenceTypeInformation);
+        CodeBlock.Builder encoding = CodeBlock.builder();
+        value = encode(encoding, valueName, value, preferenceTypeInformation);
+        putterBuilder.addCode(encoding.build());
+
+        PreferenceType preferenceType = preferenceTypeInformation.getPreferenceType();
+        boolean locked = (preferenceType == PreferenceType.STRINGSET && hasStringSetMutators(valueName))
+                || ((preferenceType == PreferenceType.INT || preferenceType == PreferenceType.LONG)
+                && hasNumericUpdaters(valueName));
+        if (locked) {
+            // the value is replaced, this must not interleave with incremental updates
+            putterBuilder.beginControlFlow("synchronized ($L)", getLock(valueName));
         }
 
         if (cachedAnnotation != null) {
@@ -156,15 +180,552 @@ public class PutterGenerator {
             }
         }
 
-        // only use apply on API >= 9
-        putterBuilder.addStatement(String.format(statementPattern.toString(),
-                methodSuffix, valueName, value) + ".$L", commitStyle.getStatementPart());
+        if (preferenceTypeInformation.getPreferenceType() == PreferenceType.DATE) {
+            // there is no null long, so a null Date removes the preference
+            putterBuilder.beginControlFlow("if ($L != null)", valueName);
+        }
+        int packedIndex = keyAnnotations.packedIndex(valueName);
+        if (packedIndex >= 0) {
+            putterBuilder.addStatement("$L$L.put$L($L, $L, $L, $L)", shouldReturnValue ? "return " : "",
+                    Constants.PACKED_RECORD_FIELD, methodSuffix, store, packedIndex, valueName, shouldReturnValue);
+        } else if (keyAnnotations.get(valueName, Blob.class) != null) {
+            // the blobs of the previous value may only be deleted once the inline value is persisted
+            String put = String.format("%s.edit().put%s(\"%s\", %s).%s", store, methodSuffix, storedKey, value,
+                    commitStyle.getStatementPart());
+            putterBuilder.addStatement(shouldReturnValue ? "boolean __result = $L" : "$L", put)
+                    .addStatement("blobStore.deleteAfterWrite($S, __staleBlob, $L)", valueName,
+                            keyAnnotations.storeFor(valueName));
+            if (shouldReturnValue) {
+                putterBuilder.addStatement("return __result");
+            }
+        } else {
+            // only use apply on API >= 9
+            putterBuilder.addStatement(String.format(statementPattern.toString(),
+                    methodSuffix, storedKey, value) + ".$L", commitStyle.getStatementPart());
+        }
+        if (preferenceTypeInformation.getPreferenceType() == PreferenceType.DATE) {
+            putterBuilder.nextControlFlow("else")
+                    .addStatement("$L$L.edit().remove($S).$L", shouldReturnValue ? "return " : "", store, storedKey,
+                            commitStyle.getStatementPart())
+                    .endControlFlow();
+        }
+        if (locked) {
+            putterBuilder.endControlFlow();
+        }
 
         type.addMethod(putterBuilder.build());
     }
 
+
+    /**
+     * Adds the statements converting a value to the representation it is stored in.
+     *
+     * @param value the expression of the value
+     * @return the expression of the stored representation
+     */
+    private String encode(CodeBlock.Builder code, String valueName, String value,
+                          PreferenceTypeInformation preferenceTypeInformation) {
+        String result = value;
+        switch (preferenceTypeInformation.getPreferenceType()) {
+            case OBJECT:
+                String serializedName = value;
+                if (preferenceTypeInformation.isGeneric()) {
+                    String genericClassName = Utils.createClassNameForPreference(valueName);
+                    genericTypeNames.put(genericClassName, preferenceTypeInformation.getType());
+                    serializedTypes.put(genericClassName, CodeBlock.of("$L.class", genericClassName));
+                    code.addStatement("$L __container = new $L()", genericClassName, genericClassName);
+                    code.addStatement("__container.value = $L", value);
+                    serializedName = "__container";
+                } else {
+                    serializedTypes.put(preferenceTypeInformation.getTypeName(),
+                            CodeBlock.of("$T.class", preferenceTypeInformation.getType()));
+                }
+                result = String.format("Esperandro.getSerializer().serialize(%s)", serializedName);
+                Blob blobAnnotation = keyAnnotations.get(valueName, Blob.class);
+                if (blobAnnotation != null) {
+                    code.addStatement("String __serialized = $T.getSerializer().serialize($L)",
+                            Esperandro.class, serializedName);
+                    code.addStatement("long __staleBlob = 0");
+                    code.beginControlFlow("if (__serialized != null && __serialized.length() > $L)",
+                            blobAnnotation.threshold())
+                            .addStatement("__serialized = blobStore.write($S, __serialized)", valueName)
+                            .nextControlFlow("else")
+                            .addStatement("__staleBlob = blobStore.currentVersion($S)", valueName)
+                            .endControlFlow();
+                    result = "__serialized";
+                }
+                break;
+            case DOUBLE:
+                result = String.format("Double.doubleToRawLongBits(%s)", value);
+                break;
+            case BYTE_ARRAY:
+                ClassName base64 = ClassName.get("android.util", "Base64");
+                code.addStatement("String __encoded = $L != null ? $T.encodeToString($L, $T.NO_WRAP) : null",
+                        value, base64, value, base64);
+                result = "__encoded";
+                break;
+            case DATE:
+                result = String.format("%s.getTime()", value);
+                break;
+            case INT_ARRAY:
+            case LONG_ARRAY:
+                code.addStatement("String __packed = $T.pack($L)", PackedArrays.class, value);
+                result = "__packed";
+                break;
+            case INT_LIST:
+                code.addStatement("String __packed = $T.packIntegers($L)", PackedArrays.class, value);
+                result = "__packed";
+                break;
+            case LONG_LIST:
+                code.addStatement("String __packed = $T.packLongs($L)", PackedArrays.class, value);
+                result = "__packed";
+                break;
+            case ENUM:
+                if (keyAnnotations.get(valueName, EnumByOrdinal.class) != null) {
+                    result = String.format("%s != null ? %s.ordinal() : -1", value, value);
+                } else {
+                    result = String.format("%s != null ? %s.name() : null", value, value);
+                }
+                break;
+            case UNKNOWN:
+                break;
+        }
+        return result;
+    }
+
+
+    /**
+     * @return the suffix of the editor method the given preference is stored with
+     */
+    private String storedMethodSuffix(String valueName, PreferenceTypeInformation preferenceTypeInformation) {
+        String methodSuffix = Utils.getMethodSuffix(preferenceTypeInformation.getPreferenceType());
+        if (preferenceTypeInformation.getPreferenceType() == PreferenceType.ENUM
+                && keyAnnotations.get(valueName, EnumByOrdinal.class) != null) {
+            methodSuffix = "Int";
+        }
+        return methodSuffix;
+    }
+
+
+    /**
+     * Adds the statements storing a value of the given preference through an editor that is applied later, so several
+     * preferences can be written in one transaction. Blobs of earlier values are not released, the editor must only
+     * be used for preferences that are not stored yet.
+     *
+     * @param value  the expression of the value
+     * @param editor the editor of the store the preference is kept in
+     */
+    public void addEditorPut(CodeBlock.Builder code, String valueName, String value, String editor) {
+        PreferenceTypeInformation preferenceTypeInformation = keyAnnotations.typeOf(valueName);
+        String methodSuffix = storedMethodSuffix(valueName, preferenceTypeInformation);
+        boolean isDate = preferenceTypeInformation.getPreferenceType() == PreferenceType.DATE;
+        int packedIndex = keyAnnotations.packedIndex(valueName);
+        if (packedIndex >= 0) {
+            code.addStatement("$L.put$L($L, $L, $L, $L)", Constants.PACKED_RECORD_FIELD, methodSuffix,
+                    keyAnnotations.storeAccessFor(valueName), packedIndex, value, editor);
+        } else {
+            if (isDate) {
+                // there is no null long, a missing date stays missing
+                code.beginControlFlow("if ($L != null)", value);
+            }
+            String stored = encode(code, valueName, value, preferenceTypeInformation);
+            code.addStatement("$L.put$L($S, $L)", editor, methodSuffix, keyAnnotations.storedKey(valueName), stored);
+            if (isDate) {
+                code.endControlFlow();
+            }
+        }
+    }
+
+
+    public boolean isStringSetMutator(ExecutableElement method) {
+        List<? extends VariableElement> parameters = method.getParameters();
+        String parameterType = parameters.size() == 1 ? parameters.get(0).asType().toString() : null;
+        return isStringSetMutator(method.getSimpleName().toString(), parameterType, method.getReturnType().toString());
+    }
+
+
+    public boolean isStringSetMutator(Method method) {
+        Class<?>[] parameters = method.getParameterTypes();
+        String parameterType = parameters.length == 1 ? parameters[0].getCanonicalName() : null;
+        return isStringSetMutator(method.getName(), parameterType, method.getReturnType().toString());
+    }
+
+
+    public void createStringSetMutatorFromModel(ExecutableElement method, TypeSpec.Builder type, Cached cachedAnnotation) {
+        createStringSetMutator(type, method.getSimpleName().toString(), method.getReturnType().toString(),
+                cachedAnnotation);
+    }
+
+
+    public void createStringSetMutatorFromReflection(Method method, TypeSpec.Builder type, Cached cachedAnnotation) {
+        createStringSetMutator(type, method.getName(), method.getReturnType().toString(), cachedAnnotation);
+    }
+
+
+    public boolean isNumericUpdater(ExecutableElement method) {
+        List<String> parameterTypes = new ArrayList<String>();
+        for (VariableElement parameter : method.getParameters()) {
+            parameterTypes.add(parameter.asType().toString());
+        }
+        return isNumericUpdater(method.getSimpleName().toString(), parameterTypes, method.getReturnType().toString());
+    }
+
+
+    public boolean isNumericUpdater(Method method) {
+        List<String> parameterTypes = new ArrayList<String>();
+        for (Class<?> parameter : method.getParameterTypes()) {
+            parameterTypes.add(parameter.getCanonicalName());
+        }
+        return isNumericUpdater(method.getName(), parameterTypes, method.getReturnType().toString());
+    }
+
+
+    /**
+     * Update methods are detected by name. An increment method with a void return type could also be the putter of a
+     * preference named like the method, it is only generated as update method if there is no such getter. The
+     * documented form {@code void increment<Key>(delta)} is unambiguous as long as the preference it increments has a
+     * getter, otherwise the method has to return the value type to be taken as increment without a warning.
+     *
+     * @return a warning for the given update method if it could also be a putter, null otherwise
+     */
+    public String checkAmbiguousUpdater(ExecutableElement method) {
+        return checkAmbiguousUpdater(method.getSimpleName().toString(), isPutter(method));
+    }
+
+
+    public String checkAmbiguousUpdater(Method method) {
+        return checkAmbiguousUpdater(method.getName(), isPutter(method));
+    }
+
+
+    private String checkAmbiguousUpdater(String methodName, boolean isPutter) {
+        String result = null;
+        String valueName = numericKeyFor(methodName);
+        // a counter that cannot be read is unlikely, so the method is more probably a preference of its own
+        if (isPutter && methodName.startsWith(Constants.NUMERIC_INCREMENT_PREFIX)
+                && !keyAnnotations.hasGetter(valueName)) {
+            result = String.format("'%s' is generated as increment of preference '%s', which has no getter. " +
+                            "Return %s to make this explicit or declare a getter '%s()' to store it as a preference " +
+                            "of its own.", methodName, valueName, keyAnnotations.typeOf(valueName).getTypeName(),
+                    methodName);
+        }
+        return result;
+    }
+
+
+    public void createNumericUpdaterFromModel(ExecutableElement method, TypeSpec.Builder type, Cached cachedAnnotation) {
+        createNumericUpdater(type, method.getSimpleName().toString(), method.getReturnType().toString(),
+                cachedAnnotation);
+    }
+
+
+    public void createNumericUpdaterFromReflection(Method method, TypeSpec.Builder type, Cached cachedAnnotation) {
+        createNumericUpdater(type, method.getName(), method.getReturnType().toString(), cachedAnnotation);
+    }
+
+
+    private boolean isNumericUpdater(String methodName, List<String> parameterTypes, String returnType) {
+        String valueName = numericKeyFor(methodName);
+        // a preference that happens to be named like an update method is still a preference
+        if (valueName == null || keyAnnotations.hasGetter(methodName)) {
+            return false;
+        }
+        String valueType = keyAnnotations.typeOf(valueName).getTypeName();
+        String operatorType = valueType.equals("int") ? IntOperator.class.getName() : LongOperator.class.getName();
+        boolean returnsValue = returnType.equals("void") || returnType.equals(valueType);
+
+        boolean isUpdater = false;
+        if (methodName.startsWith(Constants.NUMERIC_INCREMENT_PREFIX)) {
+            isUpdater = parameterTypes.equals(Collections.singletonList(valueType)) && returnsValue;
+        } else if (methodName.startsWith(Constants.NUMERIC_COMPARE_AND_SET_PREFIX)) {
+            isUpdater = parameterTypes.equals(Arrays.asList(valueType, valueType)) && returnType.equals("boolean");
+        } else if (methodName.startsWith(Constants.NUMERIC_UPDATE_PREFIX)) {
+            isUpdater = parameterTypes.equals(Collections.singletonList(operatorType)) && returnsValue;
+        }
+        return isUpdater;
+    }
+
+
+    private void createNumericUpdater(TypeSpec.Builder type, String methodName, String returnType,
+                                      Cached cachedAnnotation) {
+        String valueName = numericKeyFor(methodName);
+        PreferenceTypeInformation preferenceTypeInformation = keyAnnotations.typeOf(valueName);
+        boolean isInt = preferenceTypeInformation.getPreferenceType() == PreferenceType.INT;
+        TypeName valueType = preferenceTypeInformation.getType();
+        String methodSuffix = Utils.getMethodSuffix(preferenceTypeInformation.getPreferenceType());
+        String store = keyAnnotations.storeAccessFor(valueName);
+        String storedKey = keyAnnotations.storedKey(valueName);
+        Default defaultAnnotation = keyAnnotations.get(valueName, Default.class);
+        String defaultValue;
+        if (isInt) {
+            defaultValue = String.valueOf(defaultAnnotation != null ? defaultAnnotation.ofInt() : Default.intDefault);
+        } else {
+            defaultValue = (defaultAnnotation != null ? defaultAnnotation.ofLong() : Default.longDefault) + "l";
+        }
+
+        MethodSpec.Builder updaterBuilder = MethodSpec.methodBuilder(methodName)
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC);
+        boolean returnsValue = !returnType.equals("void");
+        if (methodName.startsWith(Constants.NUMERIC_COMPARE_AND_SET_PREFIX)) {
+            updaterBuilder.returns(boolean.class);
+        } else {
+            updaterBuilder.returns(returnsValue ? valueType : TypeName.VOID);
+        }
+
+        int packedIndex = keyAnnotations.packedIndex(valueName);
+        addMigration(updaterBuilder, valueName, store);
+        updaterBuilder.beginControlFlow("synchronized ($L)", getLock(valueName));
+        if (packedIndex >= 0) {
+            updaterBuilder.addStatement("$T __current = $L.get$L($L, $L, $L)", valueType, Constants.PACKED_RECORD_FIELD,
+                    methodSuffix, store, packedIndex, defaultValue);
+        } else {
+            updaterBuilder.addStatement("$T __current = $L.get$L($S, $L)", valueType, store, methodSuffix, storedKey,
+                    defaultValue);
+        }
+        if (methodName.startsWith(Constants.NUMERIC_INCREMENT_PREFIX)) {
+            updaterBuilder.addParameter(valueType, "delta")
+                    .addStatement("$T __value = __current + delta", valueType);
+        } else if (methodName.startsWith(Constants.NUMERIC_COMPARE_AND_SET_PREFIX)) {
+            updaterBuilder.addParameter(valueType, "expected")
+                    .addParameter(valueType, "newValue")
+                    .beginControlFlow("if (__current != expected)")
+                    .addStatement("return false")
+                    .endControlFlow()
+                    .addStatement("$T __value = newValue", valueType);
+        } else {
+            updaterBuilder.addParameter(isInt ? IntOperator.class : LongOperator.class, "operator")
+                    .addStatement("$T __value = operator.apply(__current)", valueType);
+        }
+
+        if (cachedAnnotation != null) {
+            if (cachedAnnotation.cacheOnPut()) {
+                updaterBuilder.addStatement("cache.put($S, __value)", valueName);
+            } else {
+                updaterBuilder.addStatement("cache.remove($S)", valueName);
+            }
+        }
+        if (packedIndex >= 0) {
+            updaterBuilder.addStatement("$L.put$L($L, $L, __value, false)", Constants.PACKED_RECORD_FIELD, methodSuffix,
+                    store, packedIndex);
+        } else {
+            updaterBuilder.addStatement("$L.edit().put$L($S, __value).$L", store, methodSuffix, storedKey,
+                    PreferenceEditorCommitStyle.APPLY.getStatementPart());
+        }
+        if (methodName.startsWith(Constants.NUMERIC_COMPARE_AND_SET_PREFIX)) {
+            updaterBuilder.addStatement("return true");
+        } else if (returnsValue) {
+            updaterBuilder.addStatement("return __value");
+        }
+        updaterBuilder.endControlFlow();
+
+        type.addMethod(updaterBuilder.build());
+    }
+
+
+    private boolean isStringSetMutator(String methodName, String parameterType, String returnType) {
+        boolean isMutator = false;
+        if (keyAnnotations.hasGetter(methodName)) {
+            return false;
+        }
+        if (methodName.startsWith(Constants.STRINGSET_ADD_PREFIX) || methodName.startsWith(Constants.STRINGSET_REMOVE_PREFIX)) {
+            boolean hasValidParameter = "java.lang.String[]".equals(parameterType) || "java.lang.String...".equals(parameterType);
+            boolean hasValidReturnType = returnType.equals("void") || returnType.equals("boolean");
+            isMutator = hasValidParameter && hasValidReturnType && stringSetKeyFor(methodName) != null;
+        } else if (methodName.endsWith(Constants.STRINGSET_CONTAINS_SUFFIX)) {
+            isMutator = "java.lang.String".equals(parameterType) && returnType.equals("boolean")
+                    && stringSetKeyFor(methodName) != null;
+        }
+        return isMutator;
+    }
+
+
+    private void createStringSetMutator(TypeSpec.Builder type, String methodName, String returnType,
+                                        Cached cachedAnnotation) {
+        String valueName = stringSetKeyFor(methodName);
+        MethodSpec.Builder mutatorBuilder = MethodSpec.methodBuilder(methodName)
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC);
+        ParameterizedTypeName stringSet = ParameterizedTypeName.get(Set.class, String.class);
+        String store = keyAnnotations.storeAccessFor(valueName);
+        String storedKey = keyAnnotations.storedKey(valueName);
+        addMigration(mutatorBuilder, valueName, store);
+
+        if (methodName.endsWith(Constants.STRINGSET_CONTAINS_SUFFIX)) {
+            // Android returns its internal set which may be read but not modified, so no copy is necessary
+            mutatorBuilder.returns(boolean.class).addParameter(String.class, "value");
+            if (cachedAnnotation != null && keyAnnotations.isMultiProcess()) {
+                mutatorBuilder.addStatement("$L.sync()", keyAnnotations.storeFor(valueName));
+            }
+            if (cachedAnnotation != null) {
+                mutatorBuilder.addStatement("$T __current = ($T) cache.get($S)", stringSet, stringSet, valueName)
+                        .beginControlFlow("if (__current == null)")
+                        .addStatement("__current = $L.getStringSet($S, null)", store, storedKey)
+                        .beginControlFlow("if (__current != null)")
+                        .addStatement("cache.put($S, __current)", valueName)
+                        .endControlFlow()
+                        .endControlFlow();
+            } else {
+                mutatorBuilder.addStatement("$T __current = $L.getStringSet($S, null)", stringSet, store, storedKey);
+            }
+            mutatorBuilder.addStatement("return __current != null && __current.contains(value)");
+        } else {
+            boolean shouldReturnValue = returnType.equals("boolean");
+            PreferenceEditorCommitStyle commitStyle = shouldReturnValue ? PreferenceEditorCommitStyle.COMMIT :
+                    PreferenceEditorCommitStyle.APPLY;
+            mutatorBuilder.returns(shouldReturnValue ? boolean.class : void.class)
+                    .addParameter(String[].class, "values")
+                    .varargs(true)
+                    .beginControlFlow("synchronized ($L)", getLock(valueName))
+                    .addStatement("$T __current = $L.getStringSet($S, null)", stringSet, store, storedKey)
+                    .addStatement("$T __updated = __current != null ? new $T<String>(__current) : new $T<String>()",
+                            stringSet, HashSet.class, HashSet.class);
+            if (methodName.startsWith(Constants.STRINGSET_ADD_PREFIX)) {
+                mutatorBuilder.beginControlFlow("if (!$T.addAll(__updated, values))", Collections.class);
+            } else {
+                mutatorBuilder.beginControlFlow("if (!__updated.removeAll($T.asList(values)))", Arrays.class);
+            }
+            mutatorBuilder.addStatement(shouldReturnValue ? "return true" : "return")
+                    .endControlFlow();
+            if (cachedAnnotation != null) {
+                if (cachedAnnotation.cacheOnPut()) {
+                    mutatorBuilder.addStatement("cache.put($S, __updated)", valueName);
+                } else {
+                    mutatorBuilder.addStatement("cache.remove($S)", valueName);
+                }
+            }
+            mutatorBuilder.addStatement("$L$L.edit().putStringSet($S, __updated).$L",
+                    shouldReturnValue ? "return " : "", store, storedKey, commitStyle.getStatementPart())
+                    .endControlFlow();
+        }
+
+        type.addMethod(mutatorBuilder.build());
+    }
+
+
+    /**
+     * Migrates the preference before its current value is read, otherwise the updated value would be stored under the
+     * new key and the value of earlier versions dropped by the migration.
+     */
+    private void addMigration(MethodSpec.Builder method, String valueName, String store) {
+        int migrationIndex = keyAnnotations.migrationIndex(valueName);
+        if (migrationIndex >= 0) {
+            method.addStatement("$L.migrate($L, $L)", Constants.MIGRATIONS_FIELD, store, migrationIndex);
+        }
+    }
+
+
+    /**
+     * @return the key of the {@code Set<String>} preference the given mutator method refers to, null if there is none
+     */
+    private String stringSetKeyFor(String methodName) {
+        String result = null;
+        if (methodName.startsWith(Constants.STRINGSET_ADD_PREFIX)) {
+            result = keyFor(methodName.substring(Constants.STRINGSET_ADD_PREFIX.length()), PreferenceType.STRINGSET);
+        } else if (methodName.startsWith(Constants.STRINGSET_REMOVE_PREFIX)) {
+            result = keyFor(methodName.substring(Constants.STRINGSET_REMOVE_PREFIX.length()), PreferenceType.STRINGSET);
+        } else if (methodName.endsWith(Constants.STRINGSET_CONTAINS_SUFFIX)) {
+            result = keyFor(methodName.substring(0, methodName.length() - Constants.STRINGSET_CONTAINS_SUFFIX.length()),
+                    PreferenceType.STRINGSET);
+        }
+        return result;
+    }
+
+
+    /**
+     * @return the key of the {@code int} or {@code long} preference the given update method refers to, null if there
+     * is none
+     */
+    private String numericKeyFor(String methodName) {
+        String result = null;
+        for (String prefix : Constants.NUMERIC_UPDATE_PREFIXES) {
+            if (result == null && methodName.startsWith(prefix)) {
+                result = keyFor(methodName.substring(prefix.length()), PreferenceType.INT, PreferenceType.LONG);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * @param keyPart the capitalized key as part of a method name
+     * @return the key of the preference of one of the given types or null if there is none
+     */
+    private String keyFor(String keyPart, PreferenceType... preferenceTypes) {
+        String result = null;
+        if (!keyPart.isEmpty()) {
+            String decapitalized = Character.toLowerCase(keyPart.charAt(0)) + keyPart.substring(1);
+            for (String candidate : Arrays.asList(decapitalized, keyPart)) {
+                PreferenceTypeInformation preferenceTypeInformation = keyAnnotations.typeOf(candidate);
+                if (result == null && preferenceTypeInformation != null
+                        && Arrays.asList(preferenceTypes).contains(preferenceTypeInformation.getPreferenceType())) {
+                    result = candidate;
+                }
+            }
+        }
+        return result;
+    }
+
+
+    private boolean hasStringSetMutators(String valueName) {
+        String capitalized = Character.toUpperCase(valueName.charAt(0)) + valueName.substring(1);
+        return keyAnnotations.containsKey(Constants.STRINGSET_ADD_PREFIX + capitalized)
+                || keyAnnotations.containsKey(Constants.STRINGSET_REMOVE_PREFIX + capitalized);
+    }
+
+
+    private boolean hasNumericUpdaters(String valueName) {
+        String capitalized = Character.toUpperCase(valueName.charAt(0)) + valueName.substring(1);
+        boolean result = false;
+        for (String prefix : Constants.NUMERIC_UPDATE_PREFIXES) {
+            result |= keyAnnotations.containsKey(prefix + capitalized);
+        }
+        return result;
+    }
+
+
+    /**
+     * Assigns a lock stripe to the given preference. Stripes are handed out round robin, so preferences only share a
+     * lock if there are more locked preferences than stripes.
+     *
+     * @return the expression referencing the lock
+     */
+    private String getLock(String valueName) {
+        Integer stripe = lockStripes.get(valueName);
+        if (stripe == null) {
+            stripe = lockStripes.size() % Constants.LOCK_STRIPES;
+            lockStripes.put(valueName, stripe);
+        }
+        return "__locks[" + stripe + "]";
+    }
+
+
+    /**
+     * Adds the lock stripes used by the generated update methods. Has to be called after all methods are generated.
+     */
+    public void createLocks(TypeSpec.Builder type) {
+        if (!lockStripes.isEmpty()) {
+            int stripes = Math.min(lockStripes.size(), Constants.LOCK_STRIPES);
+            CodeBlock.Builder initializer = CodeBlock.builder().add("{");
+            for (int i = 0; i < stripes; i++) {
+                initializer.add(i == 0 ? "new $T()" : ", new $T()", Object.class);
+            }
+            type.addField(FieldSpec.builder(Object[].class, "__locks", Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer(initializer.add("}").build())
+                    .build());
+        }
+    }
+
     public Map<String, Element> getPreferenceKeys() {
         return preferenceKeys;
     }
 
+    public Map<String, TypeName> getGenericTypeNames() {
+        return genericTypeNames;
+    }
+
+    public Map<String, CodeBlock> getSerializedTypes() {
+        return serializedTypes;
+    }
+
 }
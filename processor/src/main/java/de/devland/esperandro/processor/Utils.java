@@ -22,6 +22,12 @@ public class Utils {
             case FLOAT:
                 methodSuffix = "Float";
                 break;
+            case DOUBLE:
+                methodSuffix = "Long";
+                break;
+            case SHORT:
+                methodSuffix = "Int";
+                break;
             case BOOLEAN:
                 methodSuffix = "Boolean";
                 //noinspection PointlessBooleanExpression
@@ -32,6 +38,23 @@ public class Utils {
             case STRINGSET:
                 methodSuffix = "StringSet";
                 break;
+            case BYTE_ARRAY:
+                methodSuffix = "String";
+                break;
+            case DATE:
+                methodSuffix = "Long";
+                break;
+            case MAP:
+                break;
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            case INT_LIST:
+            case LONG_LIST:
+                methodSuffix = "String";
+                break;
+            case ENUM:
+                methodSuffix = "String";
+                break;
             case OBJECT:
                 methodSuffix = "String";
                 break;
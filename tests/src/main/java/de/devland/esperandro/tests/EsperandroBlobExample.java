@@ -0,0 +1,22 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.annotations.experimental.Blob;
+import de.devland.esperandro.tests.model.Container;
+
+import java.util.ArrayList;
+
+@SharedPreferences(name = "blobExample")
+public interface EsperandroBlobExample extends SharedPreferenceActions {
+
+    @Blob(threshold = 64)
+    void containerValue(Container container);
+
+    Container containerValue();
+
+    @Blob(threshold = 64, memoryMapped = true)
+    ArrayList<Container> containerList();
+
+    void containerList(ArrayList<Container> containerList);
+}
@@ -0,0 +1,24 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.annotations.experimental.CoalesceChanges;
+import de.devland.esperandro.annotations.experimental.PackedPrimitives;
+
+@SharedPreferences(name = "coalesceExample")
+@CoalesceChanges(windowMillis = 100)
+@PackedPrimitives
+public interface EsperandroCoalesceExample extends SharedPreferenceActions {
+
+    int launches();
+
+    void launches(int launches);
+
+    boolean onboardingDone();
+
+    void onboardingDone(boolean onboardingDone);
+
+    String userName();
+
+    void userName(String userName);
+}
@@ -0,0 +1,33 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.PreferenceMap;
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.annotations.experimental.CompactKeys;
+
+import java.util.Set;
+
+@SharedPreferences(name = "compactKeysExample")
+@CompactKeys
+public interface EsperandroCompactKeysExample extends SharedPreferenceActions {
+
+    String containerListObject();
+
+    void containerListObject(String containerListObject);
+
+    @Default(ofInt = 0)
+    int launchCount();
+
+    void launchCount(int launchCount);
+
+    int incrementLaunchCount(int delta);
+
+    Set<String> visitedScreens();
+
+    void visitedScreens(Set<String> visitedScreens);
+
+    void addToVisitedScreens(String... screens);
+
+    PreferenceMap<Integer> scores();
+}
@@ -0,0 +1,32 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.IntOperator;
+import de.devland.esperandro.LongOperator;
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.annotations.experimental.Cached;
+
+@SharedPreferences(name = "counterExample")
+@Cached
+public interface EsperandroCounterExample extends SharedPreferenceActions {
+
+    @Default(ofInt = 0)
+    int launches();
+
+    void launches(int launches);
+
+    int incrementLaunches(int delta);
+
+    boolean compareAndSetLaunches(int expected, int newValue);
+
+    int updateLaunches(IntOperator operator);
+
+    long bytesSent();
+
+    void bytesSent(long bytesSent);
+
+    long incrementBytesSent(long delta);
+
+    long updateBytesSent(LongOperator operator);
+}
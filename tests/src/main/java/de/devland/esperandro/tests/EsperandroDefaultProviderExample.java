@@ -0,0 +1,41 @@
+package de.devland.esperandro.tests;
+
+import android.content.Context;
+import de.devland.esperandro.DefaultValueProvider;
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.DefaultProvider;
+import de.devland.esperandro.annotations.SharedPreferences;
+
+@SharedPreferences(name = "defaultProviderExample")
+public interface EsperandroDefaultProviderExample extends SharedPreferenceActions {
+
+    @DefaultProvider(DeviceIdProvider.class)
+    String deviceId();
+
+    void deviceId(String deviceId);
+
+    String deviceId$Default(String defaultValue);
+
+    @DefaultProvider(PackageNameLengthProvider.class)
+    int packageNameLength();
+
+    class DeviceIdProvider implements DefaultValueProvider<String> {
+        public static int calls;
+
+        @Override
+        public String provide(Context context) {
+            calls++;
+            return "device-" + calls;
+        }
+    }
+
+    class PackageNameLengthProvider implements DefaultValueProvider<Integer> {
+        public static int calls;
+
+        @Override
+        public Integer provide(Context context) {
+            calls++;
+            return context.getPackageName().length();
+        }
+    }
+}
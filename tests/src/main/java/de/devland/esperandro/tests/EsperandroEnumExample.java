@@ -0,0 +1,29 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.EnumByOrdinal;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.annotations.experimental.Cached;
+import de.devland.esperandro.tests.model.Level;
+
+@SharedPreferences(name = "enumExample")
+@Cached
+public interface EsperandroEnumExample extends SharedPreferenceActions {
+
+    Level level();
+
+    void level(Level level);
+
+    Level level$Default(Level defaultValue);
+
+    @Default(ofEnum = "MEDIUM")
+    Level defaultLevel();
+
+    void defaultLevel(Level defaultLevel);
+
+    @EnumByOrdinal
+    Level ordinalLevel();
+
+    boolean ordinalLevel(Level ordinalLevel);
+}
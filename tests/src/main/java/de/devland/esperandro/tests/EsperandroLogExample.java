@@ -0,0 +1,17 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.storage.LogPreferenceStore;
+
+@SharedPreferences(name = "logExample", store = LogPreferenceStore.Factory.class)
+public interface EsperandroLogExample extends SharedPreferenceActions {
+
+    int launches();
+
+    void launches(int launches);
+
+    long lastSeen();
+
+    void lastSeen(long lastSeen);
+}
@@ -0,0 +1,21 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.PreferenceMap;
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.tests.model.Container;
+import de.devland.esperandro.tests.model.Level;
+
+@SharedPreferences(name = "mapExample")
+public interface EsperandroMapExample extends SharedPreferenceActions {
+
+    PreferenceMap<Integer> scores();
+
+    PreferenceMap<Level> levels();
+
+    PreferenceMap<Container> containers();
+
+    String name();
+
+    void name(String name);
+}
@@ -0,0 +1,31 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.storage.MappedPreferenceStore;
+
+import java.util.Set;
+
+@SharedPreferences(name = "mappedExample", store = MappedPreferenceStore.Factory.class)
+public interface EsperandroMappedExample extends SharedPreferenceActions {
+
+    int counter();
+
+    void counter(int counter);
+
+    long timestamp();
+
+    void timestamp(long timestamp);
+
+    boolean flag();
+
+    void flag(boolean flag);
+
+    String name();
+
+    void name(String name);
+
+    Set<String> tags();
+
+    void tags(Set<String> tags);
+}
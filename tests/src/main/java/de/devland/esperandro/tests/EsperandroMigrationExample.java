@@ -0,0 +1,54 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.MigrationActions;
+import de.devland.esperandro.MigrationConverter;
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.annotations.experimental.MigrateFrom;
+import de.devland.esperandro.annotations.experimental.SchemaVersion;
+
+import java.util.Set;
+
+@SharedPreferences(name = "migrationExample")
+@SchemaVersion(2)
+public interface EsperandroMigrationExample extends SharedPreferenceActions, MigrationActions {
+
+    @MigrateFrom({"user_name", "name"})
+    String userName();
+
+    void userName(String userName);
+
+    @MigrateFrom(converter = ParseInt.class)
+    @Default(ofInt = 0)
+    int launches();
+
+    void launches(int launches);
+
+    @MigrateFrom("dark_mode")
+    boolean darkMode();
+
+    void darkMode(boolean darkMode);
+
+    @MigrateFrom("open_count")
+    @Default(ofInt = 0)
+    int openCount();
+
+    void openCount(int openCount);
+
+    int incrementOpenCount(int delta);
+
+    @MigrateFrom("favorite_tags")
+    Set<String> tags();
+
+    void tags(Set<String> tags);
+
+    void addToTags(String... tags);
+
+    class ParseInt implements MigrationConverter {
+        @Override
+        public Object convert(Object value) {
+            return value instanceof String ? Integer.valueOf((String) value) : null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.CacheActions;
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.SharedPreferenceMode;
+import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.annotations.experimental.Cached;
+
+@Cached
+@SharedPreferences(name = "multiProcessExample", mode = SharedPreferenceMode.MULTI_PROCESS)
+public interface EsperandroMultiProcessExample extends SharedPreferenceActions, CacheActions {
+
+    String syncedValue();
+
+    boolean syncedValue(String syncedValue);
+
+    @Default(ofInt = 0)
+    int counter();
+
+    boolean counter(int counter);
+}
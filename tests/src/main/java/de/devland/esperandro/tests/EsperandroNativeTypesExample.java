@@ -0,0 +1,38 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.SharedPreferences;
+
+import java.util.Date;
+
+@SharedPreferences(name = "nativeTypesExample")
+public interface EsperandroNativeTypesExample extends SharedPreferenceActions {
+
+    double doublePref();
+
+    void doublePref(double doublePref);
+
+    @Default(ofDouble = Math.PI)
+    double doubleDefaultPref();
+
+    short shortPref();
+
+    boolean shortPref(short shortPref);
+
+    @Default(ofShort = 7)
+    short shortDefaultPref();
+
+    byte[] bytesPref();
+
+    void bytesPref(byte[] bytesPref);
+
+    Date datePref();
+
+    void datePref(Date datePref);
+
+    Date datePref$Default(Date defaultValue);
+
+    @Default(ofLong = 1000L)
+    Date dateDefaultPref();
+}
@@ -0,0 +1,27 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SharedPreferences(name = "packedExample")
+public interface EsperandroPackedExample extends SharedPreferenceActions {
+
+    int[] intArray();
+
+    void intArray(int[] intArray);
+
+    long[] longArray();
+
+    boolean longArray(long[] longArray);
+
+    ArrayList<Integer> integerList();
+
+    void integerList(ArrayList<Integer> integerList);
+
+    List<Long> longList();
+
+    void longList(List<Long> longList);
+}
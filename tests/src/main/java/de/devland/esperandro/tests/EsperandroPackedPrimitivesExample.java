@@ -0,0 +1,41 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.ValueChangeListener;
+import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.annotations.experimental.PackedPrimitives;
+
+@SharedPreferences(name = "packedPrimitivesExample")
+@PackedPrimitives
+public interface EsperandroPackedPrimitivesExample extends SharedPreferenceActions {
+
+    @Default(ofInt = 0)
+    int launches();
+
+    void launches(int launches);
+
+    int incrementLaunches(int delta);
+
+    long lastSeen();
+
+    boolean lastSeen(long lastSeen);
+
+    float volume();
+
+    float volume$Default(float defaultValue);
+
+    void volume(float volume);
+
+    boolean onboardingDone();
+
+    void onboardingDone(boolean onboardingDone);
+
+    String userName();
+
+    void userName(String userName);
+
+    void onLaunchesChanged(ValueChangeListener<Integer> listener);
+
+    void onOnboardingDoneChanged(ValueChangeListener<Boolean> listener);
+}
@@ -0,0 +1,41 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.Projection;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.annotations.experimental.Blob;
+import de.devland.esperandro.tests.model.Container;
+
+import java.util.ArrayList;
+
+@SharedPreferences(name = "projectionExample")
+public interface EsperandroProjectionExample extends SharedPreferenceActions {
+
+    void containerValue(Container container);
+
+    Container containerValue();
+
+    @Projection(preference = "containerValue", path = "value")
+    String containerValueValue();
+
+    @Projection(preference = "containerValue", path = "anotherValue")
+    @Default(ofInt = 42)
+    int containerValueAnotherValue();
+
+    @Blob(threshold = 16)
+    void blobContainer(Container container);
+
+    Container blobContainer();
+
+    @Projection(preference = "blobContainer", path = "value")
+    @Default(ofString = "missing")
+    String blobContainerValue();
+
+    void containerList(ArrayList<Container> containerList);
+
+    ArrayList<Container> containerList();
+
+    @Projection(preference = "containerList", path = "value")
+    Container[] containerListValues();
+}
@@ -21,6 +21,7 @@ import de.devland.esperandro.tests.model.Container;
 import de.devland.esperandro.tests.model.ContainerListObject;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
 
 @SharedPreferences
 public interface EsperandroSerializationExample extends SharedPreferenceActions {
@@ -47,4 +48,6 @@ public interface EsperandroSerializationExample extends SharedPreferenceActions
 
     Container containerValueSync();
 
+    void exportedContainers(LinkedList<Container> exportedContainers);
+
 }
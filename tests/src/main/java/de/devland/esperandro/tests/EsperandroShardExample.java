@@ -0,0 +1,31 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.PreferenceMap;
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.Shard;
+import de.devland.esperandro.annotations.SharedPreferences;
+
+@SharedPreferences(name = "shardExample")
+public interface EsperandroShardExample extends SharedPreferenceActions {
+
+    String userName();
+
+    void userName(String userName);
+
+    @Shard("hot")
+    @Default(ofLong = 0)
+    long lastSeen();
+
+    void lastSeen(long lastSeen);
+
+    long incrementLastSeen(long delta);
+
+    @Shard("hot")
+    int scrollPosition();
+
+    void scrollPosition(int scrollPosition);
+
+    @Shard("cold")
+    PreferenceMap<String> drafts();
+}
@@ -17,8 +17,10 @@ package de.devland.esperandro.tests;
 
 import de.devland.esperandro.SharedPreferenceActions;
 import de.devland.esperandro.SharedPreferenceMode;
+import de.devland.esperandro.ValueChangeListener;
 import de.devland.esperandro.annotations.Default;
 import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.reactive.Publisher;
 
 import java.util.Set;
 
@@ -59,4 +61,14 @@ public interface EsperandroSimpleExample extends SharedPreferenceActions {
 
     boolean stringPrefWithBooleanPutter(String value);
 
+    void onIntegerPrefChanged(ValueChangeListener<Integer> listener);
+
+    void unregisterOnIntegerPrefChanged(ValueChangeListener<Integer> listener);
+
+    void onStringPrefChanged(ValueChangeListener<String> listener);
+
+    Publisher<Integer> integerPrefPublisher();
+
+    Publisher<String> stringPrefPublisher();
+
 }
@@ -0,0 +1,12 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.SharedPreferences;
+
+@SharedPreferences(name = "storeExample", store = RedirectingStoreFactory.class)
+public interface EsperandroStoreExample extends SharedPreferenceActions {
+
+    String value();
+
+    void value(String value);
+}
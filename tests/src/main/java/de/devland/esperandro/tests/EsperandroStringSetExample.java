@@ -0,0 +1,22 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.annotations.experimental.Cached;
+
+import java.util.Set;
+
+@SharedPreferences(name = "stringSetExample")
+@Cached(cacheOnPut = true)
+public interface EsperandroStringSetExample extends SharedPreferenceActions {
+
+    Set<String> tags();
+
+    void tags(Set<String> tags);
+
+    void addToTags(String... tags);
+
+    boolean removeFromTags(String... tags);
+
+    boolean tagsContains(String tag);
+}
@@ -0,0 +1,28 @@
+package de.devland.esperandro.tests;
+
+import de.devland.esperandro.SharedPreferenceActions;
+import de.devland.esperandro.annotations.Default;
+import de.devland.esperandro.annotations.SharedPreferences;
+import de.devland.esperandro.annotations.experimental.Blob;
+import de.devland.esperandro.annotations.experimental.WriteBehind;
+import de.devland.esperandro.tests.model.Container;
+
+@SharedPreferences(name = "writeBehindExample")
+public interface EsperandroWriteBehindExample extends SharedPreferenceActions {
+
+    @WriteBehind(intervalMillis = 500)
+    @Default(ofInt = -1)
+    int scrollPosition();
+
+    void scrollPosition(int scrollPosition);
+
+    String title();
+
+    void title(String title);
+
+    @WriteBehind(intervalMillis = 500)
+    @Blob(threshold = 64)
+    Container draft();
+
+    void draft(Container draft);
+}
@@ -0,0 +1,20 @@
+package de.devland.esperandro.tests;
+
+import android.content.Context;
+import de.devland.esperandro.SharedPreferenceMode;
+import de.devland.esperandro.storage.PreferenceStore;
+import de.devland.esperandro.storage.PreferenceStoreFactory;
+import de.devland.esperandro.storage.SharedPreferencesStore;
+
+/**
+ * Stores preferences in a differently named SharedPreferences file to show that the store is pluggable.
+ */
+public class RedirectingStoreFactory implements PreferenceStoreFactory {
+
+    public static final String PREFIX = "redirected-";
+
+    @Override
+    public PreferenceStore create(Context context, String name, SharedPreferenceMode mode) {
+        return new SharedPreferencesStore(context.getSharedPreferences(PREFIX + name, mode.getSharedPreferenceMode()));
+    }
+}
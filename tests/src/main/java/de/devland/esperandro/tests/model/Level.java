@@ -0,0 +1,5 @@
+package de.devland.esperandro.tests.model;
+
+public enum Level {
+    LOW, MEDIUM, HIGH
+}
@@ -0,0 +1,106 @@
+package de.devland.esperandro;
+
+import de.devland.esperandro.tests.EsperandroCoalesceExample$$Impl;
+import de.devland.esperandro.tests.EsperandroCompactKeysExample$$Impl;
+import de.devland.esperandro.tests.EsperandroShardExample$$Impl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class BatchListenerTest {
+
+    private RecordingListener listener;
+
+    @Before
+    public void setup() {
+        listener = new RecordingListener();
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void changesOfAllShardsAreDeliveredAfterTheCurrentMessage() {
+        EsperandroShardExample$$Impl preferences = new EsperandroShardExample$$Impl(RuntimeEnvironment.application);
+        preferences.registerOnBatchChangeListener(listener);
+
+        preferences.userName("name");
+        preferences.lastSeen(1L);
+        preferences.lastSeen(2L);
+        preferences.scrollPosition(3);
+        Assert.assertTrue(listener.batches.isEmpty());
+
+        ShadowLooper.runUiThreadTasks();
+        Assert.assertEquals(1, listener.batches.size());
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("userName", "lastSeen", "scrollPosition")),
+                listener.batches.get(0));
+
+        preferences.unregisterOnBatchChangeListener(listener);
+        preferences.userName("other");
+        ShadowLooper.runUiThreadTasks();
+        Assert.assertEquals(1, listener.batches.size());
+        preferences.clear();
+    }
+
+    @Test
+    public void changesAreCollectedDuringTheWindow() {
+        EsperandroCoalesceExample$$Impl preferences =
+                new EsperandroCoalesceExample$$Impl(RuntimeEnvironment.application);
+        preferences.registerOnBatchChangeListener(listener);
+
+        preferences.userName("name");
+        ShadowLooper.runUiThreadTasks();
+        Assert.assertTrue(listener.batches.isEmpty());
+
+        preferences.launches(1);
+        ShadowLooper.idleMainLooper(100);
+        Assert.assertEquals(1, listener.batches.size());
+        // packed primitives are reported by their names
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("userName", "launches", "onboardingDone")),
+                listener.batches.get(0));
+        preferences.unregisterOnBatchChangeListener(listener);
+        preferences.clear();
+    }
+
+    @Test
+    public void compactKeysAreReportedByPreferenceName() {
+        EsperandroCompactKeysExample$$Impl preferences =
+                new EsperandroCompactKeysExample$$Impl(RuntimeEnvironment.application);
+        preferences.registerOnBatchChangeListener(listener);
+
+        preferences.incrementLaunchCount(1);
+        preferences.scores().put("level1", 10);
+        ShadowLooper.runUiThreadTasks();
+        Assert.assertEquals(1, listener.batches.size());
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("launchCount", "scores.level1")),
+                listener.batches.get(0));
+        preferences.unregisterOnBatchChangeListener(listener);
+        preferences.clear();
+    }
+
+    private static class RecordingListener implements OnBatchChangeListener {
+        final List<Set<String>> batches = new ArrayList<Set<String>>();
+
+        @Override
+        public void onPreferencesChanged(Set<String> keys) {
+            batches.add(keys);
+        }
+    }
+}
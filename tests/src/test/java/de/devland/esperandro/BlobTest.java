@@ -0,0 +1,120 @@
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+import de.devland.esperandro.serialization.GsonSerializer;
+import de.devland.esperandro.storage.BlobStore;
+import de.devland.esperandro.tests.EsperandroBlobExample;
+import de.devland.esperandro.tests.model.Container;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class BlobTest {
+
+    private EsperandroBlobExample preferences;
+    private SharedPreferences androidPreferences;
+
+    @Before
+    public void setup() {
+        Esperandro.setSerializer(new GsonSerializer());
+        preferences = Esperandro.getPreferences(EsperandroBlobExample.class, RuntimeEnvironment.application);
+        androidPreferences = preferences.get();
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+    }
+
+    @Test
+    public void smallValueStaysInline() {
+        Container container = createContainer("small");
+        preferences.containerValue(container);
+
+        String raw = androidPreferences.getString("containerValue", null);
+        Assert.assertFalse(BlobStore.isReference(raw));
+        Assert.assertEquals(container, preferences.containerValue());
+    }
+
+    @Test
+    public void largeValueIsOffloaded() {
+        Container container = createContainer(largeString());
+        preferences.containerValue(container);
+
+        String raw = androidPreferences.getString("containerValue", null);
+        Assert.assertTrue(BlobStore.isReference(raw));
+        Assert.assertTrue(raw.length() < 64);
+        Assert.assertEquals(container, preferences.containerValue());
+
+        Container updated = createContainer(largeString() + "updated");
+        preferences.containerValue(updated);
+        Assert.assertFalse(raw.equals(androidPreferences.getString("containerValue", null)));
+        Assert.assertEquals(updated, preferences.containerValue());
+    }
+
+    @Test
+    public void shrinkingValueMovesBackInline() {
+        preferences.containerValue(createContainer(largeString()));
+        Container small = createContainer("small");
+        preferences.containerValue(small);
+
+        Assert.assertFalse(BlobStore.isReference(androidPreferences.getString("containerValue", null)));
+        Assert.assertEquals(small, preferences.containerValue());
+    }
+
+    @Test
+    public void staleBlobIsDeletedOnceInlineValueIsPersisted() {
+        preferences.containerValue(createContainer(largeString()));
+        File directory = new File(new File(RuntimeEnvironment.application.getFilesDir(), "esperandro-blobs"),
+                "blobExample");
+        Assert.assertEquals(1, directory.list().length);
+
+        preferences.containerValue(createContainer("small"));
+        // the deletion is queued behind the flush of the inline value
+        Assert.assertTrue(preferences.awaitPendingWrites(5000));
+        Assert.assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void memoryMappedGenericValue() {
+        ArrayList<Container> list = new ArrayList<Container>();
+        list.add(createContainer(largeString()));
+        list.add(createContainer("second"));
+        preferences.containerList(list);
+
+        Assert.assertTrue(BlobStore.isReference(androidPreferences.getString("containerList", null)));
+        Assert.assertEquals(list, preferences.containerList());
+    }
+
+    @Test
+    public void removedBlobReadsAsNull() {
+        preferences.containerValue(createContainer(largeString()));
+        preferences.remove("containerValue");
+        Assert.assertNull(preferences.containerValue());
+    }
+
+    private static Container createContainer(String value) {
+        Container container = new Container();
+        container.value = value;
+        container.anotherValue = 42;
+        return container;
+    }
+
+    private static String largeString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append("blob");
+        }
+        return builder.toString();
+    }
+}
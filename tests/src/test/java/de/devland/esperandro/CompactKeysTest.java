@@ -0,0 +1,106 @@
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+import de.devland.esperandro.tests.EsperandroCompactKeysExample;
+import de.devland.esperandro.tests.EsperandroCompactKeysExample$$Impl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class CompactKeysTest {
+
+    private static final KeyAliases ALIASES = EsperandroCompactKeysExample$$Impl.KEY_ALIASES;
+
+    private EsperandroCompactKeysExample preferences;
+    private SharedPreferences raw;
+
+    @Before
+    public void setup() {
+        preferences = new EsperandroCompactKeysExample$$Impl(RuntimeEnvironment.application);
+        raw = preferences.get();
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+    }
+
+    @Test
+    public void valuesAreStoredUnderCompactKeys() {
+        preferences.containerListObject("value");
+        preferences.incrementLaunchCount(2);
+        preferences.addToVisitedScreens("main");
+        preferences.scores().put("level1", 10);
+
+        String storedKey = ALIASES.storedKey("containerListObject");
+        Assert.assertTrue(storedKey.length() < "containerListObject".length());
+        Assert.assertEquals("containerListObject", ALIASES.keyOf(storedKey));
+        Assert.assertEquals("value", raw.getString(storedKey, null));
+        Assert.assertFalse(raw.contains("containerListObject"));
+        Assert.assertEquals(2, raw.getInt(ALIASES.storedKey("launchCount"), 0));
+        Assert.assertEquals(10, raw.getInt(ALIASES.storedKey("scores") + ".level1", 0));
+
+        Assert.assertEquals("value", preferences.containerListObject());
+        Assert.assertEquals(2, preferences.launchCount());
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("main")), preferences.visitedScreens());
+        Assert.assertEquals(Integer.valueOf(10), preferences.scores().get("level1"));
+    }
+
+    @Test
+    public void genericActionsUsePreferenceNames() {
+        preferences.launchCount(1);
+        Assert.assertTrue(preferences.contains("launchCount"));
+        preferences.remove("launchCount");
+        Assert.assertFalse(preferences.contains("launchCount"));
+
+        preferences.containerListObject("value");
+        preferences.scores().put("level1", 10);
+        preferences.clearDefined();
+        Assert.assertTrue(raw.getAll().isEmpty());
+    }
+
+    @Test
+    public void legacyKeysAreMigrated() {
+        raw.edit().putString("containerListObject", "legacy").putInt("launchCount", 5)
+                .putInt("scores.level1", 3).commit();
+        // every implementation instance migrates its stores once, so the values are moved by a fresh one
+        EsperandroCompactKeysExample legacy = new EsperandroCompactKeysExample$$Impl(RuntimeEnvironment.application);
+        Assert.assertEquals("legacy", legacy.containerListObject());
+        Assert.assertEquals(5, legacy.launchCount());
+        Assert.assertEquals(Integer.valueOf(3), legacy.scores().get("level1"));
+        Assert.assertFalse(raw.contains("containerListObject"));
+        Assert.assertFalse(raw.contains("launchCount"));
+        Assert.assertFalse(raw.contains("scores.level1"));
+    }
+
+    @Test
+    public void listenersReceivePreferenceNames() {
+        final List<String> changedKeys = new ArrayList<String>();
+        SharedPreferences.OnSharedPreferenceChangeListener listener =
+                new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                        changedKeys.add(key);
+                    }
+                };
+        preferences.registerOnChangeListener(listener);
+        preferences.launchCount(1);
+        preferences.scores().put("level1", 10);
+        preferences.unregisterOnChangeListener(listener);
+        preferences.launchCount(2);
+
+        Assert.assertEquals(Arrays.asList("launchCount", "scores.level1"), changedKeys);
+    }
+}
@@ -0,0 +1,88 @@
+package de.devland.esperandro;
+
+import de.devland.esperandro.tests.EsperandroCounterExample;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class CounterTest {
+
+    private EsperandroCounterExample preferences;
+
+    @Before
+    public void setup() {
+        preferences = Esperandro.getPreferences(EsperandroCounterExample.class, RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+        ((CacheActions) preferences).resetCache();
+    }
+
+    @Test
+    public void increment() {
+        Assert.assertEquals(1, preferences.incrementLaunches(1));
+        Assert.assertEquals(3, preferences.incrementLaunches(2));
+        Assert.assertEquals(3, preferences.launches());
+
+        // starts from the implicit default of -1
+        preferences.incrementBytesSent(101);
+        Assert.assertEquals(100, preferences.bytesSent());
+    }
+
+    @Test
+    public void compareAndSet() {
+        preferences.launches(5);
+        Assert.assertFalse(preferences.compareAndSetLaunches(4, 10));
+        Assert.assertEquals(5, preferences.launches());
+        Assert.assertTrue(preferences.compareAndSetLaunches(5, 10));
+        Assert.assertEquals(10, preferences.launches());
+    }
+
+    @Test
+    public void update() {
+        preferences.launches(7);
+        Assert.assertEquals(14, preferences.updateLaunches(new IntOperator() {
+            @Override
+            public int apply(int value) {
+                return value * 2;
+            }
+        }));
+        Assert.assertEquals(14, preferences.launches());
+
+        Assert.assertEquals(Long.MAX_VALUE, preferences.updateBytesSent(new LongOperator() {
+            @Override
+            public long apply(long value) {
+                return Long.MAX_VALUE;
+            }
+        }));
+    }
+
+    @Test
+    public void concurrentIncrements() throws InterruptedException {
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 250; j++) {
+                        preferences.incrementLaunches(1);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(1000, preferences.launches());
+    }
+}
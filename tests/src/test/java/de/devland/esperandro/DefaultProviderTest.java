@@ -0,0 +1,65 @@
+package de.devland.esperandro;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import de.devland.esperandro.tests.EsperandroDefaultProviderExample;
+import de.devland.esperandro.tests.EsperandroDefaultProviderExample$$Impl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class DefaultProviderTest {
+
+    private EsperandroDefaultProviderExample preferences;
+
+    @Before
+    public void setup() {
+        EsperandroDefaultProviderExample.DeviceIdProvider.calls = 0;
+        EsperandroDefaultProviderExample.PackageNameLengthProvider.calls = 0;
+        preferences = new EsperandroDefaultProviderExample$$Impl(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+    }
+
+    @Test
+    public void providedDefaultsAreStoredOnce() {
+        Assert.assertEquals("fallback", preferences.deviceId$Default("fallback"));
+        Assert.assertEquals("device-1", preferences.deviceId());
+        Assert.assertEquals("device-1", preferences.deviceId());
+        Assert.assertEquals(1, EsperandroDefaultProviderExample.DeviceIdProvider.calls);
+
+        SharedPreferences file = RuntimeEnvironment.application.getSharedPreferences("defaultProviderExample",
+                Context.MODE_PRIVATE);
+        Assert.assertEquals("device-1", file.getString("deviceId", null));
+        EsperandroDefaultProviderExample other =
+                new EsperandroDefaultProviderExample$$Impl(RuntimeEnvironment.application);
+        Assert.assertEquals("device-1", other.deviceId());
+        Assert.assertEquals(1, EsperandroDefaultProviderExample.DeviceIdProvider.calls);
+    }
+
+    @Test
+    public void storedValuesWin() {
+        preferences.deviceId("stored");
+        Assert.assertEquals("stored", preferences.deviceId());
+        Assert.assertEquals(0, EsperandroDefaultProviderExample.DeviceIdProvider.calls);
+    }
+
+    @Test
+    public void defaultsWithoutPutterAreKeptInMemory() {
+        int expected = RuntimeEnvironment.application.getPackageName().length();
+        Assert.assertEquals(expected, preferences.packageNameLength());
+        Assert.assertEquals(expected, preferences.packageNameLength());
+        Assert.assertEquals(1, EsperandroDefaultProviderExample.PackageNameLengthProvider.calls);
+        Assert.assertFalse(preferences.contains("packageNameLength"));
+    }
+}
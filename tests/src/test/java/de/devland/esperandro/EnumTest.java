@@ -0,0 +1,82 @@
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+import de.devland.esperandro.tests.EsperandroEnumExample;
+import de.devland.esperandro.tests.model.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class EnumTest {
+
+    private EsperandroEnumExample preferences;
+    private SharedPreferences rawPreferences;
+
+    @Before
+    public void setup() {
+        preferences = Esperandro.getPreferences(EsperandroEnumExample.class, RuntimeEnvironment.application);
+        rawPreferences = preferences.get();
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+    }
+
+    @Test
+    public void storedByName() {
+        Assert.assertNull(preferences.level());
+        Assert.assertEquals(Level.LOW, preferences.level$Default(Level.LOW));
+
+        preferences.level(Level.HIGH);
+        Assert.assertEquals(Level.HIGH, preferences.level());
+        Assert.assertEquals("HIGH", rawPreferences.getString("level", null));
+
+        preferences.level(null);
+        Assert.assertNull(preferences.level());
+        Assert.assertFalse(rawPreferences.contains("level"));
+    }
+
+    @Test
+    public void storedByOrdinal() {
+        Assert.assertNull(preferences.ordinalLevel());
+
+        Assert.assertTrue(preferences.ordinalLevel(Level.MEDIUM));
+        Assert.assertEquals(Level.MEDIUM, preferences.ordinalLevel());
+        Assert.assertEquals(Level.MEDIUM.ordinal(), rawPreferences.getInt("ordinalLevel", -1));
+    }
+
+    @Test
+    public void annotationDefault() {
+        Assert.assertEquals(Level.MEDIUM, preferences.defaultLevel());
+        preferences.defaultLevel(Level.LOW);
+        Assert.assertEquals(Level.LOW, preferences.defaultLevel());
+    }
+
+    @Test
+    public void unknownConstantFallsBackToDefault() {
+        rawPreferences.edit().putString("defaultLevel", "REMOVED").commit();
+        rawPreferences.edit().putInt("ordinalLevel", 42).commit();
+        Assert.assertEquals(Level.MEDIUM, preferences.defaultLevel());
+        Assert.assertNull(preferences.ordinalLevel());
+    }
+
+    @Test
+    public void legacyJsonIsReadAndRewritten() {
+        // enums were serialized as JSON by earlier versions
+        rawPreferences.edit().putString("level", "\"HIGH\"").commit();
+        rawPreferences.edit().putString("ordinalLevel", "\"LOW\"").commit();
+
+        Assert.assertEquals(Level.HIGH, preferences.level());
+        Assert.assertEquals("HIGH", rawPreferences.getString("level", null));
+        Assert.assertEquals(Level.LOW, preferences.ordinalLevel());
+        Assert.assertEquals(Level.LOW.ordinal(), rawPreferences.getInt("ordinalLevel", -1));
+    }
+}
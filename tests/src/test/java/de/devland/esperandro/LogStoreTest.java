@@ -0,0 +1,118 @@
+package de.devland.esperandro;
+
+import de.devland.esperandro.storage.LogPreferenceStore;
+import de.devland.esperandro.tests.EsperandroLogExample;
+import de.devland.esperandro.tests.EsperandroLogExample$$Impl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class LogStoreTest {
+
+    private File directory;
+    private LogPreferenceStore store;
+
+    @Before
+    public void setup() {
+        directory = RuntimeEnvironment.application.getFilesDir();
+        store = LogPreferenceStore.open(directory, "log-test");
+        // stores are shared per file, robolectric however deletes the files of the previous test
+        store.reload();
+    }
+
+    @After
+    public void tearDown() {
+        store.edit().clear().commit();
+    }
+
+    @Test
+    public void generatedImplementation() {
+        EsperandroLogExample preferences = new EsperandroLogExample$$Impl(RuntimeEnvironment.application);
+        Assert.assertTrue(preferences.get() instanceof LogPreferenceStore);
+        preferences.launches(5);
+        preferences.lastSeen(1000L);
+        Assert.assertEquals(5, preferences.launches());
+        Assert.assertEquals(1000L, preferences.lastSeen());
+        preferences.clear();
+        Assert.assertFalse(preferences.get().contains("launches"));
+    }
+
+    @Test
+    public void replay() {
+        store.edit().putInt("int", 1).putString("string", "first").commit();
+        store.edit().putInt("int", 2).remove("string").putStringSet("set", new HashSet<String>(Arrays.asList("a")))
+                .commit();
+        store.reload();
+        Assert.assertEquals(2, store.getInt("int", 0));
+        Assert.assertFalse(store.contains("string"));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("a")), store.getStringSet("set", null));
+    }
+
+    @Test
+    public void unchangedValuesAreNotLogged() {
+        store.edit().putLong("long", 1L).commit();
+        long length = store.getLogLength();
+        store.edit().putLong("long", 1L).commit();
+        Assert.assertEquals(length, store.getLogLength());
+    }
+
+    @Test
+    public void incompleteRecordIsDropped() throws IOException {
+        store.edit().putInt("int", 1).commit();
+        long validLength = store.getLogLength();
+        store.edit().putInt("int", 2).commit();
+        File log = new File(directory, "log-test.log");
+        RandomAccessFile file = new RandomAccessFile(log, "rw");
+        try {
+            // a crash in the middle of the second record
+            file.setLength(file.length() - 2);
+        } finally {
+            file.close();
+        }
+        store.reload();
+        Assert.assertEquals(1, store.getInt("int", 0));
+        Assert.assertEquals(validLength, log.length());
+    }
+
+    @Test
+    public void corruptRecordIsDropped() throws IOException {
+        store.edit().putInt("int", 1).commit();
+        File log = new File(directory, "log-test.log");
+        FileOutputStream out = new FileOutputStream(log, true);
+        try {
+            out.write(new byte[]{0, 0, 0, 1, 0, 0, 0, 0, 42});
+        } finally {
+            out.close();
+        }
+        store.reload();
+        Assert.assertEquals(1, store.getInt("int", 0));
+    }
+
+    @Test
+    public void compaction() {
+        for (int i = 0; i < 100; i++) {
+            store.edit().putInt("counter", i).apply();
+        }
+        store.edit().putString("string", "kept").apply();
+        store.compact();
+        Assert.assertEquals(0, store.getLogLength());
+        store.edit().putInt("counter", 100).commit();
+        store.reload();
+        Assert.assertEquals(100, store.getInt("counter", 0));
+        Assert.assertEquals("kept", store.getString("string", null));
+    }
+}
@@ -0,0 +1,98 @@
+package de.devland.esperandro;
+
+import de.devland.esperandro.tests.EsperandroMapExample;
+import de.devland.esperandro.tests.model.Container;
+import de.devland.esperandro.tests.model.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class MapTest {
+
+    private EsperandroMapExample preferences;
+
+    @Before
+    public void setup() {
+        preferences = Esperandro.getPreferences(EsperandroMapExample.class, RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+    }
+
+    @Test
+    public void entriesAreSeparateKeys() {
+        PreferenceMap<Integer> scores = preferences.scores();
+        Assert.assertNull(scores.get("alice"));
+        Assert.assertTrue(scores.keys().isEmpty());
+
+        scores.put("alice", 3);
+        scores.put("bob", 5);
+        Assert.assertEquals(Integer.valueOf(3), scores.get("alice"));
+        Assert.assertEquals(5, preferences.get().getInt("scores.bob", 0));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("alice", "bob")), scores.keys());
+
+        scores.remove("alice");
+        Assert.assertFalse(scores.contains("alice"));
+        scores.put("bob", null);
+        Assert.assertTrue(scores.keys().isEmpty());
+    }
+
+    @Test
+    public void nativeAndSerializedValues() {
+        preferences.levels().put("current", Level.HIGH);
+        Assert.assertEquals(Level.HIGH, preferences.levels().get("current"));
+        Assert.assertEquals("HIGH", preferences.get().getString("levels.current", null));
+
+        Container container = new Container();
+        container.value = "entry";
+        preferences.containers().put("first", container);
+        Assert.assertEquals("entry", preferences.containers().get("first").value);
+    }
+
+    @Test
+    public void mapView() {
+        preferences.scores().put("alice", 3);
+        preferences.scores().put("bob", 5);
+        preferences.name("not an entry");
+
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        expected.put("alice", 3);
+        expected.put("bob", 5);
+        Assert.assertEquals(expected, preferences.scores().asMap());
+    }
+
+    @Test
+    public void mapViewReadsEntryNamesOnce() {
+        preferences.scores().put("alice", 3);
+        Map<String, Integer> view = preferences.scores().asMap();
+        Assert.assertEquals(1, view.size());
+
+        preferences.scores().put("bob", Integer.MIN_VALUE);
+        Assert.assertEquals(1, view.size());
+        Assert.assertEquals(Integer.valueOf(Integer.MIN_VALUE), view.get("bob"));
+        Assert.assertEquals(2, preferences.scores().asMap().size());
+    }
+
+    @Test
+    public void clearDefinedRemovesEntries() {
+        preferences.scores().put("alice", 3);
+        preferences.levels().put("current", Level.LOW);
+        preferences.clearDefined();
+        Assert.assertTrue(preferences.scores().keys().isEmpty());
+        Assert.assertTrue(preferences.levels().keys().isEmpty());
+    }
+}
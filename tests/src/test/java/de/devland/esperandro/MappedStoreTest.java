@@ -0,0 +1,129 @@
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+import de.devland.esperandro.storage.MappedPreferenceStore;
+import de.devland.esperandro.tests.EsperandroMappedExample;
+import de.devland.esperandro.tests.EsperandroMappedExample$$Impl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class MappedStoreTest {
+
+    private MappedPreferenceStore store;
+
+    @Before
+    public void setup() {
+        store = MappedPreferenceStore.open(new File(RuntimeEnvironment.application.getFilesDir(), "mapped-test.espm"));
+        // stores are shared per file, robolectric however deletes the files of the previous test
+        store.reload();
+    }
+
+    @After
+    public void tearDown() {
+        store.edit().clear().commit();
+    }
+
+    @Test
+    public void generatedImplementation() {
+        EsperandroMappedExample preferences = new EsperandroMappedExample$$Impl(RuntimeEnvironment.application);
+        Assert.assertTrue(preferences.get() instanceof MappedPreferenceStore);
+        preferences.counter(3);
+        preferences.timestamp(42L);
+        preferences.flag(true);
+        preferences.name("mapped");
+        preferences.tags(new HashSet<String>(Arrays.asList("a", "b")));
+        Assert.assertEquals(3, preferences.counter());
+        Assert.assertEquals(42L, preferences.timestamp());
+        Assert.assertTrue(preferences.flag());
+        Assert.assertEquals("mapped", preferences.name());
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("a", "b")), preferences.tags());
+        preferences.clear();
+        Assert.assertFalse(preferences.get().contains("counter"));
+        Assert.assertFalse(preferences.get().contains("name"));
+    }
+
+    @Test
+    public void valuesSurviveReload() {
+        store.edit().putInt("int", 7).putFloat("float", 1.5f).putString("string", "äöü")
+                .putStringSet("set", new HashSet<String>(Arrays.asList("x", "y"))).commit();
+        store.reload();
+        Assert.assertEquals(7, store.getInt("int", 0));
+        Assert.assertEquals(1.5f, store.getFloat("float", 0f), 0f);
+        Assert.assertEquals("äöü", store.getString("string", null));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("x", "y")), store.getStringSet("set", null));
+    }
+
+    @Test
+    public void primitivesAreUpdatedInPlace() {
+        store.edit().putLong("long", 1L).commit();
+        int size = store.getDataSize();
+        for (long i = 2; i < 100; i++) {
+            store.edit().putLong("long", i).apply();
+        }
+        Assert.assertEquals(size, store.getDataSize());
+        store.reload();
+        Assert.assertEquals(99L, store.getLong("long", 0L));
+    }
+
+    @Test
+    public void removedValues() {
+        store.edit().putString("string", "value").putInt("int", 1).commit();
+        store.edit().remove("string").putString("int", "changed type").commit();
+        store.reload();
+        Assert.assertFalse(store.contains("string"));
+        Assert.assertEquals("changed type", store.getString("int", null));
+        Assert.assertEquals(1, store.getAll().size());
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void wrongType() {
+        store.edit().putString("string", "value").commit();
+        store.getInt("string", 0);
+    }
+
+    @Test
+    public void compaction() {
+        char[] chars = new char[1024];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        for (int i = 0; i < 200; i++) {
+            store.edit().putString("large", large + i).apply();
+        }
+        Assert.assertTrue(store.getDataSize() < 64 * 1024);
+        Assert.assertEquals(large + 199, store.getString("large", null));
+        store.reload();
+        Assert.assertEquals(large + 199, store.getString("large", null));
+    }
+
+    @Test
+    public void listenersAreNotifiedAboutChanges() {
+        final List<String> changedKeys = new ArrayList<String>();
+        SharedPreferences.OnSharedPreferenceChangeListener listener =
+                new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                        changedKeys.add(key);
+                    }
+                };
+        store.registerOnSharedPreferenceChangeListener(listener);
+        store.edit().putInt("int", 1).commit();
+        store.edit().putInt("int", 1).commit();
+        store.edit().remove("int").commit();
+        store.unregisterOnSharedPreferenceChangeListener(listener);
+        Assert.assertEquals(Arrays.asList("int", "int"), changedKeys);
+    }
+}
@@ -0,0 +1,99 @@
+package de.devland.esperandro;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import de.devland.esperandro.tests.EsperandroMigrationExample;
+import de.devland.esperandro.tests.EsperandroMigrationExample$$Impl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class MigrationTest {
+
+    private SharedPreferences file;
+
+    @Before
+    public void setup() {
+        file = RuntimeEnvironment.application.getSharedPreferences("migrationExample", Context.MODE_PRIVATE);
+    }
+
+    @After
+    public void tearDown() {
+        file.edit().clear().commit();
+    }
+
+    @Test
+    public void renamedValuesAreMigratedOnFirstRead() {
+        file.edit().putString("user_name", "newer").putString("name", "older").putBoolean("dark_mode", true).commit();
+        EsperandroMigrationExample preferences = new EsperandroMigrationExample$$Impl(RuntimeEnvironment.application);
+
+        Assert.assertEquals("newer", preferences.userName());
+        Assert.assertEquals("newer", file.getString("userName", null));
+        Assert.assertFalse(file.contains("user_name"));
+        Assert.assertFalse(file.contains("name"));
+        // preferences that were not read are not migrated
+        Assert.assertTrue(file.contains("dark_mode"));
+        Assert.assertFalse(file.contains("darkMode"));
+    }
+
+    @Test
+    public void valuesOfTheCurrentNameWin() {
+        file.edit().putString("userName", "current").putString("user_name", "legacy").commit();
+        EsperandroMigrationExample preferences = new EsperandroMigrationExample$$Impl(RuntimeEnvironment.application);
+
+        Assert.assertEquals("current", preferences.userName());
+        Assert.assertFalse(file.contains("user_name"));
+    }
+
+    @Test
+    public void retypedValuesAreConverted() {
+        file.edit().putString("launches", "7").commit();
+        EsperandroMigrationExample preferences = new EsperandroMigrationExample$$Impl(RuntimeEnvironment.application);
+
+        Assert.assertEquals(7, preferences.launches());
+        Assert.assertEquals(7, file.getInt("launches", 0));
+    }
+
+    @Test
+    public void updatersStartFromMigratedValues() {
+        file.edit().putInt("open_count", 4).putStringSet("favorite_tags", Collections.singleton("news")).commit();
+        EsperandroMigrationExample preferences = new EsperandroMigrationExample$$Impl(RuntimeEnvironment.application);
+
+        Assert.assertEquals(5, preferences.incrementOpenCount(1));
+        preferences.addToTags("sports");
+        Assert.assertEquals(5, preferences.openCount());
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("news", "sports")), preferences.tags());
+        Assert.assertFalse(file.contains("open_count"));
+        Assert.assertFalse(file.contains("favorite_tags"));
+    }
+
+    @Test
+    public void migrateAllStoresTheSchemaVersion() {
+        file.edit().putString("user_name", "name").putString("launches", "3").putBoolean("dark_mode", true).commit();
+        EsperandroMigrationExample preferences = new EsperandroMigrationExample$$Impl(RuntimeEnvironment.application);
+
+        preferences.migrateAll();
+        Assert.assertEquals("name", file.getString("userName", null));
+        Assert.assertEquals(3, file.getInt("launches", 0));
+        Assert.assertTrue(file.getBoolean("darkMode", false));
+        Assert.assertFalse(file.contains("dark_mode"));
+        Assert.assertEquals(2, file.getInt(Migrations.VERSION_KEY, 0));
+
+        // a current schema skips all migrations
+        file.edit().putString("user_name", "late").commit();
+        EsperandroMigrationExample other = new EsperandroMigrationExample$$Impl(RuntimeEnvironment.application);
+        Assert.assertEquals("name", other.userName());
+        Assert.assertTrue(file.contains("user_name"));
+    }
+}
@@ -0,0 +1,108 @@
+package de.devland.esperandro;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import de.devland.esperandro.tests.EsperandroMultiProcessExample;
+import de.devland.esperandro.tests.EsperandroMultiProcessExample$$Impl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class MultiProcessTest {
+
+    private EsperandroMultiProcessExample preferences;
+    private EsperandroMultiProcessExample otherInstance;
+
+    @Before
+    public void setup() {
+        // bypass the instance cache of Esperandro, the instances must use the application of this test
+        preferences = new EsperandroMultiProcessExample$$Impl(RuntimeEnvironment.application);
+        otherInstance = new EsperandroMultiProcessExample$$Impl(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+    }
+
+    @Test
+    public void cachedValuesFollowWritesOfOtherInstances() {
+        otherInstance.syncedValue("first");
+        Assert.assertEquals("first", preferences.syncedValue());
+
+        otherInstance.syncedValue("second");
+        otherInstance.counter(3);
+        Assert.assertEquals("second", preferences.syncedValue());
+        Assert.assertEquals(3, preferences.counter());
+    }
+
+    @Test
+    public void writesIncrementTheVersion() throws IOException {
+        long version = readVersion();
+        preferences.syncedValue("value");
+        preferences.counter(1);
+        Assert.assertEquals(version + 2, readVersion());
+    }
+
+    @Test
+    public void writesOfOtherProcessesAreNoticed() throws IOException {
+        preferences.counter(1);
+        Assert.assertEquals(1, preferences.counter());
+        final List<String> changedKeys = new ArrayList<String>();
+        SharedPreferences.OnSharedPreferenceChangeListener listener =
+                new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                        changedKeys.add(key);
+                    }
+                };
+        preferences.registerOnChangeListener(listener);
+
+        // another process writes the file and increments the version
+        RuntimeEnvironment.application.getSharedPreferences("multiProcessExample", Context.MODE_PRIVATE).edit()
+                .putInt("counter", 2).commit();
+        changedKeys.clear();
+        writeVersion(readVersion() + 1);
+
+        Assert.assertEquals(2, preferences.counter());
+        Assert.assertEquals(1, changedKeys.size());
+        Assert.assertEquals("counter", changedKeys.get(0));
+        preferences.unregisterOnChangeListener(listener);
+    }
+
+    private static File versionFile() {
+        return new File(RuntimeEnvironment.application.getFilesDir(),
+                "esperandro-multiprocess/multiProcessExample.version");
+    }
+
+    private static long readVersion() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(versionFile(), "r");
+        try {
+            return file.readLong();
+        } finally {
+            file.close();
+        }
+    }
+
+    private static void writeVersion(long version) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(versionFile(), "rw");
+        try {
+            file.writeLong(version);
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+import de.devland.esperandro.tests.EsperandroNativeTypesExample;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Date;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class NativeTypesTest {
+
+    private EsperandroNativeTypesExample preferences;
+    private SharedPreferences rawPreferences;
+
+    @Before
+    public void setup() {
+        preferences = Esperandro.getPreferences(EsperandroNativeTypesExample.class, RuntimeEnvironment.application);
+        rawPreferences = preferences.get();
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+    }
+
+    @Test
+    public void doubleAsLongBits() {
+        Assert.assertEquals(-1.0, preferences.doublePref(), 0);
+        Assert.assertEquals(Math.PI, preferences.doubleDefaultPref(), 0);
+
+        preferences.doublePref(Math.E);
+        Assert.assertEquals(Math.E, preferences.doublePref(), 0);
+        Assert.assertEquals(Double.doubleToRawLongBits(Math.E), rawPreferences.getLong("doublePref", 0));
+    }
+
+    @Test
+    public void shortAsInt() {
+        Assert.assertEquals(-1, preferences.shortPref());
+        Assert.assertEquals(7, preferences.shortDefaultPref());
+
+        Assert.assertTrue(preferences.shortPref((short) 12345));
+        Assert.assertEquals(12345, preferences.shortPref());
+        Assert.assertEquals(12345, rawPreferences.getInt("shortPref", 0));
+    }
+
+    @Test
+    public void bytesAsBase64() {
+        Assert.assertNull(preferences.bytesPref());
+
+        byte[] bytes = {0, 1, 2, -128, 127};
+        preferences.bytesPref(bytes);
+        Assert.assertArrayEquals(bytes, preferences.bytesPref());
+        Assert.assertEquals("AAECgH8=", rawPreferences.getString("bytesPref", null));
+
+        preferences.bytesPref(null);
+        Assert.assertNull(preferences.bytesPref());
+    }
+
+    @Test
+    public void dateAsLong() {
+        Assert.assertNull(preferences.datePref());
+        Assert.assertEquals(new Date(1000L), preferences.dateDefaultPref());
+        Date runtimeDefault = new Date(5L);
+        Assert.assertEquals(runtimeDefault, preferences.datePref$Default(runtimeDefault));
+
+        Date date = new Date(1234567890123L);
+        preferences.datePref(date);
+        Assert.assertEquals(date, preferences.datePref());
+        Assert.assertEquals(date.getTime(), rawPreferences.getLong("datePref", 0));
+
+        preferences.datePref(null);
+        Assert.assertNull(preferences.datePref());
+        Assert.assertFalse(rawPreferences.contains("datePref"));
+    }
+
+    @Test
+    public void legacyJsonDateIsReadAndRewritten() {
+        // dates were serialized as JSON by earlier versions
+        Date date = new Date(1234567890000L);
+        rawPreferences.edit().putString("datePref", Esperandro.getSerializer().serialize(date)).commit();
+
+        Assert.assertEquals(date, preferences.datePref());
+        Assert.assertEquals(date.getTime(), rawPreferences.getLong("datePref", 0));
+    }
+}
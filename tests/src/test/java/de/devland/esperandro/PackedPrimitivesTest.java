@@ -0,0 +1,84 @@
+package de.devland.esperandro;
+
+import android.content.SharedPreferences;
+import de.devland.esperandro.tests.EsperandroPackedPrimitivesExample;
+import de.devland.esperandro.tests.EsperandroPackedPrimitivesExample$$Impl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class PackedPrimitivesTest {
+
+    private EsperandroPackedPrimitivesExample preferences;
+    private SharedPreferences raw;
+
+    @Before
+    public void setup() {
+        preferences = new EsperandroPackedPrimitivesExample$$Impl(RuntimeEnvironment.application);
+        raw = preferences.get();
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+    }
+
+    @Test
+    public void primitivesShareOneRecord() {
+        preferences.launches(3);
+        preferences.incrementLaunches(2);
+        Assert.assertTrue(preferences.lastSeen(1234567890123L));
+        preferences.volume(0.5f);
+        preferences.onboardingDone(true);
+        preferences.userName("name");
+
+        Assert.assertEquals(5, preferences.launches());
+        Assert.assertEquals(1234567890123L, preferences.lastSeen());
+        Assert.assertEquals(0.5f, preferences.volume(), 0f);
+        Assert.assertTrue(preferences.onboardingDone());
+        Assert.assertEquals("name", preferences.userName());
+        Assert.assertEquals(2, raw.getAll().size());
+        Assert.assertTrue(raw.contains("__packed"));
+        Assert.assertTrue(raw.contains("userName"));
+    }
+
+    @Test
+    public void defaultsAndRemoval() {
+        Assert.assertEquals(0, preferences.launches());
+        Assert.assertEquals(-1L, preferences.lastSeen());
+        Assert.assertEquals(0.25f, preferences.volume$Default(0.25f), 0f);
+        Assert.assertFalse(preferences.contains("volume"));
+
+        preferences.volume(1f);
+        Assert.assertTrue(preferences.contains("volume"));
+        Assert.assertEquals(1f, preferences.volume$Default(0.25f), 0f);
+        preferences.remove("volume");
+        Assert.assertFalse(preferences.contains("volume"));
+    }
+
+    @Test
+    public void externalChangesAreDecoded() {
+        preferences.launches(3);
+        preferences.clearDefined();
+        Assert.assertEquals(0, preferences.launches());
+        preferences.launches(4);
+        raw.edit().clear().commit();
+        Assert.assertEquals(0, preferences.launches());
+    }
+
+    @Test
+    public void individualValuesAreMoved() {
+        raw.edit().putInt("launches", 7).putBoolean("onboardingDone", true).commit();
+        Assert.assertEquals(7, preferences.launches());
+        Assert.assertTrue(preferences.onboardingDone());
+        Assert.assertFalse(raw.contains("launches"));
+        Assert.assertTrue(raw.contains("__packed"));
+    }
+}
@@ -0,0 +1,86 @@
+package de.devland.esperandro;
+
+import de.devland.esperandro.tests.EsperandroPackedExample;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class PackedTest {
+
+    private EsperandroPackedExample preferences;
+
+    @Before
+    public void setup() {
+        preferences = Esperandro.getPreferences(EsperandroPackedExample.class, RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+    }
+
+    @Test
+    public void arrays() {
+        Assert.assertNull(preferences.intArray());
+        Assert.assertNull(preferences.longArray());
+
+        int[] ints = {0, 1, -1, 63, -64, 300, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        preferences.intArray(ints);
+        Assert.assertArrayEquals(ints, preferences.intArray());
+
+        long[] longs = {0, -1, Long.MAX_VALUE, Long.MIN_VALUE, 1L << 40};
+        Assert.assertTrue(preferences.longArray(longs));
+        Assert.assertArrayEquals(longs, preferences.longArray());
+
+        preferences.intArray(new int[0]);
+        Assert.assertEquals(0, preferences.intArray().length);
+        preferences.intArray(null);
+        Assert.assertNull(preferences.intArray());
+    }
+
+    @Test
+    public void lists() {
+        Assert.assertNull(preferences.integerList());
+
+        ArrayList<Integer> integers = new ArrayList<Integer>(Arrays.asList(5, -5, Integer.MIN_VALUE));
+        preferences.integerList(integers);
+        Assert.assertEquals(integers, preferences.integerList());
+
+        preferences.longList(Arrays.asList(Long.MIN_VALUE, 0L, 42L));
+        Assert.assertEquals(Arrays.asList(Long.MIN_VALUE, 0L, 42L), preferences.longList());
+    }
+
+    @Test
+    public void compactEncoding() {
+        preferences.intArray(new int[]{1, 2, 3});
+        // length and three single byte varints
+        Assert.assertEquals("AwIEBg==", preferences.get().getString("intArray", null));
+    }
+
+    @Test
+    public void legacyJsonIsReadAndRepacked() {
+        // earlier versions serialized arrays directly and lists in a container object
+        preferences.get().edit().putString("integerList", "{\"value\":[1,2,3]}").commit();
+        preferences.get().edit().putString("intArray", "[1,2,3]").commit();
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3), preferences.integerList());
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, preferences.intArray());
+        Assert.assertEquals("AwIEBg==", preferences.get().getString("integerList", null));
+        Assert.assertEquals("AwIEBg==", preferences.get().getString("intArray", null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullElements() {
+        preferences.longList(Arrays.asList(1L, null));
+    }
+}
@@ -0,0 +1,95 @@
+package de.devland.esperandro;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import de.devland.esperandro.storage.FlushablePreferenceStore;
+import de.devland.esperandro.storage.PendingWrites;
+import de.devland.esperandro.storage.SharedPreferencesStore;
+import de.devland.esperandro.tests.EsperandroMultiProcessExample;
+import de.devland.esperandro.tests.EsperandroMultiProcessExample$$Impl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class PendingWritesTest {
+
+    @Test
+    public void awaitReturnsOnceTheStoresAreFlushed() {
+        final AtomicInteger flushes = new AtomicInteger();
+        SharedPreferences store = new FlushableStore(plainPreferences()) {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+        };
+
+        Assert.assertTrue(PendingWrites.await(5000, store));
+        Assert.assertEquals(1, flushes.get());
+    }
+
+    @Test
+    public void awaitGivesUpWhenTheFlushTakesTooLong() {
+        final CountDownLatch release = new CountDownLatch(1);
+        SharedPreferences store = new FlushableStore(plainPreferences()) {
+            @Override
+            public void flush() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        try {
+            Assert.assertFalse(PendingWrites.await(50, store));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void flushPublishesTheVersionOfAppliedWrites() throws IOException {
+        EsperandroMultiProcessExample preferences =
+                new EsperandroMultiProcessExample$$Impl(RuntimeEnvironment.application);
+        long version = readVersion();
+        preferences.get().edit().putInt("counter", 5).apply();
+
+        preferences.flush();
+        // the version other processes check is only incremented once the write is on disk
+        Assert.assertEquals(version + 1, readVersion());
+        preferences.clear();
+    }
+
+    private static SharedPreferences plainPreferences() {
+        return RuntimeEnvironment.application.getSharedPreferences("pendingWrites", Context.MODE_PRIVATE);
+    }
+
+    private static long readVersion() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(RuntimeEnvironment.application.getFilesDir(),
+                "esperandro-multiprocess/multiProcessExample.version"), "r");
+        try {
+            return file.readLong();
+        } finally {
+            file.close();
+        }
+    }
+
+    private abstract static class FlushableStore extends SharedPreferencesStore implements FlushablePreferenceStore {
+
+        FlushableStore(SharedPreferences preferences) {
+            super(preferences);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package de.devland.esperandro;
+
+import de.devland.esperandro.serialization.GsonSerializer;
+import de.devland.esperandro.serialization.JacksonSerializer;
+import de.devland.esperandro.serialization.Serializer;
+import de.devland.esperandro.tests.EsperandroProjectionExample;
+import de.devland.esperandro.tests.model.Container;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class ProjectionTest {
+
+    private EsperandroProjectionExample preferences;
+
+    @Before
+    public void setup() {
+        preferences = Esperandro.getPreferences(EsperandroProjectionExample.class, RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        Esperandro.setSerializer(new GsonSerializer());
+        preferences.clear();
+    }
+
+    @Test
+    public void gsonProjection() {
+        checkProjections(new GsonSerializer());
+    }
+
+    @Test
+    public void jacksonProjection() {
+        checkProjections(new JacksonSerializer());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void serializerWithoutProjection() {
+        Esperandro.setSerializer(new Serializer() {
+            @Override
+            public String serialize(Object object) {
+                return null;
+            }
+
+            @Override
+            public <T> T deserialize(String serializedObject, Class<T> clazz) {
+                return null;
+            }
+        });
+        preferences.containerValueValue();
+    }
+
+    private void checkProjections(Serializer serializer) {
+        Esperandro.setSerializer(serializer);
+        preferences.clear();
+
+        // nothing stored yet
+        Assert.assertNull(preferences.containerValueValue());
+        Assert.assertEquals(42, preferences.containerValueAnotherValue());
+        Assert.assertEquals("missing", preferences.blobContainerValue());
+
+        Container container = new Container();
+        container.value = "projected";
+        container.anotherValue = 7;
+        preferences.containerValue(container);
+        Assert.assertEquals("projected", preferences.containerValueValue());
+        Assert.assertEquals(7, preferences.containerValueAnotherValue());
+
+        Container blobContainer = new Container();
+        blobContainer.value = "stored in a separate file";
+        preferences.blobContainer(blobContainer);
+        Assert.assertEquals("stored in a separate file", preferences.blobContainerValue());
+
+        ArrayList<Container> list = new ArrayList<Container>();
+        list.add(container);
+        list.add(blobContainer);
+        preferences.containerList(list);
+        Container[] values = preferences.containerListValues();
+        Assert.assertEquals(2, values.length);
+        Assert.assertEquals(container, values[0]);
+        Assert.assertEquals(blobContainer, values[1]);
+    }
+}
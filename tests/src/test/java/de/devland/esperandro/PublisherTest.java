@@ -0,0 +1,110 @@
+package de.devland.esperandro;
+
+import de.devland.esperandro.reactive.Publisher;
+import de.devland.esperandro.reactive.Subscriber;
+import de.devland.esperandro.reactive.Subscription;
+import de.devland.esperandro.tests.EsperandroSimpleExample;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class PublisherTest {
+
+    private EsperandroSimpleExample preferences;
+
+    @Before
+    public void setup() {
+        preferences = Esperandro.getPreferences(EsperandroSimpleExample.class, RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+    }
+
+    @Test
+    public void currentValueAndDistinctChangesAreEmitted() {
+        preferences.integerPref(1);
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+        preferences.integerPrefPublisher().subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        preferences.integerPref(2);
+        preferences.longPref(5L);
+        preferences.integerPref(3);
+        Assert.assertEquals(Arrays.asList(1, 2, 3), subscriber.values);
+
+        subscriber.subscription.cancel();
+        preferences.integerPref(4);
+        Assert.assertEquals(3, subscriber.values.size());
+    }
+
+    @Test
+    public void slowSubscribersOnlyReceiveTheLatestValue() {
+        preferences.stringPref("first");
+        RecordingSubscriber<String> subscriber = new RecordingSubscriber<String>();
+        Publisher<String> publisher = preferences.stringPrefPublisher();
+        publisher.subscribe(subscriber);
+        Assert.assertTrue(subscriber.values.isEmpty());
+
+        subscriber.subscription.request(1);
+        preferences.stringPref("second");
+        preferences.stringPref("third");
+        preferences.stringPref("fourth");
+        Assert.assertEquals(Arrays.asList("first"), subscriber.values);
+
+        subscriber.subscription.request(5);
+        Assert.assertEquals(Arrays.asList("first", "fourth"), subscriber.values);
+
+        // a value equal to the one received last is not emitted again
+        preferences.stringPref("fifth");
+        preferences.stringPref("fourth");
+        Assert.assertEquals(Arrays.asList("first", "fourth", "fifth", "fourth"), subscriber.values);
+    }
+
+    @Test
+    public void invalidRequestsAreReported() {
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+        preferences.integerPrefPublisher().subscribe(subscriber);
+        subscriber.subscription.request(0);
+        Assert.assertTrue(subscriber.error instanceof IllegalArgumentException);
+        preferences.integerPref(7);
+        Assert.assertTrue(subscriber.values.isEmpty());
+    }
+
+    private static class RecordingSubscriber<T> implements Subscriber<T> {
+        final List<T> values = new ArrayList<T>();
+        Subscription subscription;
+        Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T item) {
+            values.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
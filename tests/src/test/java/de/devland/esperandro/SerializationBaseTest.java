@@ -15,6 +15,8 @@
  */
 package de.devland.esperandro;
 
+import de.devland.esperandro.serialization.Serializer;
+import de.devland.esperandro.serialization.WarmableSerializer;
 import de.devland.esperandro.tests.EsperandroSerializationExample;
 import de.devland.esperandro.tests.model.Container;
 import de.devland.esperandro.tests.model.ContainerListObject;
@@ -100,4 +102,25 @@ public abstract class SerializationBaseTest {
         Assert.assertEquals(container, savedContainer);
     }
 
+    @Test
+    public void warmUp() {
+        Serializer serializer = Esperandro.getSerializer();
+        Assert.assertTrue(serializer instanceof WarmableSerializer);
+        ((WarmableSerializer) serializer).warmUp(Container.class, ContainerListObject.class);
+
+        Container container = new Container();
+        container.anotherValue = 5;
+        container.value = "warmed up";
+        esperandroPreferences.containerValue(container);
+        Assert.assertEquals(container, esperandroPreferences.containerValue());
+    }
+
+    @Test
+    public void nullValue() {
+        Serializer serializer = Esperandro.getSerializer();
+        Assert.assertNull(serializer.deserialize(serializer.serialize(null), Container.class));
+        esperandroPreferences.containerValue(null);
+        Assert.assertNull(esperandroPreferences.containerValue());
+    }
+
 }
@@ -0,0 +1,118 @@
+package de.devland.esperandro;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import de.devland.esperandro.tests.EsperandroShardExample;
+import de.devland.esperandro.tests.EsperandroShardExample$$Impl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class ShardTest {
+
+    private EsperandroShardExample preferences;
+
+    @Before
+    public void setup() {
+        // bypass the instance cache of Esperandro, the instance must use the application of this test
+        preferences = new EsperandroShardExample$$Impl(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+    }
+
+    @Test
+    public void keysAreRoutedToTheirShard() {
+        preferences.userName("name");
+        preferences.lastSeen(10L);
+        preferences.incrementLastSeen(5L);
+        preferences.scrollPosition(3);
+        preferences.drafts().put("mail", "draft");
+
+        Assert.assertEquals("name", preferences.userName());
+        Assert.assertEquals(15L, preferences.lastSeen());
+        Assert.assertEquals(3, preferences.scrollPosition());
+        Assert.assertEquals("draft", preferences.drafts().get("mail"));
+
+        SharedPreferences main = shard("shardExample");
+        SharedPreferences hot = shard("shardExample.hot");
+        SharedPreferences cold = shard("shardExample.cold");
+        Assert.assertTrue(main.contains("userName"));
+        Assert.assertFalse(main.contains("lastSeen"));
+        Assert.assertEquals(15L, hot.getLong("lastSeen", 0L));
+        Assert.assertEquals(3, hot.getInt("scrollPosition", 0));
+        Assert.assertEquals("draft", cold.getString("drafts.mail", null));
+    }
+
+    @Test
+    public void genericActionsFanOut() {
+        preferences.userName("name");
+        preferences.lastSeen(10L);
+        Assert.assertTrue(preferences.contains("lastSeen"));
+        preferences.remove("lastSeen");
+        Assert.assertFalse(preferences.contains("lastSeen"));
+
+        preferences.lastSeen(10L);
+        preferences.drafts().put("mail", "draft");
+        preferences.clearDefined();
+        Assert.assertFalse(preferences.contains("userName"));
+        Assert.assertFalse(preferences.contains("lastSeen"));
+        Assert.assertFalse(preferences.drafts().contains("mail"));
+    }
+
+    @Test
+    public void initDefaultsWritesEveryShardOnce() {
+        preferences.scrollPosition(3);
+        final List<String> changedKeys = new ArrayList<String>();
+        SharedPreferences.OnSharedPreferenceChangeListener listener =
+                new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                        changedKeys.add(key);
+                    }
+                };
+        preferences.registerOnChangeListener(listener);
+        preferences.initDefaults();
+        preferences.unregisterOnChangeListener(listener);
+
+        Assert.assertEquals(0L, shard("shardExample.hot").getLong("lastSeen", -1L));
+        Assert.assertEquals(3, shard("shardExample.hot").getInt("scrollPosition", 0));
+        Assert.assertTrue(shard("shardExample").contains("userName"));
+        // stored values are kept and not written again
+        Assert.assertFalse(changedKeys.contains("scrollPosition"));
+    }
+
+    @Test
+    public void listenersObserveAllShards() {
+        final List<String> changedKeys = new ArrayList<String>();
+        SharedPreferences.OnSharedPreferenceChangeListener listener =
+                new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                        changedKeys.add(key);
+                    }
+                };
+        preferences.registerOnChangeListener(listener);
+        preferences.userName("name");
+        preferences.lastSeen(1L);
+        preferences.unregisterOnChangeListener(listener);
+        Assert.assertTrue(changedKeys.contains("userName"));
+        Assert.assertTrue(changedKeys.contains("lastSeen"));
+    }
+
+    private SharedPreferences shard(String name) {
+        return RuntimeEnvironment.application.getSharedPreferences(name, Context.MODE_PRIVATE);
+    }
+}
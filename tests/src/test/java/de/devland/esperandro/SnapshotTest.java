@@ -0,0 +1,79 @@
+package de.devland.esperandro;
+
+import android.content.Context;
+import de.devland.esperandro.tests.EsperandroPackedPrimitivesExample$$Impl;
+import de.devland.esperandro.tests.EsperandroShardExample$$Impl;
+import de.devland.esperandro.tests.EsperandroSimpleExample$$Impl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class SnapshotTest {
+
+    @Test
+    public void snapshotHoldsAllValues() {
+        EsperandroSimpleExample$$Impl preferences = new EsperandroSimpleExample$$Impl(RuntimeEnvironment.application);
+        preferences.integerPref(1);
+        preferences.stringPref("value");
+        preferences.stringSetPref(new HashSet<String>(Collections.singleton("tag")));
+
+        EsperandroSimpleExample$$Impl.Snapshot snapshot = preferences.snapshot();
+        Assert.assertEquals(1, snapshot.integerPref);
+        Assert.assertEquals("value", snapshot.stringPref);
+        Assert.assertEquals(Collections.singleton("tag"), snapshot.stringSetPref);
+        // unset preferences have their defaults
+        Assert.assertEquals(42L, snapshot.longPref);
+        Assert.assertTrue(snapshot.boolPref);
+        preferences.clear();
+    }
+
+    @Test
+    public void snapshotDoesNotChange() {
+        EsperandroSimpleExample$$Impl preferences = new EsperandroSimpleExample$$Impl(RuntimeEnvironment.application);
+        preferences.integerPref(1);
+        EsperandroSimpleExample$$Impl.Snapshot snapshot = preferences.snapshot();
+        preferences.integerPref(2);
+        Assert.assertEquals(1, snapshot.integerPref);
+        Assert.assertEquals(2, preferences.snapshot().integerPref);
+        preferences.clear();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotSetsAreImmutable() {
+        EsperandroSimpleExample$$Impl preferences = new EsperandroSimpleExample$$Impl(RuntimeEnvironment.application);
+        preferences.stringSetPref(new HashSet<String>(Collections.singleton("tag")));
+        Set<String> tags = preferences.snapshot().stringSetPref;
+        preferences.clear();
+        tags.add("other");
+    }
+
+    @Test
+    public void snapshotReadsShardsAndPackedRecords() {
+        EsperandroShardExample$$Impl sharded = new EsperandroShardExample$$Impl(RuntimeEnvironment.application);
+        sharded.userName("name");
+        sharded.lastSeen(10L);
+        EsperandroShardExample$$Impl.Snapshot shardSnapshot = sharded.snapshot();
+        Assert.assertEquals("name", shardSnapshot.userName);
+        Assert.assertEquals(10L, shardSnapshot.lastSeen);
+        sharded.clear();
+
+        // values stored on their own are moved into the record first
+        RuntimeEnvironment.application.getSharedPreferences("packedPrimitivesExample", Context.MODE_PRIVATE).edit()
+                .putInt("launches", 3).commit();
+        EsperandroPackedPrimitivesExample$$Impl packed =
+                new EsperandroPackedPrimitivesExample$$Impl(RuntimeEnvironment.application);
+        EsperandroPackedPrimitivesExample$$Impl.Snapshot packedSnapshot = packed.snapshot();
+        Assert.assertEquals(3, packedSnapshot.launches);
+        Assert.assertFalse(packedSnapshot.onboardingDone);
+        packed.clear();
+    }
+}
@@ -0,0 +1,39 @@
+package de.devland.esperandro;
+
+import android.content.Context;
+import de.devland.esperandro.storage.PreferenceStore;
+import de.devland.esperandro.tests.EsperandroSimpleExample;
+import de.devland.esperandro.tests.EsperandroStoreExample;
+import de.devland.esperandro.tests.EsperandroStoreExample$$Impl;
+import de.devland.esperandro.tests.RedirectingStoreFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class StoreTest {
+
+    @Test
+    public void defaultStore() {
+        EsperandroSimpleExample preferences = Esperandro.getPreferences(EsperandroSimpleExample.class,
+                RuntimeEnvironment.application);
+        Assert.assertTrue(preferences.get() instanceof PreferenceStore);
+    }
+
+    @Test
+    public void customStore() {
+        // bypass the instance cache of Esperandro, the instance must use the application of this test
+        EsperandroStoreExample preferences = new EsperandroStoreExample$$Impl(RuntimeEnvironment.application);
+        preferences.value("stored");
+        Assert.assertEquals("stored", preferences.value());
+        Assert.assertEquals("stored", RuntimeEnvironment.application.getSharedPreferences(
+                RedirectingStoreFactory.PREFIX + "storeExample", Context.MODE_PRIVATE).getString("value", null));
+        Assert.assertFalse(RuntimeEnvironment.application.getSharedPreferences("storeExample", Context.MODE_PRIVATE)
+                .contains("value"));
+        preferences.clear();
+    }
+}
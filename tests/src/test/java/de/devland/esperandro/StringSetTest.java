@@ -0,0 +1,84 @@
+package de.devland.esperandro;
+
+import de.devland.esperandro.tests.EsperandroStringSetExample;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class StringSetTest {
+
+    private EsperandroStringSetExample preferences;
+
+    @Before
+    public void setup() {
+        preferences = Esperandro.getPreferences(EsperandroStringSetExample.class, RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+        ((CacheActions) preferences).resetCache();
+    }
+
+    @Test
+    public void addAndRemove() {
+        Assert.assertFalse(preferences.tagsContains("a"));
+
+        preferences.addToTags("a", "b");
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("a", "b")), preferences.tags());
+        Assert.assertTrue(preferences.tagsContains("a"));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("a", "b")),
+                preferences.get().getStringSet("tags", null));
+
+        Assert.assertTrue(preferences.removeFromTags("a", "c"));
+        Assert.assertFalse(preferences.tagsContains("a"));
+        Assert.assertEquals(Collections.singleton("b"), preferences.tags());
+
+        // nothing to remove
+        Assert.assertTrue(preferences.removeFromTags("x"));
+        Assert.assertEquals(Collections.singleton("b"), preferences.tags());
+    }
+
+    @Test
+    public void mutationsKeepCacheCoherent() {
+        preferences.tags(new HashSet<String>(Collections.singleton("a")));
+        Set<String> cached = preferences.tags();
+        preferences.addToTags("b");
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("a", "b")), preferences.tags());
+        // previously returned sets are not modified
+        Assert.assertEquals(Collections.singleton("a"), cached);
+    }
+
+    @Test
+    public void concurrentAdds() throws InterruptedException {
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 25; j++) {
+                        preferences.addToTags(thread + "-" + j);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(100, preferences.tags().size());
+    }
+}
@@ -0,0 +1,84 @@
+package de.devland.esperandro;
+
+import de.devland.esperandro.processor.EsperandroAnnotationProcessor;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class UpdaterWarningTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void incrementOfReadablePreferenceIsNotReported() throws Exception {
+        List<String> warnings = compile("Counter", "" +
+                "@de.devland.esperandro.annotations.SharedPreferences\n" +
+                "public interface Counter {\n" +
+                "    long bytesSent();\n" +
+                "    void bytesSent(long bytesSent);\n" +
+                "    void incrementBytesSent(long delta);\n" +
+                "}\n");
+        Assert.assertEquals(Collections.<String>emptyList(), warnings);
+    }
+
+    @Test
+    public void incrementOfWriteOnlyPreferenceIsReported() throws Exception {
+        List<String> warnings = compile("Steps", "" +
+                "@de.devland.esperandro.annotations.SharedPreferences\n" +
+                "public interface Steps {\n" +
+                "    void step(int step);\n" +
+                "    void incrementStep(int incrementStep);\n" +
+                "}\n");
+        Assert.assertEquals(1, warnings.size());
+        Assert.assertTrue(warnings.get(0), warnings.get(0).contains("'incrementStep' is generated as increment"));
+    }
+
+    /**
+     * @return the warnings of the processor about update methods for the given interface
+     */
+    private List<String> compile(String name, final String source) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + name + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        File output = folder.newFolder();
+        List<String> options = Arrays.asList("-proc:only", "-classpath", System.getProperty("java.class.path"),
+                "-s", output.getPath(), "-d", output.getPath());
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new EsperandroAnnotationProcessor()));
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+        fileManager.close();
+
+        List<String> warnings = new ArrayList<String>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.WARNING
+                    && diagnostic.getMessage(null).contains("is generated as increment")) {
+                warnings.add(diagnostic.getMessage(null));
+            }
+        }
+        return warnings;
+    }
+}
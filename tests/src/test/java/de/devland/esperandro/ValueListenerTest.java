@@ -0,0 +1,75 @@
+package de.devland.esperandro;
+
+import de.devland.esperandro.tests.EsperandroPackedPrimitivesExample;
+import de.devland.esperandro.tests.EsperandroSimpleExample;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class ValueListenerTest {
+
+    @Test
+    public void listenersOnlyReceiveTheirPreference() {
+        EsperandroSimpleExample preferences =
+                Esperandro.getPreferences(EsperandroSimpleExample.class, RuntimeEnvironment.application);
+        RecordingListener<Integer> integerListener = new RecordingListener<Integer>();
+        RecordingListener<Integer> secondIntegerListener = new RecordingListener<Integer>();
+        RecordingListener<String> stringListener = new RecordingListener<String>();
+        preferences.onIntegerPrefChanged(integerListener);
+        preferences.onIntegerPrefChanged(secondIntegerListener);
+        preferences.onStringPrefChanged(stringListener);
+
+        preferences.integerPref(1);
+        preferences.integerPref(2);
+        preferences.longPref(3L);
+
+        Assert.assertEquals(2, integerListener.values.size());
+        Assert.assertEquals(Integer.valueOf(1), integerListener.values.get(0));
+        Assert.assertEquals(Integer.valueOf(2), integerListener.values.get(1));
+        Assert.assertEquals(integerListener.values, secondIntegerListener.values);
+        Assert.assertTrue(stringListener.values.isEmpty());
+
+        preferences.unregisterOnIntegerPrefChanged(integerListener);
+        preferences.integerPref(4);
+        Assert.assertEquals(2, integerListener.values.size());
+        Assert.assertEquals(3, secondIntegerListener.values.size());
+        preferences.clear();
+    }
+
+    @Test
+    public void packedPreferencesOnlyNotifyOnTheirOwnChanges() {
+        EsperandroPackedPrimitivesExample preferences =
+                Esperandro.getPreferences(EsperandroPackedPrimitivesExample.class, RuntimeEnvironment.application);
+        RecordingListener<Integer> launchesListener = new RecordingListener<Integer>();
+        RecordingListener<Boolean> onboardingListener = new RecordingListener<Boolean>();
+        preferences.onLaunchesChanged(launchesListener);
+        preferences.onOnboardingDoneChanged(onboardingListener);
+
+        preferences.incrementLaunches(1);
+        preferences.incrementLaunches(1);
+        preferences.onboardingDone(true);
+
+        Assert.assertEquals(2, launchesListener.values.size());
+        Assert.assertEquals(Integer.valueOf(2), launchesListener.values.get(1));
+        Assert.assertEquals(1, onboardingListener.values.size());
+        Assert.assertTrue(onboardingListener.values.get(0));
+        preferences.clear();
+    }
+
+    private static class RecordingListener<T> implements ValueChangeListener<T> {
+        final List<T> values = new ArrayList<T>();
+
+        @Override
+        public void onValueChanged(T value) {
+            values.add(value);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package de.devland.esperandro;
+
+import de.devland.esperandro.serialization.GsonSerializer;
+import de.devland.esperandro.tests.EsperandroProjectionExample;
+import de.devland.esperandro.tests.EsperandroSerializationExample;
+import de.devland.esperandro.tests.EsperandroSerializationExample$$Impl;
+import de.devland.esperandro.tests.model.Container;
+import de.devland.esperandro.tests.model.ContainerListObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class WarmUpTest {
+
+    private RecordingSerializer serializer;
+    private Executor directExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Before
+    public void setup() {
+        serializer = new RecordingSerializer();
+        Esperandro.setSerializer(serializer);
+    }
+
+    @After
+    public void tearDown() {
+        Esperandro.setSerializer(new GsonSerializer());
+    }
+
+    @Test
+    public void generatedTypes() {
+        List<Class<?>> types = Arrays.asList(EsperandroSerializationExample$$Impl.SERIALIZED_TYPES);
+        Assert.assertTrue(types.contains(Container.class));
+        Assert.assertTrue(types.contains(ContainerListObject.class));
+        Assert.assertTrue(types.contains(EsperandroSerializationExample$$Impl.ContainerList.class));
+        Assert.assertTrue(types.contains(EsperandroSerializationExample$$Impl.StringList.class));
+        // preferences that are only written are serialized as well
+        Assert.assertTrue(types.contains(EsperandroSerializationExample$$Impl.ExportedContainers.class));
+    }
+
+    @Test
+    public void warmUpGivenPreferences() {
+        Esperandro.warmUpSerializers(directExecutor, EsperandroSerializationExample.class);
+        Assert.assertTrue(serializer.warmedUp.contains(Container.class));
+        Assert.assertTrue(serializer.warmedUp.contains(ContainerListObject.class));
+        Assert.assertFalse(serializer.warmedUp.contains(Container[].class));
+    }
+
+    @Test
+    public void warmUpKnownPreferences() {
+        Esperandro.getPreferences(EsperandroProjectionExample.class, RuntimeEnvironment.application);
+        Esperandro.warmUpSerializers(directExecutor);
+        // projection targets are part of the serialized types as well
+        Assert.assertTrue(serializer.warmedUp.contains(Container[].class));
+    }
+
+    private static class RecordingSerializer extends GsonSerializer {
+        private List<Class<?>> warmedUp = new ArrayList<Class<?>>();
+
+        @Override
+        public void warmUp(Class<?>... classes) {
+            warmedUp.addAll(Arrays.asList(classes));
+            super.warmUp(classes);
+        }
+    }
+}
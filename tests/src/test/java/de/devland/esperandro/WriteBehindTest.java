@@ -0,0 +1,110 @@
+package de.devland.esperandro;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.SharedPreferences;
+import de.devland.esperandro.storage.PendingWrites;
+import de.devland.esperandro.tests.EsperandroWriteBehindExample;
+import de.devland.esperandro.tests.EsperandroWriteBehindExample$$Impl;
+import de.devland.esperandro.tests.model.Container;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class WriteBehindTest {
+
+    private EsperandroWriteBehindExample preferences;
+    private SharedPreferences file;
+
+    @Before
+    public void setup() {
+        ShadowLooper.pauseMainLooper();
+        preferences = new EsperandroWriteBehindExample$$Impl(RuntimeEnvironment.application);
+        file = RuntimeEnvironment.application.getSharedPreferences("writeBehindExample", Context.MODE_PRIVATE);
+    }
+
+    @After
+    public void tearDown() {
+        preferences.clear();
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void repeatedPutsAreWrittenOncePerInterval() {
+        final List<String> writes = new ArrayList<String>();
+        SharedPreferences.OnSharedPreferenceChangeListener listener =
+                new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                        writes.add(key);
+                    }
+                };
+        file.registerOnSharedPreferenceChangeListener(listener);
+
+        for (int position = 0; position <= 10; position++) {
+            preferences.scrollPosition(position);
+        }
+        Assert.assertEquals(10, preferences.scrollPosition());
+        Assert.assertFalse(file.contains("scrollPosition"));
+
+        ShadowLooper.idleMainLooper(499);
+        Assert.assertFalse(file.contains("scrollPosition"));
+        ShadowLooper.idleMainLooper(1);
+        Assert.assertEquals(10, file.getInt("scrollPosition", -1));
+        Assert.assertEquals(1, writes.size());
+        file.unregisterOnSharedPreferenceChangeListener(listener);
+    }
+
+    @Test
+    public void preferencesWithoutIntervalAreWrittenImmediately() {
+        preferences.title("title");
+        Assert.assertEquals("title", file.getString("title", null));
+    }
+
+    @Test
+    public void pendingValuesAreWrittenOnTrimMemoryAndFlush() {
+        preferences.scrollPosition(3);
+        RuntimeEnvironment.application.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        Assert.assertEquals(3, file.getInt("scrollPosition", -1));
+
+        preferences.scrollPosition(4);
+        preferences.flush();
+        Assert.assertEquals(4, file.getInt("scrollPosition", -1));
+    }
+
+    @Test
+    public void staleBlobsAreDeletedWithoutWritingBufferedValuesEarly() {
+        Container large = new Container();
+        large.value = new String(new char[200]).replace('\0', 'x');
+        Container small = new Container();
+        small.value = "small";
+        File directory = new File(new File(RuntimeEnvironment.application.getFilesDir(), "esperandro-blobs"),
+                "writeBehindExample");
+
+        preferences.scrollPosition(3);
+        preferences.draft(large);
+        preferences.draft(small);
+        // runs after the deletion would have been run, the store itself is not flushed
+        Assert.assertTrue(PendingWrites.await(5000, file));
+        Assert.assertFalse(file.contains("scrollPosition"));
+        Assert.assertEquals(1, directory.list().length);
+
+        ShadowLooper.idleMainLooper(500);
+        Assert.assertTrue(PendingWrites.await(5000, file));
+        Assert.assertEquals(3, file.getInt("scrollPosition", -1));
+        Assert.assertEquals(0, directory.list().length);
+        Assert.assertEquals(small, preferences.draft());
+    }
+}